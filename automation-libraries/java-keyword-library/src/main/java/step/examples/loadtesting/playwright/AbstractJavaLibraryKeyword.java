@@ -1,16 +1,268 @@
 package step.examples.loadtesting.playwright;
 
+import step.core.reports.Measure;
 import step.handlers.javahandler.AbstractKeyword;
 import step.handlers.javahandler.Keyword;
 
+import java.io.File;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
+
 public class AbstractJavaLibraryKeyword extends AbstractKeyword {
 
+    public static final String ATTACHMENT_TIMEOUT_SECONDS = "attachmentTimeoutSeconds";
+    /**
+     * Maximum number of attachment uploads in flight on the agent JVM, shared by all keywords (see
+     * {@link AttachmentService}). Defaults to {@value AttachmentService#DEFAULT_UPLOADER_THREADS}.
+     */
+    public static final String ATTACHMENT_UPLOADER_THREADS = "attachmentUploaderThreads";
+    /**
+     * Share of the keyword invocations whose JVM resource usage is measured (see {@link KeywordResourceProbe}),
+     * between 0 (default, disabled) and 1 (every invocation).
+     */
+    public static final String RESOURCE_SAMPLING_RATE = "keywordResourceSamplingRate";
+    /**
+     * Length of the windows over which the measures recorded through {@link #addMeasure(Measure)} and
+     * {@link #startMeasure(String)} are aggregated (see {@link MeasureAggregator}), 0 (default) to publish every sample.
+     * Windows are kept per session: the keywords must run within a Session for the summaries to span several calls,
+     * and the windows still open when a session ends are only published by {@link #FlushAggregatedMeasures()}.
+     */
+    public static final String MEASURE_AGGREGATION_WINDOW_SECONDS = "measureAggregationWindowSeconds";
+    /**
+     * Duration from which an aggregated sample is also published as it is. Defaults to the 99th percentile of the
+     * previous window of the same measure.
+     */
+    public static final String MEASURE_AGGREGATION_OUTLIER_MS = "measureAggregationOutlierMs";
+    private static final long DEFAULT_ATTACHMENT_TIMEOUT_SECONDS = 300;
+    private static final String UPLOADS_BY_HASH_KEY = AttachmentService.class.getName() + ":uploadsByHash";
+    private static final String MEASURE_AGGREGATOR_KEY = MeasureAggregator.class.getName();
+
     protected String USING_LIB_VERSION="0.0.0-SNAPSHOT updated 18/11 14h40";
 
+    private AttachmentService attachmentService;
+    private KeywordResourceProbe resourceProbe;
+    private long measureWindowMs;
+    private long measureOutlierMs;
+    private MeasureAggregator measureAggregator;
+    private final Deque<OpenMeasure> openMeasures = new ArrayDeque<>();
+
+    private static final class OpenMeasure {
+        private final String name;
+        private final long begin = System.currentTimeMillis();
+        private final long startNs = System.nanoTime();
+
+        private OpenMeasure(String name) {
+            this.name = name;
+        }
+    }
+
     @Keyword
     public void JavaKeywordInLib() {
         output.add("Lib_version_used", USING_LIB_VERSION);
     }
 
+    /**
+     * Publishes the summaries of all measure windows of the session, including the current ones, e.g. as last keyword
+     * of a load plan's session.
+     */
+    @Keyword
+    public void FlushAggregatedMeasures() {
+        List<Measure> summaries = getMeasureAggregator().drain(true);
+        summaries.forEach(output::addMeasure);
+        output.add("aggregatedMeasures", summaries.size());
+    }
 
+    /**
+     * Publishes a measure, or aggregates it if {@link #MEASURE_AGGREGATION_WINDOW_SECONDS} is set: it is then only
+     * published on its own if it failed or is an outlier.
+     */
+    protected void addMeasure(Measure measure) {
+        if (measureWindowMs <= 0 || getMeasureAggregator().record(measure, measureWindowMs, measureOutlierMs)) {
+            output.addMeasure(measure);
+        }
+    }
+
+    protected void addMeasure(String name, long durationMs) {
+        addMeasure(new Measure(name, durationMs, System.currentTimeMillis() - durationMs, new HashMap<>(),
+                Measure.Status.PASSED));
+    }
+
+    /**
+     * Same as {@code output.startMeasure}, for measures published through {@link #addMeasure(Measure)}.
+     */
+    protected void startMeasure(String name) {
+        openMeasures.push(new OpenMeasure(name));
+    }
+
+    protected void stopMeasure() {
+        stopMeasure(Map.of());
+    }
+
+    /**
+     * Stops the last started measure, adding the given data to it.
+     */
+    protected void stopMeasure(Map<String, Object> data) {
+        OpenMeasure open = openMeasures.pop();
+        addMeasure(new Measure(open.name, (System.nanoTime() - open.startNs) / 1_000_000L, open.begin,
+                new HashMap<>(data), Measure.Status.PASSED));
+    }
+
+    /**
+     * Attaches the file to the keyword output in the background, streaming it from disk (see {@link AttachmentService}).
+     * Identical contents are only uploaded once per session. The file must be left untouched until the keyword ends.
+     */
+    protected CompletableFuture<AttachmentService.Attachment> attachFile(File file, String mimeType) {
+        return getAttachmentService().attach(file, mimeType);
+    }
+
+    /**
+     * Returns the extracted automation package of this keyword from the JVM-wide {@link AutomationPackageCache},
+     * retrieving it only once per deployed version. The retrieval, including the extraction, is published as measure
+     * "automationPackage.retrieve"; cache hits are not measured.
+     *
+     * @return the cached package, or null if the keyword does not run from an automation package
+     */
+    protected AutomationPackageCache.Entry retrieveCachedAutomationPackage() {
+        if (!isInAutomationPackage()) {
+            return null;
+        }
+        AutomationPackageCache.Lookup lookup = AutomationPackageCache.getInstance()
+                .get(getClass().getClassLoader(), this::retrieveAndExtractAutomationPackage);
+        if (lookup.isRetrieved()) {
+            output.addMeasure("automationPackage.retrieve", lookup.getDurationMs(),
+                    Map.<String, Object>of("hash", lookup.getEntry().getHash()));
+        }
+        return lookup.getEntry();
+    }
+
+    // The aggregator of the session, closed with it. Without a session, the windows only span this invocation.
+    private MeasureAggregator getMeasureAggregator() {
+        if (measureAggregator == null) {
+            if (session != null) {
+                measureAggregator = (MeasureAggregator) session.get(MEASURE_AGGREGATOR_KEY);
+                if (measureAggregator == null) {
+                    measureAggregator = new MeasureAggregator();
+                    session.put(MEASURE_AGGREGATOR_KEY, measureAggregator);
+                }
+            } else {
+                measureAggregator = new MeasureAggregator();
+            }
+        }
+        return measureAggregator;
+    }
+
+    @SuppressWarnings("unchecked")
+    private AttachmentService getAttachmentService() {
+        if (attachmentService == null) {
+            if (liveReporting == null) {
+                throw new IllegalStateException("Live reporting is not available, unable to attach files");
+            }
+            Long uploaderThreads = getInputOrPropertyAsLong(ATTACHMENT_UPLOADER_THREADS);
+            if (uploaderThreads != null) {
+                AttachmentService.setUploaderThreads(Math.toIntExact(uploaderThreads));
+            }
+            Map<String, CompletableFuture<AttachmentService.Attachment>> uploadsByHash;
+            if (session != null) {
+                uploadsByHash = (Map<String, CompletableFuture<AttachmentService.Attachment>>) session.get(UPLOADS_BY_HASH_KEY);
+                if (uploadsByHash == null) {
+                    uploadsByHash = new ConcurrentHashMap<>();
+                    session.put(UPLOADS_BY_HASH_KEY, uploadsByHash);
+                }
+            } else {
+                uploadsByHash = new ConcurrentHashMap<>();
+            }
+            attachmentService = new AttachmentService(liveReporting.fileUploads, uploadsByHash);
+        }
+        return attachmentService;
+    }
+
+    /**
+     * Starts measuring the JVM resources of sampled invocations. Subclasses overriding this method must call it.
+     */
+    @Override
+    public void beforeKeyword(String keywordName, Keyword annotation) {
+        super.beforeKeyword(keywordName, annotation);
+        Long windowSeconds = getInputOrPropertyAsLong(MEASURE_AGGREGATION_WINDOW_SECONDS);
+        measureWindowMs = windowSeconds != null ? windowSeconds * 1_000L : 0L;
+        Long outlierMs = getInputOrPropertyAsLong(MEASURE_AGGREGATION_OUTLIER_MS);
+        measureOutlierMs = outlierMs != null ? outlierMs : 0L;
+        double samplingRate = parseSamplingRate(getInputOrProperty(RESOURCE_SAMPLING_RATE));
+        if (ThreadLocalRandom.current().nextDouble() < samplingRate) {
+            resourceProbe = KeywordResourceProbe.start();
+        }
+    }
+
+    private static double parseSamplingRate(String value) {
+        if (value == null || value.isBlank()) {
+            return 0;
+        }
+        double rate;
+        try {
+            rate = Double.parseDouble(value.trim());
+        } catch (NumberFormatException e) {
+            rate = Double.NaN;
+        }
+        if (!(rate >= 0 && rate <= 1)) {
+            throw new IllegalArgumentException("illegal " + RESOURCE_SAMPLING_RATE + " '" + value
+                    + "' (must be a number between 0 and 1)");
+        }
+        return rate;
+    }
+
+    /**
+     * Publishes the resource measures, if sampled, waits for the attachments still being uploaded and publishes the
+     * summaries of the session's measure windows that are over (of all of them without a session). The resources are
+     * measured before waiting, so that they only cover the keyword itself. Subclasses overriding this method must
+     * call it.
+     */
+    @Override
+    public void afterKeyword(String keywordName, Keyword annotation) {
+        super.afterKeyword(keywordName, annotation);
+        if (resourceProbe != null) {
+            resourceProbe.stop(keywordName, output);
+            resourceProbe = null;
+        }
+        try {
+            awaitAttachments();
+        } finally {
+            if (measureWindowMs > 0 || measureAggregator != null) {
+                getMeasureAggregator().drain(session == null).forEach(output::addMeasure);
+                measureAggregator = null;
+            }
+        }
+    }
+
+    private void awaitAttachments() {
+        if (attachmentService == null) {
+            return;
+        }
+        Long timeoutSeconds = getInputOrPropertyAsLong(ATTACHMENT_TIMEOUT_SECONDS);
+        try {
+            AttachmentService.Summary summary = attachmentService.awaitCompletion(Duration.ofSeconds(
+                    timeoutSeconds != null ? timeoutSeconds : DEFAULT_ATTACHMENT_TIMEOUT_SECONDS));
+            output.add("attachmentsUploaded", summary.getUploaded());
+            output.add("attachmentsDeduplicated", summary.getDeduplicated());
+            output.add("attachmentBytesSaved", summary.getBytesSaved());
+            if (!summary.getDuplicates().isEmpty()) {
+                output.add("attachmentDuplicates", summary.getDuplicates().stream()
+                        .map(a -> a.getName() + " = " + a.getDuplicateOf() + " (" + a.getHash().substring(0, 12) + ")")
+                        .collect(Collectors.joining("; ")));
+            }
+            if (summary.getFailed() > 0) {
+                output.add("attachmentsFailed", summary.getFailed());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            attachmentService = null;
+        }
+    }
 }
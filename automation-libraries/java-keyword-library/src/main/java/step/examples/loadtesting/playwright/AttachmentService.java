@@ -0,0 +1,308 @@
+package step.examples.loadtesting.playwright;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import step.streaming.client.upload.StreamingUploads;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Uploads keyword attachments in the background through the live reporting file uploads, so that files of any size
+ * are streamed from disk instead of being loaded into memory.
+ * <p>
+ * Each attachment is first hashed (SHA-256); a content already uploaded with the same deduplication map, which the
+ * keyword library keeps per Step session, is not uploaded again. A duplicate completes along with the first upload of
+ * its content, without holding an uploader thread, and refers to that first attachment. Text-like content of at least
+ * {@link #COMPRESSION_MIN_BYTES} is gzipped to a temporary file on the fly and uploaded as {@code <name>.gz}. Hashing
+ * and compression use fixed-size buffers, so memory stays bounded whatever the file size.
+ * <p>
+ * Uploads run on a JVM-wide pool shared by all keywords of the agent. Each upload holds a thread until it completed,
+ * so threads are created on demand, one per upload in flight, up to {@link #setUploaderThreads(int)} (default
+ * {@value #DEFAULT_UPLOADER_THREADS}), and released after being idle for a while: an attachment only waits for the
+ * uploads of other sessions once that many are in flight. {@link #awaitCompletion(Duration)} waits for those started
+ * by this service. Files must not be modified or deleted before their upload has completed.
+ */
+public class AttachmentService {
+    private static final Logger logger = LoggerFactory.getLogger(AttachmentService.class);
+
+    public static final long COMPRESSION_MIN_BYTES = 8 * 1024;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String GZIP_MIME_TYPE = "application/gzip";
+
+    public static final int DEFAULT_UPLOADER_THREADS = 64;
+    private static final long UPLOADER_KEEP_ALIVE_SECONDS = 30;
+
+    // core = max threads timing out when idle: a new thread per task until the limit, then queued
+    private static final ThreadPoolExecutor uploader = new ThreadPoolExecutor(DEFAULT_UPLOADER_THREADS,
+            DEFAULT_UPLOADER_THREADS, UPLOADER_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+            new UploaderThreadFactory());
+
+    static {
+        uploader.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * The outcome of one attachment.
+     */
+    public static final class Attachment {
+        private final String name;
+        private final String hash;
+        private final long size;
+        private final long uploadedBytes;
+        private final boolean compressed;
+        private final String duplicateOf;
+
+        Attachment(String name, String hash, long size, long uploadedBytes, boolean compressed, String duplicateOf) {
+            this.name = name;
+            this.hash = hash;
+            this.size = size;
+            this.uploadedBytes = uploadedBytes;
+            this.compressed = compressed;
+            this.duplicateOf = duplicateOf;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Bytes actually uploaded: the compressed size, or 0 for a duplicate.
+         */
+        public long getUploadedBytes() {
+            return uploadedBytes;
+        }
+
+        public boolean isCompressed() {
+            return compressed;
+        }
+
+        public boolean isDuplicate() {
+            return duplicateOf != null;
+        }
+
+        /**
+         * The name of the attachment whose upload this duplicate refers to, or null if it was uploaded itself.
+         */
+        public String getDuplicateOf() {
+            return duplicateOf;
+        }
+    }
+
+    /**
+     * Counts of the attachments awaited by {@link #awaitCompletion(Duration)}.
+     */
+    public static final class Summary {
+        private int uploaded;
+        private int deduplicated;
+        private int failed;
+        private long bytesSaved;
+        private final List<Attachment> duplicates = new ArrayList<>();
+
+        public int getUploaded() {
+            return uploaded;
+        }
+
+        public int getDeduplicated() {
+            return deduplicated;
+        }
+
+        /**
+         * Attachments that failed or did not complete in time.
+         */
+        public int getFailed() {
+            return failed;
+        }
+
+        /**
+         * Bytes not uploaded thanks to compression and deduplication.
+         */
+        public long getBytesSaved() {
+            return bytesSaved;
+        }
+
+        public List<Attachment> getDuplicates() {
+            return duplicates;
+        }
+    }
+
+    private final StreamingUploads uploads;
+    private final Map<String, CompletableFuture<Attachment>> uploadsByHash;
+    private final List<CompletableFuture<Attachment>> pending = new ArrayList<>();
+
+    /**
+     * @param uploads       the file uploads of the keyword's live reporting
+     * @param uploadsByHash content hashes already uploaded; sharing the map shares the deduplication scope
+     */
+    public AttachmentService(StreamingUploads uploads, Map<String, CompletableFuture<Attachment>> uploadsByHash) {
+        this.uploads = uploads;
+        this.uploadsByHash = uploadsByHash;
+    }
+
+    /**
+     * Sets the maximum number of uploads in flight on this JVM, beyond which attachments are queued.
+     */
+    public static void setUploaderThreads(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("illegal uploader thread count (must be > 0)");
+        }
+        synchronized (uploader) {
+            if (threads > uploader.getMaximumPoolSize()) {
+                uploader.setMaximumPoolSize(threads);
+                uploader.setCorePoolSize(threads);
+            } else if (threads < uploader.getMaximumPoolSize()) {
+                uploader.setCorePoolSize(threads);
+                uploader.setMaximumPoolSize(threads);
+            }
+        }
+    }
+
+    static int getUploaderThreads() {
+        return uploader.getMaximumPoolSize();
+    }
+
+    /**
+     * Starts attaching the file in the background.
+     */
+    public synchronized CompletableFuture<Attachment> attach(File file, String mimeType) {
+        CompletableFuture<Attachment> attachment = CompletableFuture.supplyAsync(() -> {
+            try {
+                return ContentHash.ofFile(file.toPath());
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, uploader).thenCompose(hash -> attach(file, mimeType, hash));
+        pending.add(attachment);
+        return attachment;
+    }
+
+    /**
+     * Waits for all attachments started so far, for at most the given time in total.
+     */
+    public synchronized Summary awaitCompletion(Duration timeout) throws InterruptedException {
+        long deadlineNs = System.nanoTime() + timeout.toNanos();
+        Summary summary = new Summary();
+        for (CompletableFuture<Attachment> future : pending) {
+            try {
+                Attachment attachment = future.get(Math.max(0, deadlineNs - System.nanoTime()), TimeUnit.NANOSECONDS);
+                if (attachment.isDuplicate()) {
+                    summary.deduplicated++;
+                    summary.duplicates.add(attachment);
+                } else {
+                    summary.uploaded++;
+                }
+                summary.bytesSaved += attachment.getSize() - attachment.getUploadedBytes();
+            } catch (ExecutionException e) {
+                logger.error("Unable to upload attachment", e.getCause());
+                summary.failed++;
+            } catch (TimeoutException e) {
+                summary.failed++;
+            }
+        }
+        pending.clear();
+        return summary;
+    }
+
+    private CompletableFuture<Attachment> attach(File file, String mimeType, String hash) {
+        CompletableFuture<Attachment> own = new CompletableFuture<>();
+        CompletableFuture<Attachment> first = uploadsByHash.putIfAbsent(hash, own);
+        if (first != null) {
+            return first.handle((original, e) -> {
+                if (e != null) {
+                    // the first upload of this content failed, this one takes over
+                    uploadsByHash.remove(hash, first);
+                    return attach(file, mimeType, hash);
+                }
+                String originalName = original.isDuplicate() ? original.getDuplicateOf() : original.getName();
+                return CompletableFuture.completedFuture(
+                        new Attachment(file.getName(), hash, file.length(), 0, false, originalName));
+            }).thenCompose(Function.identity());
+        }
+        uploader.execute(() -> {
+            try {
+                own.complete(upload(file, mimeType, hash));
+            } catch (Exception e) {
+                own.completeExceptionally(e);
+            }
+        });
+        return own;
+    }
+
+    private Attachment upload(File file, String mimeType, String hash) throws Exception {
+        return isCompressible(mimeType) && file.length() >= COMPRESSION_MIN_BYTES
+                ? uploadCompressed(file, hash)
+                : uploadAsIs(file, hash, mimeType);
+    }
+
+    private Attachment uploadAsIs(File file, String hash, String mimeType) throws Exception {
+        if (mimeType.startsWith("text/")) {
+            uploads.startTextFileUpload(file, StandardCharsets.UTF_8, mimeType).complete();
+        } else {
+            uploads.startBinaryFileUpload(file, mimeType).complete();
+        }
+        return new Attachment(file.getName(), hash, file.length(), file.length(), false, null);
+    }
+
+    private Attachment uploadCompressed(File file, String hash) throws Exception {
+        // the upload is named after its file, hence the temporary directory
+        Path dir = Files.createTempDirectory("attachment-");
+        Path compressed = dir.resolve(file.getName() + ".gz");
+        try {
+            try (InputStream in = Files.newInputStream(file.toPath());
+                 OutputStream out = new GZIPOutputStream(Files.newOutputStream(compressed), BUFFER_SIZE)) {
+                in.transferTo(out);
+            }
+            long compressedSize = Files.size(compressed);
+            uploads.startBinaryFileUpload(compressed.toFile(), GZIP_MIME_TYPE).complete();
+            return new Attachment(file.getName(), hash, file.length(), compressedSize, true, null);
+        } finally {
+            Files.deleteIfExists(compressed);
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    static boolean isCompressible(String mimeType) {
+        String type = mimeType.toLowerCase(Locale.ROOT);
+        return type.startsWith("text/") || type.endsWith("json") || type.endsWith("xml") || type.endsWith("javascript");
+    }
+
+    private static final class UploaderThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "keyword-attachment-uploader-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package step.examples.loadtesting.playwright;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * JVM-wide cache of extracted automation packages, so that keywords do not retrieve and extract their package on
+ * every call.
+ * <p>
+ * Entries are looked up by generation, i.e. the class loader of the calling keyword, which Step replaces whenever a
+ * new package version is deployed. The first caller of a generation retrieves the package while concurrent callers
+ * wait for it (single flight). The retrieved package is then addressed by its SHA-256 content hash: a package
+ * delivered as archive is extracted, and one delivered as directory copied, once per hash into a directory owned by
+ * the cache, so that it outlives the directory Step retrieved it to. Generations with identical content share the same
+ * entry, which counts the generations referencing it. Generations are only weakly referenced: once the class loader
+ * of an undeployed version was garbage collected, its entry is released on the next lookup, and evicted, with the
+ * directory extracted for it deleted, when no live generation references it anymore. Several versions can thus be
+ * cached at once, e.g. during a redeployment while executions of the previous version still run.
+ */
+public class AutomationPackageCache {
+    private static final Logger logger = LoggerFactory.getLogger(AutomationPackageCache.class);
+
+    private static final AutomationPackageCache instance = new AutomationPackageCache();
+
+    /**
+     * An extracted automation package.
+     */
+    public static final class Entry {
+        private final String hash;
+        private final File directory; // owned by the cache, deleted on eviction
+        private volatile List<Path> files;
+        private int generations; // guarded by the cache
+
+        Entry(String hash, File directory) {
+            this.hash = hash;
+            this.directory = directory;
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        public File getDirectory() {
+            return directory;
+        }
+
+        /**
+         * The top-level files of the package directory, listed on first use.
+         */
+        public List<Path> getFiles() {
+            List<Path> listed = files;
+            if (listed == null) {
+                synchronized (this) {
+                    if (files == null) {
+                        try (Stream<Path> paths = Files.list(directory.toPath())) {
+                            files = paths.collect(Collectors.toUnmodifiableList());
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    }
+                    listed = files;
+                }
+            }
+            return listed;
+        }
+    }
+
+    /**
+     * The outcome of a lookup.
+     */
+    public static final class Lookup {
+        private final Entry entry;
+        private final boolean retrieved;
+        private final long durationMs;
+
+        Lookup(Entry entry, boolean retrieved, long durationMs) {
+            this.entry = entry;
+            this.retrieved = retrieved;
+            this.durationMs = durationMs;
+        }
+
+        public Entry getEntry() {
+            return entry;
+        }
+
+        /**
+         * Whether this lookup retrieved the package, as opposed to a cache hit (possibly after waiting for another
+         * caller's retrieval).
+         */
+        public boolean isRetrieved() {
+            return retrieved;
+        }
+
+        public long getDurationMs() {
+            return durationMs;
+        }
+    }
+
+    /**
+     * Weak key of a generation, so that the class loaders of undeployed versions can be collected. Once collected,
+     * the key only equals itself, and is enqueued to release its entry.
+     */
+    private static final class Generation extends WeakReference<Object> {
+        private final int identityHash;
+        private Entry entry; // guarded by the cache, set once the package was loaded
+
+        Generation(Object generation, ReferenceQueue<Object> queue) {
+            super(generation, queue);
+            this.identityHash = System.identityHashCode(generation);
+        }
+
+        @Override
+        public int hashCode() {
+            return identityHash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Generation)) return false;
+            Object generation = get();
+            return generation != null && generation == ((Generation) o).get();
+        }
+    }
+
+    private final ReferenceQueue<Object> collectedGenerations = new ReferenceQueue<>();
+    private final Map<Generation, CompletableFuture<Entry>> byGeneration = new HashMap<>();
+    private final Map<String, Entry> byHash = new HashMap<>();
+
+    AutomationPackageCache() {
+    }
+
+    public static AutomationPackageCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Returns the package of the given generation, calling the retriever if it has not been retrieved yet.
+     */
+    public Lookup get(Object generation, Supplier<File> retriever) {
+        long startNs = System.nanoTime();
+        Generation key = new Generation(generation, collectedGenerations);
+        CompletableFuture<Entry> own = new CompletableFuture<>();
+        CompletableFuture<Entry> existing;
+        synchronized (this) {
+            releaseCollectedGenerations();
+            existing = byGeneration.putIfAbsent(key, own);
+        }
+        if (existing != null) {
+            Entry entry = existing.join();
+            return new Lookup(entry, false, (System.nanoTime() - startNs) / 1_000_000L);
+        }
+        try {
+            Entry entry = load(retriever.get(), key);
+            own.complete(entry);
+            return new Lookup(entry, true, (System.nanoTime() - startNs) / 1_000_000L);
+        } catch (RuntimeException | IOException e) {
+            // let the next caller try again
+            synchronized (this) {
+                byGeneration.remove(key, own);
+            }
+            own.completeExceptionally(e);
+            throw e instanceof RuntimeException ? (RuntimeException) e : new UncheckedIOException((IOException) e);
+        }
+    }
+
+    private Entry load(File retrieved, Generation generation) throws IOException {
+        String hash = retrieved.isDirectory() ? ContentHash.ofDirectory(retrieved.toPath())
+                : ContentHash.ofFile(retrieved.toPath());
+        synchronized (this) {
+            Entry entry = byHash.get(hash);
+            if (entry == null) {
+                entry = new Entry(hash, retrieved.isDirectory() ? copy(retrieved.toPath(), hash)
+                        : extract(retrieved.toPath(), hash));
+                byHash.put(hash, entry);
+            }
+            entry.generations++;
+            generation.entry = entry;
+            return entry;
+        }
+    }
+
+    // Called with the lock held. A generation cannot be collected while it is being retrieved, as the caller holds it,
+    // so collected generations either reference their entry or failed to retrieve it.
+    private void releaseCollectedGenerations() {
+        Reference<?> reference;
+        while ((reference = collectedGenerations.poll()) != null) {
+            Generation generation = (Generation) reference;
+            byGeneration.remove(generation);
+            Entry entry = generation.entry;
+            if (entry != null && --entry.generations == 0) {
+                byHash.remove(entry.hash);
+                logger.info("Evicting automation package {}", entry.hash);
+                delete(entry.directory.toPath());
+            }
+        }
+    }
+
+    private static File copy(Path source, String hash) throws IOException {
+        Path directory = createDirectory(hash);
+        try (Stream<Path> paths = Files.walk(source)) {
+            for (Path path : (Iterable<Path>) paths::iterator) {
+                Path target = directory.resolve(source.relativize(path).toString());
+                if (Files.isDirectory(path)) {
+                    Files.createDirectories(target);
+                } else {
+                    Files.copy(path, target);
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            delete(directory);
+            throw e;
+        }
+        return directory.toFile();
+    }
+
+    private static File extract(Path archive, String hash) throws IOException {
+        Path directory = createDirectory(hash);
+        try (ZipInputStream zip = new ZipInputStream(Files.newInputStream(archive))) {
+            ZipEntry zipEntry;
+            while ((zipEntry = zip.getNextEntry()) != null) {
+                Path target = directory.resolve(zipEntry.getName()).normalize();
+                if (!target.startsWith(directory)) {
+                    throw new IOException("Invalid entry " + zipEntry.getName() + " in " + archive);
+                }
+                if (zipEntry.isDirectory()) {
+                    Files.createDirectories(target);
+                } else {
+                    Files.createDirectories(target.getParent());
+                    Files.copy(zip, target);
+                }
+            }
+        } catch (IOException e) {
+            delete(directory);
+            throw e;
+        }
+        return directory.toFile();
+    }
+
+    private static Path createDirectory(String hash) throws IOException {
+        return Files.createTempDirectory("automation-package-" + hash.substring(0, 12) + "-");
+    }
+
+    private static void delete(Path directory) {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        } catch (IOException e) {
+            logger.warn("Unable to delete " + directory, e);
+        }
+    }
+}
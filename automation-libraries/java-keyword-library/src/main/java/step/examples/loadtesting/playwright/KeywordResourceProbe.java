@@ -0,0 +1,122 @@
+package step.examples.loadtesting.playwright;
+
+import step.functions.io.OutputBuilder;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Records what one keyword invocation costs the agent JVM, between {@link #start()} and
+ * {@link #stop(String, OutputBuilder)}: wall-clock time, CPU time and allocated bytes of the keyword thread, and the
+ * garbage collections of the whole JVM.
+ * <p>
+ * CPU time and allocations are those of the calling thread only, work done by other threads (e.g. upload or producer
+ * pools) is not included. Garbage collections are counted JVM-wide, whichever thread caused them. Values that the JVM
+ * does not support are reported as -1.
+ */
+public final class KeywordResourceProbe {
+
+    private static final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private static final List<GarbageCollectorMXBean> collectors = ManagementFactory.getGarbageCollectorMXBeans();
+
+    private final long startNs;
+    private final long startBegin;
+    private final long startCpuNs;
+    private final long startAllocatedBytes;
+    private final long startGcCount;
+    private final long startGcMs;
+
+    private KeywordResourceProbe() {
+        startBegin = System.currentTimeMillis();
+        startCpuNs = cpuTimeNs();
+        startAllocatedBytes = allocatedBytes();
+        startGcCount = gcCount();
+        startGcMs = gcTimeMs();
+        startNs = System.nanoTime();
+    }
+
+    /**
+     * Starts recording on the calling thread.
+     */
+    public static KeywordResourceProbe start() {
+        return new KeywordResourceProbe();
+    }
+
+    /**
+     * Stops recording, on the thread that started it, and publishes the measures "&lt;name&gt;.jvm" (wall-clock time,
+     * with all values as data), "&lt;name&gt;.jvm.cpu" (CPU time) and "&lt;name&gt;.jvm.gc" (GC time, with the
+     * number of collections as data).
+     *
+     * @return the measure data of "&lt;name&gt;.jvm"
+     */
+    public Map<String, Object> stop(String name, OutputBuilder output) {
+        long wallMs = (System.nanoTime() - startNs) / 1_000_000L;
+        long cpuNs = delta(startCpuNs, cpuTimeNs());
+        long cpuMs = cpuNs < 0 ? -1L : cpuNs / 1_000_000L;
+        long allocated = delta(startAllocatedBytes, allocatedBytes());
+        long gcCount = delta(startGcCount, gcCount());
+        long gcMs = delta(startGcMs, gcTimeMs());
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("cpuMs", cpuMs);
+        data.put("allocatedBytes", allocated);
+        data.put("gcCount", gcCount);
+        data.put("gcMs", gcMs);
+        output.addMeasure(name + ".jvm", wallMs, startBegin, data);
+        if (cpuMs >= 0) {
+            output.addMeasure(name + ".jvm.cpu", cpuMs, startBegin);
+        }
+        if (gcMs >= 0) {
+            Map<String, Object> gcData = new HashMap<>();
+            gcData.put("gcCount", gcCount);
+            output.addMeasure(name + ".jvm.gc", gcMs, startBegin, gcData);
+        }
+        return data;
+    }
+
+    private static long delta(long start, long end) {
+        return start < 0 || end < 0 ? -1L : end - start;
+    }
+
+    private static long cpuTimeNs() {
+        return threads.isCurrentThreadCpuTimeSupported() ? threads.getCurrentThreadCpuTime() : -1L;
+    }
+
+    private static long allocatedBytes() {
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+            if (hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+                return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1L;
+    }
+
+    private static long gcCount() {
+        long count = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            long collections = collector.getCollectionCount();
+            if (collections < 0) {
+                return -1L;
+            }
+            count += collections;
+        }
+        return count;
+    }
+
+    private static long gcTimeMs() {
+        long time = 0;
+        for (GarbageCollectorMXBean collector : collectors) {
+            long collectionTime = collector.getCollectionTime();
+            if (collectionTime < 0) {
+                return -1L;
+            }
+            time += collectionTime;
+        }
+        return time;
+    }
+}
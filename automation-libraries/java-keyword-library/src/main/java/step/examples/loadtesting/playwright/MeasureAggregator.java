@@ -0,0 +1,173 @@
+package step.examples.loadtesting.playwright;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import step.core.reports.Measure;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.LongSupplier;
+
+/**
+ * Pre-aggregation of keyword measures, so that high-iteration load plans ship one summary per measure name and time
+ * window to the controller instead of every sample.
+ * <p>
+ * One aggregator is kept per keyword session (see {@link AbstractJavaLibraryKeyword}), so that the samples of
+ * different executions, or of different virtual users, running on the same agent are never mixed. Samples are recorded
+ * per name into a {@link MeasureHistogram} for the current window. Windows are aligned on multiples of the window
+ * length since the epoch, so that the summaries of several sessions and agents cover the same periods and can be
+ * merged. Once a window is over, its summary is handed out by {@link #drain(boolean)} to the next keyword invocation
+ * of the session: a measure named after the samples with {@value #SUMMARY_SUFFIX} appended, so that the controller
+ * never mixes window means with raw samples in the statistics of one name, with the window start as begin, the mean
+ * as duration and the statistics and encoded histogram as data.
+ * <p>
+ * Failed samples and outliers are published as they are instead: a sample is an outlier when it reaches the
+ * configured threshold or, without one, the 99th percentile of the previous window of its name. They are left out of
+ * the window's statistics, so that the controller does not count them twice, and only counted as {@code published}.
+ */
+public final class MeasureAggregator implements Closeable {
+
+    public static final String DATA_AGGREGATED = "aggregated";
+    public static final String SUMMARY_SUFFIX = ".aggregated";
+
+    private static final Logger logger = LoggerFactory.getLogger(MeasureAggregator.class);
+
+    private final LongSupplier clock;
+    private final Map<String, Series> series = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Measure> summaries = new ConcurrentLinkedQueue<>();
+
+    // The windows of one measure name
+    private static final class Series {
+        private long windowMs;
+        private long windowStart;
+        private MeasureHistogram histogram;
+        private long published;
+        private long failed;
+        // 99th percentile of the previous window, 0 before the first one ended
+        private long previousP99;
+    }
+
+    public MeasureAggregator() {
+        this(System::currentTimeMillis);
+    }
+
+    MeasureAggregator(LongSupplier clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Adds a sample to the window of its name, unless it is a failure or an outlier.
+     *
+     * @param windowMs  the window length, only used when the name has no open window
+     * @param outlierMs the duration from which a sample is an outlier, or 0 to use the previous window's p99
+     * @return true if the sample is a failure or an outlier and must be published as it is instead
+     */
+    public boolean record(Measure measure, long windowMs, long outlierMs) {
+        if (windowMs <= 0) {
+            throw new IllegalArgumentException("illegal aggregation window (must be > 0)");
+        }
+        long now = clock.getAsLong();
+        Series s = series.computeIfAbsent(measure.getName(), n -> new Series());
+        boolean failed = measure.getStatus() != null && measure.getStatus() != Measure.Status.PASSED;
+        synchronized (s) {
+            if (s.histogram != null && now >= s.windowStart + s.windowMs) {
+                close(measure.getName(), s);
+            }
+            if (s.histogram == null) {
+                s.windowMs = windowMs;
+                s.windowStart = now - Math.floorMod(now, windowMs);
+                s.histogram = new MeasureHistogram();
+            }
+            long threshold = outlierMs > 0 ? outlierMs : s.previousP99;
+            if (failed || (threshold > 0 && measure.getDuration() >= threshold)) {
+                s.published++;
+                if (failed) {
+                    s.failed++;
+                }
+                return true;
+            }
+            s.histogram.record(measure.getDuration());
+            return false;
+        }
+    }
+
+    /**
+     * Hands out the summaries of the windows that are over, or of all windows when {@code all} is set. Each summary
+     * is handed out only once.
+     */
+    public List<Measure> drain(boolean all) {
+        long now = clock.getAsLong();
+        for (Map.Entry<String, Series> entry : series.entrySet()) {
+            Series s = entry.getValue();
+            synchronized (s) {
+                if (s.histogram != null && (all || now >= s.windowStart + s.windowMs)) {
+                    close(entry.getKey(), s);
+                }
+            }
+        }
+        List<Measure> drained = new ArrayList<>();
+        Measure summary;
+        while ((summary = summaries.poll()) != null) {
+            drained.add(summary);
+        }
+        return drained;
+    }
+
+    /**
+     * Called when the session ends. A keyword session has no output left to publish to at that point, so the samples
+     * of the windows that were not drained by then are only reported in the agent log.
+     */
+    @Override
+    public void close() {
+        long lost = 0;
+        for (Series s : series.values()) {
+            synchronized (s) {
+                if (s.histogram != null) {
+                    lost += s.histogram.getCount();
+                    s.histogram = null;
+                }
+            }
+        }
+        for (Measure summary : summaries) {
+            lost += (long) summary.getData().get("count");
+        }
+        summaries.clear();
+        if (lost > 0) {
+            logger.warn("{} aggregated measure samples of the session were not published", lost);
+        }
+    }
+
+    // Called with the series locked. Windows of published samples only have no summary.
+    private void close(String name, Series s) {
+        MeasureHistogram histogram = s.histogram;
+        s.histogram = null;
+        long published = s.published;
+        long failed = s.failed;
+        s.published = 0;
+        s.failed = 0;
+        if (histogram.getCount() == 0) {
+            return;
+        }
+        Map<String, Object> data = new HashMap<>();
+        data.put(DATA_AGGREGATED, true);
+        data.put("windowMs", s.windowMs);
+        data.put("count", histogram.getCount());
+        data.put("published", published);
+        data.put("failed", failed);
+        data.put("sum", histogram.getSum());
+        data.put("min", histogram.getMin());
+        data.put("max", histogram.getMax());
+        data.put("p50", histogram.getPercentile(50));
+        data.put("p90", histogram.getPercentile(90));
+        data.put("p99", histogram.getPercentile(99));
+        data.put("histogram", histogram.encode());
+        summaries.add(new Measure(name + SUMMARY_SUFFIX, histogram.getMean(), s.windowStart, data,
+                Measure.Status.PASSED));
+        s.previousP99 = histogram.getPercentile(99);
+    }
+}
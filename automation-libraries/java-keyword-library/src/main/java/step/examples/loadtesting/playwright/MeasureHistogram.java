@@ -0,0 +1,116 @@
+package step.examples.loadtesting.playwright;
+
+import java.util.StringJoiner;
+
+/**
+ * Compact log-linear histogram of measure durations in milliseconds, with exact count, sum, min and max.
+ * <p>
+ * Values below {@code 2 * SUB_BUCKETS} ms are counted exactly; above that every power of two is split into
+ * {@code SUB_BUCKETS} linear buckets, which bounds the relative error of reported percentiles to about 3%. Bucket
+ * boundaries are fixed, so histograms recorded on different agents or in different windows can be merged by adding
+ * their bucket counts (see {@link #encode()}). Instances are not thread-safe.
+ */
+public final class MeasureHistogram {
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKETS << 1;
+    // values are capped at 2^32 ms (about 50 days)
+    private static final int MAX_SHIFT = 31 - SUB_BUCKET_BITS;
+    private static final long MAX_VALUE_MS = (1L << 32) - 1;
+
+    private final long[] counts = new long[LINEAR_LIMIT + MAX_SHIFT * SUB_BUCKETS];
+    private long count;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    public void record(long valueMs) {
+        long value = Math.min(Math.max(0L, valueMs), MAX_VALUE_MS);
+        counts[indexOf(value)]++;
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public void add(MeasureHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getSum() {
+        return sum;
+    }
+
+    /**
+     * The smallest recorded value, or 0 if the histogram is empty.
+     */
+    public long getMin() {
+        return count == 0 ? 0L : min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public long getMean() {
+        return count == 0 ? 0L : Math.round((double) sum / count);
+    }
+
+    /**
+     * Returns the highest value equivalent to the given percentile, never more than the recorded maximum.
+     */
+    public long getPercentile(double percentile) {
+        if (count == 0) return 0L;
+        long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestEquivalentValue(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Encodes the non-empty buckets as {@code "index:count,index:count,..."}. Summing the counts of equal indexes
+     * over several encodings merges the histograms.
+     */
+    public String encode() {
+        StringJoiner joiner = new StringJoiner(",");
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] != 0) {
+                joiner.add(i + ":" + counts[i]);
+            }
+        }
+        return joiner.toString();
+    }
+
+    private static int indexOf(long valueMs) {
+        if (valueMs < LINEAR_LIMIT) {
+            return (int) valueMs;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(valueMs)) - SUB_BUCKET_BITS;
+        int top = (int) (valueMs >>> shift); // in [SUB_BUCKETS, 2 * SUB_BUCKETS)
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + (top - SUB_BUCKETS);
+    }
+
+    private static long highestEquivalentValue(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int shift = (index - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+        long top = (index - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+}
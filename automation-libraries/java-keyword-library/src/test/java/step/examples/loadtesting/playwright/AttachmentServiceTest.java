@@ -0,0 +1,143 @@
+package step.examples.loadtesting.playwright;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import step.streaming.client.upload.StreamingUploads;
+import step.streaming.client.upload.impl.local.LocalDirectoryBackedStreamingUploadProvider;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class AttachmentServiceTest {
+
+    private Path dir;
+    private Path uploadDir;
+    private ExecutorService executor;
+    private StreamingUploads uploads;
+    private final Map<String, CompletableFuture<AttachmentService.Attachment>> uploadsByHash = new ConcurrentHashMap<>();
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("attachment-test-");
+        uploadDir = Files.createDirectory(dir.resolve("uploads"));
+        executor = Executors.newCachedThreadPool();
+        uploads = new StreamingUploads(new LocalDirectoryBackedStreamingUploadProvider(executor, uploadDir.toFile()));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        uploads.close();
+        executor.shutdownNow();
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void textIsCompressed() throws Exception {
+        byte[] content = "a line of log output\n".repeat(10_000).getBytes(StandardCharsets.UTF_8);
+        File file = write("output.log", content);
+
+        AttachmentService service = new AttachmentService(uploads, uploadsByHash);
+        AttachmentService.Attachment attachment = service.attach(file, "text/plain").get();
+        AttachmentService.Summary summary = service.awaitCompletion(Duration.ofSeconds(10));
+
+        assertTrue(attachment.isCompressed());
+        assertTrue(attachment.getUploadedBytes() < content.length / 10);
+        assertEquals(1, summary.getUploaded());
+        assertEquals(content.length - attachment.getUploadedBytes(), summary.getBytesSaved());
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(findUpload("output.log.gz")))) {
+            assertArrayEquals(content, in.readAllBytes());
+        }
+    }
+
+    @Test
+    public void binaryAndSmallContentIsUploadedAsIs() throws Exception {
+        byte[] content = new byte[100_000];
+        new Random(1).nextBytes(content);
+        File binary = write("video.webm", content);
+        File small = write("small.json", "{}".getBytes(StandardCharsets.UTF_8));
+
+        AttachmentService service = new AttachmentService(uploads, uploadsByHash);
+        assertFalse(service.attach(binary, "video/webm").get().isCompressed());
+        assertFalse(service.attach(small, "application/json").get().isCompressed());
+        assertEquals(2, service.awaitCompletion(Duration.ofSeconds(10)).getUploaded());
+        assertArrayEquals(content, Files.readAllBytes(findUpload("video.webm")));
+    }
+
+    @Test
+    public void identicalContentIsUploadedOnce() throws Exception {
+        byte[] content = new byte[50_000];
+        new Random(2).nextBytes(content);
+        File first = write("first.bin", content);
+        File second = write("second.bin", content);
+
+        AttachmentService service = new AttachmentService(uploads, uploadsByHash);
+        service.attach(first, "application/octet-stream");
+        service.attach(second, "application/octet-stream");
+        AttachmentService.Summary summary = service.awaitCompletion(Duration.ofSeconds(10));
+        assertEquals(1, summary.getUploaded());
+        assertEquals(1, summary.getDeduplicated());
+        assertEquals(content.length, summary.getBytesSaved());
+        // either file may be hashed first, the duplicate refers to the other one
+        AttachmentService.Attachment duplicate = summary.getDuplicates().get(0);
+        assertEquals(Set.of("first.bin", "second.bin"), Set.of(duplicate.getName(), duplicate.getDuplicateOf()));
+
+        // the deduplication scope is the map, not the service
+        AttachmentService next = new AttachmentService(uploads, uploadsByHash);
+        AttachmentService.Attachment third = next.attach(write("third.bin", content), "application/octet-stream").get();
+        assertTrue(third.isDuplicate());
+        assertEquals(duplicate.getDuplicateOf(), third.getDuplicateOf());
+        try (Stream<Path> uploaded = Files.walk(uploadDir)) {
+            assertEquals(1, uploaded.filter(Files::isRegularFile).count());
+        }
+    }
+
+    @Test
+    public void uploaderThreadsAreConfigurable() {
+        assertEquals(AttachmentService.DEFAULT_UPLOADER_THREADS, AttachmentService.getUploaderThreads());
+        try {
+            AttachmentService.setUploaderThreads(200);
+            assertEquals(200, AttachmentService.getUploaderThreads());
+            AttachmentService.setUploaderThreads(8);
+            assertEquals(8, AttachmentService.getUploaderThreads());
+            assertThrows(IllegalArgumentException.class, () -> AttachmentService.setUploaderThreads(0));
+        } finally {
+            AttachmentService.setUploaderThreads(AttachmentService.DEFAULT_UPLOADER_THREADS);
+        }
+    }
+
+    private File write(String name, byte[] content) throws IOException {
+        return Files.write(dir.resolve(name), content).toFile();
+    }
+
+    // the local provider prefixes uploaded files with a timestamp
+    private Path findUpload(String name) throws IOException {
+        try (Stream<Path> paths = Files.walk(uploadDir)) {
+            return paths.filter(p -> p.getFileName().toString().endsWith("_" + name)).findFirst()
+                    .orElseThrow(() -> new AssertionError(name + " not uploaded"));
+        }
+    }
+}
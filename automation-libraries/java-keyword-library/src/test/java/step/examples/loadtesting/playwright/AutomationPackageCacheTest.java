@@ -0,0 +1,174 @@
+package step.examples.loadtesting.playwright;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class AutomationPackageCacheTest {
+
+    private Path dir;
+    private final AutomationPackageCache cache = new AutomationPackageCache();
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("ap-cache-test-");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+
+    @Test
+    public void concurrentCallersShareOneRetrieval() throws Exception {
+        File archive = zip("v1.jar", "keywords.yaml", "v1");
+        AtomicInteger retrievals = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+        Object generation = new Object();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<AutomationPackageCache.Lookup>> lookups = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                lookups.add(executor.submit(() -> cache.get(generation, () -> {
+                    retrievals.incrementAndGet();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return archive;
+                })));
+            }
+            Thread.sleep(100);
+            release.countDown();
+            int retrieved = 0;
+            for (Future<AutomationPackageCache.Lookup> lookup : lookups) {
+                retrieved += lookup.get().isRetrieved() ? 1 : 0;
+                assertSame(lookups.get(0).get().getEntry(), lookup.get().getEntry());
+            }
+            assertEquals(1, retrievals.get());
+            assertEquals(1, retrieved);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        AutomationPackageCache.Entry entry = cache.get(generation, () -> archive).getEntry();
+        assertEquals(1, entry.getFiles().size());
+        assertEquals("v1", Files.readString(entry.getDirectory().toPath().resolve("keywords.yaml")));
+        cleanUp(entry);
+    }
+
+    @Test
+    public void generationsWithIdenticalContentShareTheirEntry() throws Exception {
+        File first = zip("first.jar", "keywords.yaml", "same");
+        File second = zip("second.jar", "keywords.yaml", "same");
+        AutomationPackageCache.Lookup a = cache.get(new Object(), () -> first);
+        AutomationPackageCache.Lookup b = cache.get(new Object(), () -> second);
+        assertTrue(b.isRetrieved());
+        assertSame(a.getEntry(), b.getEntry());
+        cleanUp(a.getEntry());
+    }
+
+    @Test
+    public void liveGenerationsKeepTheirEntries() throws Exception {
+        File v1 = zip("v1.jar", "keywords.yaml", "v1");
+        File v2 = zip("v2.jar", "keywords.yaml", "v2");
+        Object generation1 = new Object();
+        Object generation2 = new Object();
+        AutomationPackageCache.Entry entry1 = cache.get(generation1, () -> v1).getEntry();
+        AutomationPackageCache.Entry entry2 = cache.get(generation2, () -> v2).getEntry();
+        assertNotEquals(entry1.getHash(), entry2.getHash());
+
+        // e.g. executions of the previous version still running during a redeployment
+        AutomationPackageCache.Lookup again1 = cache.get(generation1, () -> v1);
+        AutomationPackageCache.Lookup again2 = cache.get(generation2, () -> v2);
+        assertFalse(again1.isRetrieved());
+        assertFalse(again2.isRetrieved());
+        assertSame(entry1, again1.getEntry());
+        assertEquals(1, entry1.getFiles().size());
+        assertEquals(1, entry2.getFiles().size());
+        cleanUp(entry1);
+        cleanUp(entry2);
+    }
+
+    @Test
+    public void collectedGenerationIsEvicted() throws Exception {
+        File v1 = zip("v1.jar", "keywords.yaml", "v1");
+        File v2 = zip("v2.jar", "keywords.yaml", "v2");
+        Object generation1 = new Object();
+        AutomationPackageCache.Entry entry1 = cache.get(generation1, () -> v1).getEntry();
+        Object generation2 = new Object();
+        AutomationPackageCache.Entry entry2 = cache.get(generation2, () -> v2).getEntry();
+        AutomationPackageCache.Entry shared = cache.get(new Object(), () -> v2).getEntry();
+        assertSame(entry2, shared);
+
+        // the class loader of the undeployed version is collected, its entry is released on the next lookup
+        generation1 = null;
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (entry1.getDirectory().exists() && System.currentTimeMillis() < deadline) {
+            System.gc();
+            Thread.sleep(10);
+            cache.get(generation2, () -> v2);
+        }
+        assertFalse(entry1.getDirectory().exists());
+        // still referenced by generation2, although the other generation sharing it may have been collected as well
+        assertTrue(entry2.getDirectory().exists());
+        cleanUp(entry2);
+    }
+
+    @Test
+    public void directoriesAreCopiedIntoTheCache() throws Exception {
+        Path extracted = Files.createDirectories(dir.resolve("extracted").resolve("lib"));
+        Files.writeString(extracted.resolve("keywords.jar"), "v1");
+        Path retrieved = extracted.getParent();
+        AutomationPackageCache.Entry entry = cache.get(new Object(), retrieved::toFile).getEntry();
+        assertNotEquals(retrieved.toFile(), entry.getDirectory());
+        assertEquals(ContentHash.ofDirectory(retrieved), entry.getHash());
+        // Step may delete the directory it retrieved the package to, the cached copy is not affected
+        tearDown();
+        assertEquals("v1", Files.readString(entry.getDirectory().toPath().resolve("lib").resolve("keywords.jar")));
+        cleanUp(entry);
+    }
+
+    private File zip(String name, String entryName, String content) throws IOException {
+        Path archive = dir.resolve(name);
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(archive))) {
+            zip.putNextEntry(new ZipEntry(entryName));
+            zip.write(content.getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        }
+        return archive.toFile();
+    }
+
+    // cached directories are owned by the cache and only deleted on eviction
+    private static void cleanUp(AutomationPackageCache.Entry entry) throws IOException {
+        try (Stream<Path> paths = Files.walk(entry.getDirectory().toPath())) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package step.examples.loadtesting.playwright;
+
+import org.junit.Test;
+import step.core.reports.Measure;
+import step.functions.io.OutputBuilder;
+
+import javax.json.Json;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class KeywordResourceProbeTest {
+
+    @Test
+    public void allocationsOfTheKeywordThreadAreMeasured() {
+        OutputBuilder output = new OutputBuilder();
+        KeywordResourceProbe probe = KeywordResourceProbe.start();
+        byte[][] blocks = new byte[16][];
+        for (int i = 0; i < blocks.length; i++) {
+            blocks[i] = new byte[1024 * 1024];
+        }
+        Map<String, Object> data = probe.stop("Allocate", output);
+
+        assertEquals(16, blocks.length);
+        assertTrue((long) data.get("allocatedBytes") >= 16L * 1024 * 1024);
+        assertTrue((long) data.get("gcCount") >= 0);
+        Map<String, Measure> measures = measures(output);
+        assertTrue(measures.containsKey("Allocate.jvm"));
+        assertTrue(measures.containsKey("Allocate.jvm.cpu"));
+        assertTrue(measures.containsKey("Allocate.jvm.gc"));
+    }
+
+    @Test
+    public void onlySampledInvocationsAreMeasured() {
+        assertTrue(measures(invoke("1")).containsKey("JavaKeywordInLib.jvm"));
+        assertTrue(measures(invoke("0")).isEmpty());
+        assertTrue(measures(invoke(null)).isEmpty());
+    }
+
+    @Test
+    public void invalidSamplingRatesAreRejected() {
+        for (String samplingRate : new String[]{"often", "1.5", "-0.1"}) {
+            try {
+                invoke(samplingRate);
+                fail("sampling rate " + samplingRate + " accepted");
+            } catch (IllegalArgumentException e) {
+                assertFalse(e instanceof NumberFormatException);
+                assertTrue(e.getMessage().contains(AbstractJavaLibraryKeyword.RESOURCE_SAMPLING_RATE));
+            }
+        }
+    }
+
+    private static OutputBuilder invoke(String samplingRate) {
+        AbstractJavaLibraryKeyword keyword = new AbstractJavaLibraryKeyword();
+        keyword.setInput(samplingRate == null ? Json.createObjectBuilder().build()
+                : Json.createObjectBuilder().add(AbstractJavaLibraryKeyword.RESOURCE_SAMPLING_RATE, samplingRate).build());
+        keyword.setProperties(Map.of());
+        keyword.setOutputBuilder(new OutputBuilder());
+        keyword.beforeKeyword("JavaKeywordInLib", null);
+        keyword.JavaKeywordInLib();
+        keyword.afterKeyword("JavaKeywordInLib", null);
+        return keyword.getOutputBuilder();
+    }
+
+    private static Map<String, Measure> measures(OutputBuilder output) {
+        return output.build().getMeasures().stream().collect(Collectors.toMap(Measure::getName, m -> m));
+    }
+}
@@ -0,0 +1,159 @@
+package step.examples.loadtesting.playwright;
+
+import org.junit.Test;
+import step.core.reports.Measure;
+import step.functions.io.AbstractSession;
+import step.functions.io.OutputBuilder;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MeasureAggregatorTest {
+
+    private final AtomicLong now = new AtomicLong(1_000_000L);
+    private final MeasureAggregator aggregator = new MeasureAggregator(now::get);
+
+    @Test
+    public void oneSummaryPerNameAndWindow() {
+        for (int i = 1; i <= 100; i++) {
+            assertFalse(aggregator.record(measure("Login", i, Measure.Status.PASSED), 10_000, 0));
+            aggregator.record(measure("Search", 5, Measure.Status.PASSED), 10_000, 0);
+        }
+        assertTrue(aggregator.drain(false).isEmpty());
+
+        now.addAndGet(10_000);
+        Map<String, Measure> summaries = byName(aggregator.drain(false));
+        assertEquals(2, summaries.size());
+        Measure login = summaries.get("Login" + MeasureAggregator.SUMMARY_SUFFIX);
+        assertEquals(1_000_000L, login.getBegin());
+        assertEquals(51L, login.getDuration());
+        assertEquals(true, login.getData().get(MeasureAggregator.DATA_AGGREGATED));
+        assertEquals(100L, login.getData().get("count"));
+        assertEquals(5050L, login.getData().get("sum"));
+        assertEquals(1L, login.getData().get("min"));
+        assertEquals(100L, login.getData().get("max"));
+        assertEquals(50L, login.getData().get("p50"));
+        assertEquals(99L, (long) login.getData().get("p99"), 2);
+        // Handed out once
+        assertTrue(aggregator.drain(true).isEmpty());
+    }
+
+    @Test
+    public void windowsAreAlignedOnTheEpoch() {
+        now.set(12_345L);
+        aggregator.record(measure("Login", 1, Measure.Status.PASSED), 10_000, 1_000);
+        now.set(20_000L);
+        aggregator.record(measure("Login", 2, Measure.Status.PASSED), 10_000, 1_000);
+        List<Measure> summaries = aggregator.drain(true);
+        assertEquals(List.of(10_000L, 20_000L), summaries.stream().map(Measure::getBegin).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void failuresAndOutliersArePublishedRaw() {
+        assertTrue(aggregator.record(measure("Login", 1, Measure.Status.FAILED), 10_000, 0));
+        // Without a threshold, outliers are relative to the previous window, none so far
+        assertFalse(aggregator.record(measure("Login", 10_000, Measure.Status.PASSED), 10_000, 0));
+        assertTrue(aggregator.record(measure("Login", 500, Measure.Status.PASSED), 10_000, 500));
+        assertFalse(aggregator.record(measure("Login", 499, Measure.Status.PASSED), 10_000, 500));
+
+        now.addAndGet(10_000);
+        for (int i = 1; i <= 100; i++) {
+            aggregator.record(measure("Search", i, Measure.Status.PASSED), 10_000, 0);
+        }
+        now.addAndGet(10_000);
+        assertFalse(aggregator.record(measure("Search", 50, Measure.Status.PASSED), 10_000, 0));
+        assertTrue(aggregator.record(measure("Search", 150, Measure.Status.PASSED), 10_000, 0));
+
+        List<Measure> summaries = aggregator.drain(true);
+        assertTrue(summaries.stream().allMatch(m -> m.getName().endsWith(MeasureAggregator.SUMMARY_SUFFIX)));
+        // published samples are left out of the statistics, so that the controller does not count them twice
+        Measure login = summaries.stream()
+                .filter(m -> m.getName().equals("Login" + MeasureAggregator.SUMMARY_SUFFIX)).findFirst().get();
+        assertEquals(2L, login.getData().get("count"));
+        assertEquals(10_499L, login.getData().get("sum"));
+        assertEquals(2L, login.getData().get("published"));
+        assertEquals(1L, login.getData().get("failed"));
+        Measure search = summaries.stream()
+                .filter(m -> m.getName().equals("Search" + MeasureAggregator.SUMMARY_SUFFIX))
+                .reduce((first, second) -> second).get();
+        assertEquals(1L, search.getData().get("count"));
+        assertEquals(1L, search.getData().get("published"));
+    }
+
+    @Test
+    public void keywordMeasuresAreAggregatedWhenEnabled() {
+        // Without a session, the windows only span the invocation
+        List<Measure> measures = invoke(Map.of(AbstractJavaLibraryKeyword.MEASURE_AGGREGATION_WINDOW_SECONDS, "3600"),
+                null).build().getMeasures();
+        Map<String, Measure> summaries = byName(measures);
+        assertEquals(2, summaries.size());
+        assertEquals(2L, summaries.get("MeasureAggregatorTest.step" + MeasureAggregator.SUMMARY_SUFFIX).getData().get("count"));
+        assertEquals(1L, summaries.get("MeasureAggregatorTest.nested" + MeasureAggregator.SUMMARY_SUFFIX).getData().get("count"));
+    }
+
+    @Test
+    public void keywordMeasuresAreAggregatedPerSession() {
+        Map<String, String> properties = Map.of(AbstractJavaLibraryKeyword.MEASURE_AGGREGATION_WINDOW_SECONDS, "3600");
+        AbstractSession session = new AbstractSession();
+        AbstractSession otherSession = new AbstractSession();
+        assertTrue(invoke(properties, session).build().getMeasures().isEmpty());
+        assertTrue(invoke(properties, session).build().getMeasures().isEmpty());
+        assertTrue(invoke(properties, otherSession).build().getMeasures().isEmpty());
+
+        Map<String, Measure> summaries = byName(flush(session).build().getMeasures());
+        assertEquals(4L, summaries.get("MeasureAggregatorTest.step" + MeasureAggregator.SUMMARY_SUFFIX).getData().get("count"));
+        assertEquals(2L, summaries.get("MeasureAggregatorTest.nested" + MeasureAggregator.SUMMARY_SUFFIX).getData().get("count"));
+        summaries = byName(flush(otherSession).build().getMeasures());
+        assertEquals(2L, summaries.get("MeasureAggregatorTest.step" + MeasureAggregator.SUMMARY_SUFFIX).getData().get("count"));
+        assertTrue(flush(session).build().getMeasures().isEmpty());
+    }
+
+    @Test
+    public void keywordMeasuresArePublishedWhenDisabled() {
+        List<Measure> measures = invoke(Map.of(), null).build().getMeasures();
+        assertEquals(3, measures.size());
+        assertEquals("MeasureAggregatorTest.nested", measures.get(0).getName());
+        assertEquals("x", measures.get(0).getData().get("tag"));
+    }
+
+    private static OutputBuilder invoke(Map<String, String> properties, AbstractSession session) {
+        AbstractJavaLibraryKeyword keyword = new AbstractJavaLibraryKeyword();
+        keyword.setProperties(properties);
+        keyword.setSession(session);
+        keyword.setOutputBuilder(new OutputBuilder());
+        keyword.beforeKeyword("Aggregated", null);
+        keyword.startMeasure("MeasureAggregatorTest.step");
+        keyword.startMeasure("MeasureAggregatorTest.nested");
+        keyword.stopMeasure(Map.of("tag", "x"));
+        keyword.stopMeasure();
+        keyword.addMeasure("MeasureAggregatorTest.step", 12);
+        keyword.afterKeyword("Aggregated", null);
+        return keyword.getOutputBuilder();
+    }
+
+    private static OutputBuilder flush(AbstractSession session) {
+        AbstractJavaLibraryKeyword keyword = new AbstractJavaLibraryKeyword();
+        keyword.setProperties(Map.of());
+        keyword.setSession(session);
+        keyword.setOutputBuilder(new OutputBuilder());
+        keyword.beforeKeyword("FlushAggregatedMeasures", null);
+        keyword.FlushAggregatedMeasures();
+        keyword.afterKeyword("FlushAggregatedMeasures", null);
+        return keyword.getOutputBuilder();
+    }
+
+    private static Measure measure(String name, long durationMs, Measure.Status status) {
+        return new Measure(name, durationMs, System.currentTimeMillis(), new HashMap<>(), status);
+    }
+
+    private static Map<String, Measure> byName(List<Measure> measures) {
+        return measures.stream().collect(Collectors.toMap(Measure::getName, m -> m));
+    }
+}
@@ -0,0 +1,50 @@
+package step.examples.loadtesting.playwright;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MeasureHistogramTest {
+
+    @Test
+    public void percentilesStayWithinTheBucketError() {
+        MeasureHistogram histogram = new MeasureHistogram();
+        for (int i = 1; i <= 10_000; i++) {
+            histogram.record(i);
+        }
+        assertEquals(10_000L, histogram.getCount());
+        assertEquals(1L, histogram.getMin());
+        assertEquals(10_000L, histogram.getMax());
+        assertEquals(5_000L, histogram.getPercentile(50), 5_000 * 0.04);
+        assertEquals(9_900L, histogram.getPercentile(99), 9_900 * 0.04);
+        assertEquals(10_000L, histogram.getPercentile(100));
+    }
+
+    @Test
+    public void mergedHistogramsEqualOneRecordingAll() {
+        MeasureHistogram all = new MeasureHistogram();
+        MeasureHistogram first = new MeasureHistogram();
+        MeasureHistogram second = new MeasureHistogram();
+        for (int i = 0; i < 1_000; i++) {
+            long value = (i * 7919L) % 3_000;
+            all.record(value);
+            (i % 2 == 0 ? first : second).record(value);
+        }
+        first.add(second);
+        assertEquals(all.encode(), first.encode());
+        assertEquals(all.getSum(), first.getSum());
+        assertEquals(all.getPercentile(90), first.getPercentile(90));
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        MeasureHistogram histogram = new MeasureHistogram();
+        histogram.record(3);
+        histogram.record(3);
+        histogram.record(-1);
+        assertEquals("0:1,3:2", histogram.encode());
+        assertEquals(3L, histogram.getPercentile(50));
+        assertTrue(new MeasureHistogram().encode().isEmpty());
+    }
+}
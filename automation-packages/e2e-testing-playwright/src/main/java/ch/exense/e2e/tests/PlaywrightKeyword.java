@@ -6,21 +6,54 @@ import step.grid.io.AttachmentHelper;
 import step.handlers.javahandler.AbstractKeyword;
 import step.handlers.javahandler.Input;
 import step.handlers.javahandler.Keyword;
-import step.streaming.common.QuotaExceededException;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.concurrent.ExecutionException;
+import java.util.Comparator;
+import java.util.stream.Stream;
 
 public class PlaywrightKeyword extends AbstractKeyword {
 
+    public static final String ARTIFACT_POLICY = "artifactPolicy";
+    public static final String LEAN_MODE = "leanMode";
+    private static final String TRACE_MIME_TYPE = "application/vnd.step.playwright-trace+zip";
+
+    /**
+     * When the Playwright trace and video of an iteration are kept. Recording has a cost, so it is only enabled when
+     * the artifacts may be kept; with {@link #ON_FAILURE}, the artifacts of successful iterations are discarded
+     * without ever being read.
+     */
+    enum ArtifactPolicy {
+        ALWAYS, ON_FAILURE, NEVER;
+
+        static ArtifactPolicy parse(String value) {
+            if (value == null || value.trim().isEmpty()) {
+                return ON_FAILURE;
+            }
+            switch (value.trim().toLowerCase()) {
+                case "always":
+                    return ALWAYS;
+                case "onfailure":
+                    return ON_FAILURE;
+                case "never":
+                    return NEVER;
+                default:
+                    throw new IllegalArgumentException("Invalid " + ARTIFACT_POLICY + " '" + value + "' (must be always, onFailure or never)");
+            }
+        }
+    }
+
     private Playwright playwright;
     private Browser browser;
     private Page page;
     private BrowserContext context;
     private Video video;
+    private ArtifactPolicy artifactPolicy;
+    private Path artifactDir;
+    private boolean tracing;
+    private boolean failed;
 
     @Keyword(name = "Buy MacBook in OpenCart")
     public void buyMacBookInOpenCart(@Input(name = "shouldFail", required = true) boolean shouldFail) throws InterruptedException {
@@ -49,44 +82,47 @@ public class PlaywrightKeyword extends AbstractKeyword {
         page.locator("#input-payment-zone").selectOption(new SelectOption().setLabel("Zürich"));
         page.locator("#button-guest").click();
     }
-    
+
     @Override
     public void beforeKeyword(String keywordName, Keyword annotation) {
+        // The policy can be set as keyword input or as parameter, the default being onFailure
+        artifactPolicy = ArtifactPolicy.parse(getInputOrProperty(ARTIFACT_POLICY));
+        failed = false;
+        // Lean mode runs headless. Unlike in the load-testing keywords, no request is blocked
+        boolean leanMode = Boolean.parseBoolean(getInputOrProperty(LEAN_MODE));
         playwright = Playwright.create();
-        browser = playwright.chromium().launch(new BrowserType.LaunchOptions().setHeadless(false));
-        context = browser.newContext(new Browser.NewContextOptions().setRecordVideoDir(Paths.get("videos/")).setRecordVideoSize(640,480));
+        browser = playwright.chromium().launch(new BrowserType.LaunchOptions().setHeadless(leanMode));
+        Browser.NewContextOptions contextOptions = new Browser.NewContextOptions();
+        if (artifactPolicy != ArtifactPolicy.NEVER) {
+            try {
+                artifactDir = Files.createTempDirectory("playwright-artifacts-");
+            } catch (IOException e) {
+                throw new RuntimeException("Unable to create the directory for playwright artifacts", e);
+            }
+            contextOptions.setRecordVideoDir(artifactDir.resolve("videos")).setRecordVideoSize(640,480);
+        }
+        context = browser.newContext(contextOptions);
         page = context.newPage();
-        video = page.video();
-        Tracing.StartOptions startOptions = new Tracing.StartOptions()
-                .setScreenshots(true)
-                .setSnapshots(true);
-        context.tracing().start(startOptions);
+        if (artifactPolicy != ArtifactPolicy.NEVER) {
+            video = page.video();
+            Tracing.StartOptions startOptions = new Tracing.StartOptions()
+                    .setScreenshots(true)
+                    .setSnapshots(true);
+            context.tracing().start(startOptions);
+            tracing = true;
+        }
     }
 
     @Override
     public boolean onError(Exception e) {
+        failed = true;
         // Take a screenshot of the page and attach it to the output
         if (page != null) {
             byte[] screenshot = page.screenshot();
             output.addAttachment(AttachmentHelper.generateAttachmentFromByteArray(screenshot, "screenshot.png"));
         }
-        // Attach the playwright trace to the output, using classical and streamed attachment
-        if (context != null) {
-            try {
-                Path path = Paths.get("streamed_trace.zip");
-                try {
-                    context.tracing().stop(new Tracing.StopOptions().setPath(path));
-                    liveReporting.fileUploads.startBinaryFileUpload(path.toFile(), "application/vnd.step.playwright-trace+zip").complete();
-                    output.addAttachment(AttachmentHelper.generateAttachmentFromByteArray(Files.readAllBytes(path), "trace.zip", "application/vnd.step.playwright-trace+zip"));
-                } catch (QuotaExceededException | ExecutionException | InterruptedException ex) {
-                    throw new RuntimeException(ex);
-                } finally {
-                    path.toFile().delete();
-                }
-            } catch (IOException ex) {
-                throw new RuntimeException(ex);
-            }
-        }
+        // Stream the playwright trace while the context is still open; the video follows once the context is closed
+        stopTracing(artifactPolicy != ArtifactPolicy.NEVER);
         if (e.getCause() != null && (e.getCause() instanceof com.microsoft.playwright.PlaywrightException ||
                                      e.getCause() instanceof org.opentest4j.AssertionFailedError)) {
             output.setBusinessError(e.getCause().getMessage());
@@ -98,21 +134,67 @@ public class PlaywrightKeyword extends AbstractKeyword {
 
     @Override
     public void afterKeyword(String keywordName, Keyword annotation) {
-        // Ensure Playwright is properly closed after each keyword execution
-        // to avoid process leaks on the agent
-        playwright.close();
-        //Write video as attachment
-        if (video != null) {
-            Path path = video.path();
-            try {
-                output.addAttachment(AttachmentHelper.generateAttachmentFromByteArray(Files.readAllBytes(path), "video.webm"));
-                video.delete();
-                if (path.toFile().exists()) {
-                    path.toFile().delete();
+        boolean keep = artifactPolicy == ArtifactPolicy.ALWAYS || (failed && artifactPolicy == ArtifactPolicy.ON_FAILURE);
+        try {
+            stopTracing(keep);
+            // The video is only complete once its page is closed
+            if (context != null) {
+                context.close();
+            }
+            if (video != null) {
+                if (keep) {
+                    Path path = artifactDir.resolve("video.webm");
+                    video.saveAs(path);
+                    upload(path.toFile(), "video/webm");
                 }
-            } catch (IOException e) {
-                logger.error("Unable to attach playwright video from file " + path.getFileName().toString() , e);
+                video.delete();
             }
+        } finally {
+            // Ensure Playwright is properly closed after each keyword execution
+            // to avoid process leaks on the agent
+            playwright.close();
+            deleteArtifactDir();
+            video = null;
+            context = null;
+            page = null;
+        }
+    }
+
+    /**
+     * Stops tracing, if it was started, and either streams the trace or discards it without writing it.
+     */
+    private void stopTracing(boolean keep) {
+        if (!tracing) {
+            return;
+        }
+        tracing = false;
+        if (!keep) {
+            context.tracing().stop();
+            return;
+        }
+        Path path = artifactDir.resolve("trace.zip");
+        context.tracing().stop(new Tracing.StopOptions().setPath(path));
+        upload(path.toFile(), TRACE_MIME_TYPE);
+    }
+
+    // Artifacts are streamed from disk rather than loaded into memory, which matters for videos of long runs
+    private void upload(File file, String mimeType) {
+        try {
+            liveReporting.fileUploads.startBinaryFileUpload(file, mimeType).complete();
+        } catch (Exception e) {
+            logger.error("Unable to upload playwright artifact " + file.getName(), e);
+        }
+    }
+
+    private void deleteArtifactDir() {
+        if (artifactDir == null) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(artifactDir)) {
+            paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        } catch (IOException e) {
+            logger.error("Unable to delete playwright artifacts in " + artifactDir, e);
         }
+        artifactDir = null;
     }
 }
@@ -0,0 +1,166 @@
+package step.examples.loadtesting.http;
+
+import step.core.reports.Measure;
+import step.handlers.javahandler.AbstractKeyword;
+import step.handlers.javahandler.Input;
+import step.handlers.javahandler.Keyword;
+
+import javax.json.JsonString;
+import javax.json.JsonValue;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Pattern;
+
+/**
+ * HTTP keyword built on the JDK {@link HttpClient}, for load tests that need many more requests per second per agent
+ * than a browser or a script engine can issue.
+ * <p>
+ * Two clients, one per protocol version, are shared by all iterations and virtual users of the JVM, so that
+ * keep-alive connections are pooled and reused instead of being opened for each request. The clients have no cookie
+ * handler, so no session state leaks between virtual users. The response body is consumed as it streams in: only its
+ * size and, optionally, its first bytes are kept.
+ * <p>
+ * Besides the total time, each request publishes the measures "&lt;Name&gt;.dns" (resolution of the host name
+ * through the JVM's cache, which the client then reuses), "&lt;Name&gt;.ttfb" (request sent to response headers
+ * received) and "&lt;Name&gt;.download" (headers to last body byte, split into "firstByteMs", the wait for the first
+ * body byte, and "transferMs" in its data for non-empty bodies). The JDK client does not report connection
+ * events, so for requests that had to open a new connection, the TCP connect and TLS handshake are part of the TTFB.
+ */
+public class NativeHttpKeywords extends AbstractKeyword {
+
+    public static final String FORM_DATA_PREFIX = "FormData_";
+    public static final String HEADER_PREFIX = "Header_";
+
+    private static final Pattern IP_LITERAL = Pattern.compile("^\\[.*]$|^[0-9.]+$");
+    private static final Duration CONNECT_TIMEOUT = Duration.ofSeconds(30);
+
+    private static final HttpClient http1Client = newClient(HttpClient.Version.HTTP_1_1);
+    private static final HttpClient http2Client = newClient(HttpClient.Version.HTTP_2);
+
+    private static HttpClient newClient(HttpClient.Version version) {
+        return HttpClient.newBuilder()
+                .version(version)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(CONNECT_TIMEOUT)
+                .build();
+    }
+
+    @Keyword(name = "NativeHttpRequest")
+    public void nativeHttpRequest(
+            @Input(name = "URL", required = true) String url,
+            @Input(name = "Method", defaultValue = "GET") String method,
+            // Name of the published measures
+            @Input(name = "Name", defaultValue = "NativeHttpRequest") String name,
+            // Negotiates HTTP/2, falling back to HTTP/1.1 when the server does not support it
+            @Input(name = "Http2", defaultValue = "false") boolean http2,
+            @Input(name = "TimeoutMs", defaultValue = "30000") long timeoutMs,
+            // Number of bytes of the response body returned as output, the rest is only counted
+            @Input(name = "CaptureBodyBytes", defaultValue = "0") int captureBodyBytes) throws Exception {
+        URI uri = URI.create(url);
+        HttpRequest request = buildRequest(uri, method.toUpperCase(), timeoutMs);
+        HttpClient client = http2 ? http2Client : http1Client;
+
+        long begin = System.currentTimeMillis();
+        long startNs = System.nanoTime();
+        if (uri.getHost() != null && !IP_LITERAL.matcher(uri.getHost()).matches()) {
+            InetAddress.getAllByName(uri.getHost());
+            long resolvedNs = System.nanoTime();
+            output.addMeasure(name + ".dns", (resolvedNs - startNs) / 1_000_000L, begin);
+        }
+
+        long sentNs = System.nanoTime();
+        long[] headersNs = new long[1];
+        ResponseCapture capture = new ResponseCapture(captureBodyBytes);
+        CompletableFuture<HttpResponse<ResponseCapture>> future = client.sendAsync(request, responseInfo -> {
+            headersNs[0] = System.nanoTime();
+            return HttpResponse.BodySubscribers.fromSubscriber(capture, c -> c);
+        });
+        HttpResponse<ResponseCapture> response;
+        try {
+            response = future.get(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            addTotalMeasure(name, begin, startNs, Measure.Status.FAILED, new HashMap<>());
+            throw e;
+        } catch (ExecutionException e) {
+            addTotalMeasure(name, begin, startNs, Measure.Status.FAILED, new HashMap<>());
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+
+        int status = response.statusCode();
+        long completedNs = capture.getCompletedNs() > 0 ? capture.getCompletedNs() : System.nanoTime();
+        output.addMeasure(name + ".ttfb", (headersNs[0] - sentNs) / 1_000_000L, begin);
+        Map<String, Object> downloadData = new HashMap<>();
+        long firstByteNs = capture.getFirstByteNs();
+        if (firstByteNs > 0) {
+            downloadData.put("firstByteMs", (firstByteNs - headersNs[0]) / 1_000_000L);
+            downloadData.put("transferMs", (completedNs - firstByteNs) / 1_000_000L);
+        }
+        output.addMeasure(new Measure(name + ".download", (completedNs - headersNs[0]) / 1_000_000L, begin,
+                downloadData, Measure.Status.PASSED));
+        Map<String, Object> data = new HashMap<>();
+        data.put("status", status);
+        data.put("bytes", capture.getBytes());
+        data.put("protocol", response.version().name());
+        addTotalMeasure(name, begin, startNs, status < 400 ? Measure.Status.PASSED : Measure.Status.FAILED, data);
+
+        output.add("StatusCode", status);
+        output.add("Protocol", response.version().name());
+        output.add("ResponseBytes", capture.getBytes());
+        if (captureBodyBytes > 0) {
+            output.add("ResponseBody", capture.getCapturedBody());
+            output.add("ResponseBodyTruncated", capture.isTruncated());
+        }
+        if (status >= 400) {
+            output.setBusinessError("HTTP status " + status + " for " + request.method() + " " + url);
+        }
+    }
+
+    private void addTotalMeasure(String name, long begin, long startNs, Measure.Status status, Map<String, Object> data) {
+        output.addMeasure(new Measure(name, (System.nanoTime() - startNs) / 1_000_000L, begin, data, status));
+    }
+
+    // Headers and form fields are passed as Header_<name> and FormData_<name> inputs
+    private HttpRequest buildRequest(URI uri, String method, long timeoutMs) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri).timeout(Duration.ofMillis(timeoutMs));
+        StringJoiner form = new StringJoiner("&");
+        boolean contentType = false;
+        for (Map.Entry<String, JsonValue> entry : input.entrySet()) {
+            String key = entry.getKey();
+            if (key.startsWith(HEADER_PREFIX)) {
+                String header = key.substring(HEADER_PREFIX.length());
+                builder.header(header, stringValue(entry.getValue()));
+                contentType |= header.equalsIgnoreCase("Content-Type");
+            } else if (key.startsWith(FORM_DATA_PREFIX)) {
+                form.add(URLEncoder.encode(key.substring(FORM_DATA_PREFIX.length()), StandardCharsets.UTF_8) + "="
+                        + URLEncoder.encode(stringValue(entry.getValue()), StandardCharsets.UTF_8));
+            }
+        }
+        if (form.length() > 0) {
+            if (!contentType) {
+                builder.header("Content-Type", "application/x-www-form-urlencoded");
+            }
+            builder.method(method, HttpRequest.BodyPublishers.ofString(form.toString()));
+        } else {
+            builder.method(method, HttpRequest.BodyPublishers.noBody());
+        }
+        return builder.build();
+    }
+
+    private static String stringValue(JsonValue value) {
+        return value instanceof JsonString ? ((JsonString) value).getString() : value.toString();
+    }
+}
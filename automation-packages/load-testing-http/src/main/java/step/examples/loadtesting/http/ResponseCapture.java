@@ -0,0 +1,82 @@
+package step.examples.loadtesting.http;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Flow;
+
+/**
+ * Consumes a response body as it arrives, counting its bytes and keeping at most the first {@code captureLimit} of
+ * them, so that large responses never have to be held in memory.
+ */
+final class ResponseCapture implements Flow.Subscriber<List<ByteBuffer>> {
+
+    private final int captureLimit;
+    private final ByteArrayOutputStream captured = new ByteArrayOutputStream();
+    private volatile long bytes;
+    private volatile long firstByteNs;
+    private volatile long completedNs;
+
+    ResponseCapture(int captureLimit) {
+        this.captureLimit = captureLimit;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> buffers) {
+        for (ByteBuffer buffer : buffers) {
+            int remaining = buffer.remaining();
+            if (remaining > 0 && firstByteNs == 0) {
+                firstByteNs = System.nanoTime();
+            }
+            int keep = (int) Math.min(remaining, Math.max(0, captureLimit - captured.size()));
+            if (keep > 0) {
+                byte[] chunk = new byte[keep];
+                buffer.get(chunk);
+                captured.write(chunk, 0, keep);
+            }
+            bytes += remaining;
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        completedNs = System.nanoTime();
+    }
+
+    @Override
+    public void onComplete() {
+        completedNs = System.nanoTime();
+    }
+
+    long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Time at which the first body byte arrived, or 0 for an empty body.
+     */
+    long getFirstByteNs() {
+        return firstByteNs;
+    }
+
+    long getCompletedNs() {
+        return completedNs;
+    }
+
+    /**
+     * The captured start of the body, decoded as UTF-8.
+     */
+    String getCapturedBody() {
+        return new String(captured.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    boolean isTruncated() {
+        return bytes > captured.size();
+    }
+}
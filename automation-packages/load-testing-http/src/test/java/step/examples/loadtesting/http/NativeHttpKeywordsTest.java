@@ -0,0 +1,131 @@
+package step.examples.loadtesting.http;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import step.core.reports.Measure;
+import step.functions.io.Output;
+import step.handlers.javahandler.KeywordRunner;
+import step.handlers.javahandler.KeywordRunner.ExecutionContext;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class NativeHttpKeywordsTest {
+
+    private static final int LARGE_BODY_SIZE = 1024 * 1024;
+
+    private HttpServer server;
+    private String baseUrl;
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+    private ExecutionContext ctx;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/hello", exchange -> respond(exchange, 200, "Hello".getBytes(StandardCharsets.UTF_8)));
+        server.createContext("/large", exchange -> respond(exchange, 200, new byte[LARGE_BODY_SIZE]));
+        server.createContext("/missing", exchange -> respond(exchange, 404, new byte[0]));
+        server.createContext("/echo", exchange -> {
+            byte[] body = exchange.getRequestBody().readAllBytes();
+            String echo = exchange.getRequestMethod() + " " + exchange.getRequestHeaders().getFirst("Content-Type")
+                    + " " + exchange.getRequestHeaders().getFirst("X-Test") + " " + new String(body, StandardCharsets.UTF_8);
+            respond(exchange, 200, echo.getBytes(StandardCharsets.UTF_8));
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+        ctx = KeywordRunner.getExecutionContext(Map.of(), NativeHttpKeywords.class);
+    }
+
+    private void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        ctx.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void get() throws Exception {
+        Output<JsonObject> output = run(Json.createObjectBuilder().add("URL", baseUrl + "/hello")
+                .add("CaptureBodyBytes", 100).build());
+        assertNull(output.getError());
+        assertEquals(200, output.getPayload().getInt("StatusCode"));
+        assertEquals("Hello", output.getPayload().getString("ResponseBody"));
+        assertFalse(output.getPayload().getBoolean("ResponseBodyTruncated"));
+
+        Map<String, Measure> measures = output.getMeasures().stream().collect(Collectors.toMap(Measure::getName, m -> m));
+        assertEquals(200, measures.get("NativeHttpRequest").getData().get("status"));
+        assertTrue(measures.containsKey("NativeHttpRequest.ttfb"));
+        Map<String, Object> download = measures.get("NativeHttpRequest.download").getData();
+        assertTrue((long) download.get("firstByteMs") >= 0);
+        assertTrue((long) download.get("transferMs") >= 0);
+        // IP literals are not resolved
+        assertFalse(measures.containsKey("NativeHttpRequest.dns"));
+    }
+
+    @Test
+    public void postFormDataAndHeaders() throws Exception {
+        Output<JsonObject> output = run(Json.createObjectBuilder().add("URL", baseUrl + "/echo")
+                .add("Method", "POST").add("FormData_quantity", "1").add("FormData_product id", "43")
+                .add("Header_X-Test", "yes").add("CaptureBodyBytes", 1000).build());
+        assertEquals("POST application/x-www-form-urlencoded yes quantity=1&product+id=43",
+                output.getPayload().getString("ResponseBody"));
+    }
+
+    @Test
+    public void largeBodiesAreCountedButNotKept() throws Exception {
+        Output<JsonObject> output = run(Json.createObjectBuilder().add("URL", baseUrl + "/large")
+                .add("CaptureBodyBytes", 10).build());
+        assertEquals(LARGE_BODY_SIZE, output.getPayload().getInt("ResponseBytes"));
+        assertEquals(10, output.getPayload().getString("ResponseBody").length());
+        assertTrue(output.getPayload().getBoolean("ResponseBodyTruncated"));
+
+        Output<JsonObject> uncaptured = run(Json.createObjectBuilder().add("URL", baseUrl + "/large").build());
+        assertFalse(uncaptured.getPayload().containsKey("ResponseBody"));
+    }
+
+    @Test
+    public void errorStatusIsABusinessError() throws Exception {
+        ctx.setThrowExceptionOnError(false);
+        Output<JsonObject> output = run(Json.createObjectBuilder().add("URL", baseUrl + "/missing")
+                .add("Name", "Missing").build());
+        assertEquals(404, output.getPayload().getInt("StatusCode"));
+        assertTrue(output.getError().getMsg().contains("404"));
+        Measure total = output.getMeasures().stream().filter(m -> m.getName().equals("Missing")).findFirst().get();
+        assertEquals(Measure.Status.FAILED, total.getStatus());
+    }
+
+    @Test
+    public void connectionsAreReusedAcrossCalls() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            run(Json.createObjectBuilder().add("URL", baseUrl + "/hello").build());
+        }
+        assertEquals(1, clientPorts.size());
+    }
+
+    private Output<JsonObject> run(JsonObject input) throws Exception {
+        return ctx.run("NativeHttpRequest", input);
+    }
+}
@@ -0,0 +1,293 @@
+package step.examples.loadtesting.inventory;
+
+import step.examples.loadtesting.inventory.WorkloadMix.Operation;
+
+import javax.json.Json;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-model CRUD workload against the product API: requests are started at planned arrival times that do not
+ * depend on how fast earlier requests completed, and are sent asynchronously so that a slow SUT does not slow down
+ * the arrivals.
+ * <p>
+ * Latencies are measured from the planned start of each request, not from the moment it was actually sent. When the
+ * SUT (or the client) falls behind, the time a request spent waiting for its turn is therefore part of its latency,
+ * which corrects for coordinated omission. The service time, from send to response, is reported alongside.
+ * <p>
+ * Product IDs come from a {@link ProductIdPool}. An operation that the pool cannot serve is substituted: a create
+ * when the pool is exhausted becomes an update, an update or delete when no product exists becomes a create, and
+ * either becomes a read when neither is possible.
+ */
+final class CrudWorkload {
+
+    enum Arrivals {
+        /** Constant inter-arrival time of {@code 1 / rate}. */
+        FIXED,
+        /** Exponentially distributed inter-arrival times with mean {@code 1 / rate}. */
+        POISSON;
+
+        static Arrivals parse(String value) {
+            try {
+                return Arrivals.valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("illegal arrivals: " + value + " (must be fixed or poisson)");
+            }
+        }
+    }
+
+    static final class Result {
+        final Operation operation;
+        final boolean substituted;
+        final long intendedEpochMs;
+        final long latencyNs;
+        final long serviceNs;
+        // 0 if no response was received
+        final int status;
+        final String error;
+
+        Result(Operation operation, boolean substituted, long intendedEpochMs, long latencyNs, long serviceNs, int status,
+               String error) {
+            this.operation = operation;
+            this.substituted = substituted;
+            this.intendedEpochMs = intendedEpochMs;
+            this.latencyNs = latencyNs;
+            this.serviceNs = serviceNs;
+            this.status = status;
+            this.error = error;
+        }
+
+        boolean isSuccess() {
+            return status == operation.getExpectedStatus();
+        }
+    }
+
+    static final String PRODUCTS_PATH = "/api/products";
+    // Time granted to the requests in flight at the end of the run, beyond their own timeout
+    private static final long DRAIN_GRACE_MS = 5_000L;
+
+    private final HttpClient client;
+    private final String baseUrl;
+    private final WorkloadMix mix;
+    private final ProductIdPool ids;
+    private final String readFilter;
+    private final Duration timeout;
+    private final int maxInFlight;
+    // Only used by the scheduling thread
+    private final SplittableRandom random;
+    private long maxSchedulingLagNs;
+
+    CrudWorkload(HttpClient client, String baseUrl, WorkloadMix mix, ProductIdPool ids, String readFilter,
+                 long timeoutMs, int maxInFlight, SplittableRandom random) {
+        if (maxInFlight <= 0) {
+            throw new IllegalArgumentException("illegal max in-flight requests (must be > 0)");
+        }
+        this.client = client;
+        this.baseUrl = baseUrl;
+        this.mix = mix;
+        this.ids = ids;
+        this.readFilter = readFilter;
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.maxInFlight = maxInFlight;
+        this.random = random;
+    }
+
+    /**
+     * Issues requests at the given rate for the given duration, then waits for the ones still in flight. Requests that
+     * did not complete within their timeout and a grace period are cancelled and reported as failed, so that all
+     * results are in, and all product IDs released, when this method returns.
+     */
+    List<Result> run(Arrivals arrivals, double ratePerSecond, long durationMs) throws InterruptedException {
+        if (!(ratePerSecond > 0)) {
+            throw new IllegalArgumentException("illegal rate (must be > 0)");
+        }
+        if (durationMs <= 0) {
+            throw new IllegalArgumentException("illegal duration (must be > 0)");
+        }
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        Set<CompletableFuture<?>> pending = ConcurrentHashMap.newKeySet();
+        ConcurrentLinkedQueue<Result> results = new ConcurrentLinkedQueue<>();
+        long durationNs = durationMs * 1_000_000L;
+        long startEpochMs = System.currentTimeMillis();
+        long startNs = System.nanoTime();
+        double t = 0.0; // seconds
+        for (long k = 0; ; k++) {
+            if (arrivals == Arrivals.FIXED) {
+                t = k / ratePerSecond;
+            } else if (k > 0) {
+                t += -Math.log(1.0 - random.nextDouble()) / ratePerSecond;
+            }
+            long offsetNs = (long) (t * 1_000_000_000L);
+            if (offsetNs >= durationNs) {
+                break;
+            }
+            long intendedNs = startNs + offsetNs;
+            long remainingNs;
+            while ((remainingNs = intendedNs - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(remainingNs);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            // Waiting for a free slot delays the send, not the planned start: the wait is part of the latency
+            inFlight.acquire();
+            maxSchedulingLagNs = Math.max(maxSchedulingLagNs, System.nanoTime() - intendedNs);
+            dispatch(intendedNs, startEpochMs + offsetNs / 1_000_000L, inFlight, pending, results);
+        }
+        // Every request has a timeout, so the ones in flight should complete within it
+        if (!inFlight.tryAcquire(maxInFlight, timeout.toMillis() + DRAIN_GRACE_MS, TimeUnit.MILLISECONDS)) {
+            // completes the stragglers as failed, their callbacks record them and release their IDs
+            for (CompletableFuture<?> request : pending) {
+                request.cancel(true);
+            }
+            inFlight.acquire(maxInFlight);
+        }
+        inFlight.release(maxInFlight);
+        return new ArrayList<>(results);
+    }
+
+    private void dispatch(long intendedNs, long intendedEpochMs, Semaphore inFlight, Set<CompletableFuture<?>> pending,
+                          ConcurrentLinkedQueue<Result> results) {
+        Operation requested = mix.next(random);
+        Operation operation = requested;
+        Integer id = null;
+        if (requested == Operation.CREATE) {
+            id = ids.leaseFree();
+            if (id == null) {
+                id = ids.leaseLive();
+                operation = id != null ? Operation.UPDATE : Operation.READ;
+            }
+        } else if (requested == Operation.UPDATE || requested == Operation.DELETE) {
+            id = ids.leaseLive();
+            if (id == null) {
+                id = ids.leaseFree();
+                operation = id != null ? Operation.CREATE : Operation.READ;
+            }
+        }
+        Operation executed = operation;
+        Integer leasedId = id;
+        HttpRequest request = buildRequest(executed, leasedId);
+        long sentNs = System.nanoTime();
+        CompletableFuture<HttpResponse<Void>> sent = client.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+        pending.add(sent);
+        sent.whenComplete((response, error) -> {
+            long endNs = System.nanoTime();
+            int status = response != null ? response.statusCode() : 0;
+            if (leasedId != null) {
+                release(executed, leasedId, status);
+            }
+            String message = null;
+            if (error instanceof CancellationException) {
+                message = "no response within " + (timeout.toMillis() + DRAIN_GRACE_MS) + " ms, cancelled";
+            } else if (error != null) {
+                message = error.toString();
+            }
+            results.add(new Result(executed, executed != requested, intendedEpochMs, endNs - intendedNs,
+                    endNs - sentNs, status, message));
+            pending.remove(sent);
+            inFlight.release();
+        });
+    }
+
+    private void release(Operation operation, int id, int status) {
+        switch (operation) {
+            case CREATE:
+                // A failed create may still have inserted the product (timeout, concurrent duplicate)
+                if (status == 201) {
+                    ids.releaseLive(id);
+                } else {
+                    ids.releaseUncertain(id);
+                }
+                break;
+            case UPDATE:
+                if (status == 404) {
+                    ids.releaseFree(id);
+                } else {
+                    ids.releaseLive(id);
+                }
+                break;
+            case DELETE:
+                if (status == 204 || status == 404) {
+                    ids.releaseFree(id);
+                } else if (status == 0) {
+                    ids.releaseUncertain(id);
+                } else {
+                    ids.releaseLive(id);
+                }
+                break;
+            default:
+                throw new IllegalStateException("unexpected leased operation " + operation);
+        }
+    }
+
+    private HttpRequest buildRequest(Operation operation, Integer id) {
+        switch (operation) {
+            case READ:
+                String query = readFilter.isEmpty() ? "" : "?name=" + URLEncoder.encode(readFilter, StandardCharsets.UTF_8);
+                return newRequest(PRODUCTS_PATH + query).GET().build();
+            case CREATE:
+                return newRequest(PRODUCTS_PATH).header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(productJson(id))).build();
+            case UPDATE:
+                return newRequest(PRODUCTS_PATH + "/" + id).header("Content-Type", "application/json")
+                        .PUT(HttpRequest.BodyPublishers.ofString(productJson(id))).build();
+            case DELETE:
+                return newRequest(PRODUCTS_PATH + "/" + id).DELETE().build();
+            default:
+                throw new IllegalStateException("unexpected operation " + operation);
+        }
+    }
+
+    private HttpRequest.Builder newRequest(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(timeout);
+    }
+
+    private String productJson(int id) {
+        double price = Math.round(random.nextDouble() * 100_000) / 100.0;
+        return Json.createObjectBuilder().add("id", id).add("name", "Workload product " + id).add("price", price)
+                .build().toString();
+    }
+
+    /**
+     * Deletes the products the workload may have left in the SUT, and returns how many were deleted.
+     */
+    int cleanup() throws Exception {
+        int deleted = 0;
+        for (Integer id : ids.drainForCleanup()) {
+            HttpResponse<Void> response = client.send(newRequest(PRODUCTS_PATH + "/" + id).DELETE().build(),
+                    HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() == 204) {
+                deleted++;
+                ids.releaseFree(id);
+            } else if (response.statusCode() == 404) {
+                ids.releaseFree(id);
+            } else {
+                ids.releaseUncertain(id);
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Largest delay between the planned start of a request and its send, caused by the client falling behind.
+     */
+    long getMaxSchedulingLagNs() {
+        return maxSchedulingLagNs;
+    }
+}
@@ -0,0 +1,191 @@
+package step.examples.loadtesting.inventory;
+
+import step.core.reports.Measure;
+import step.examples.loadtesting.inventory.CrudWorkload.Arrivals;
+import step.examples.loadtesting.inventory.CrudWorkload.Result;
+import step.examples.loadtesting.inventory.WorkloadMix.Operation;
+import step.handlers.javahandler.AbstractKeyword;
+import step.handlers.javahandler.Input;
+import step.handlers.javahandler.Keyword;
+
+import javax.json.Json;
+import javax.json.JsonReader;
+import javax.json.JsonValue;
+import java.io.StringReader;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Keywords driving the product API of {@code sut/InventoryWebSUT}, the JVM counterpart of its k6 script.
+ * <p>
+ * {@code InventoryCrudWorkload} runs a read/create/update/delete mix at a target arrival rate for a given duration
+ * (see {@link CrudWorkload}). It publishes one measure per request, "&lt;Name&gt;.read", "&lt;Name&gt;.create",
+ * "&lt;Name&gt;.update" and "&lt;Name&gt;.delete", whose duration is the latency from the planned start of the request,
+ * and returns the latency percentiles of each operation.
+ * <p>
+ * The products it creates use IDs from {@code [IdBase, IdBase + IdPoolSize)}, and the pool is sized so that the SUT's
+ * {@code MAX_PRODUCTS} limit is never reached. Concurrent workloads against the same SUT must use disjoint ID ranges
+ * whose sizes add up to less than that limit.
+ */
+public class InventoryKeywords extends AbstractKeyword {
+
+    public static final String DEFAULT_BASE_URL = "http://127.0.0.1:30001";
+
+    private static final HttpClient client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    @Keyword(name = "InventoryReset")
+    public void inventoryReset(
+            @Input(name = "BaseURL", defaultValue = DEFAULT_BASE_URL) String baseUrl,
+            @Input(name = "TimeoutMs", defaultValue = "10000") long timeoutMs) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(trimSlash(baseUrl) + "/api/reset"))
+                .timeout(Duration.ofMillis(timeoutMs)).DELETE().build();
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        output.add("StatusCode", response.statusCode());
+        if (response.statusCode() != 204) {
+            output.setBusinessError("Reset of " + baseUrl + " failed with HTTP status " + response.statusCode());
+        }
+    }
+
+    @Keyword(name = "InventoryCrudWorkload")
+    public void inventoryCrudWorkload(
+            @Input(name = "BaseURL", defaultValue = DEFAULT_BASE_URL) String baseUrl,
+            // Name prefix of the published measures
+            @Input(name = "Name", defaultValue = "Inventory") String name,
+            // Target arrival rate, in requests per second
+            @Input(name = "Rate", defaultValue = "50") double rate,
+            @Input(name = "DurationMs", defaultValue = "10000") long durationMs,
+            // fixed or poisson
+            @Input(name = "Arrivals", defaultValue = "poisson") String arrivals,
+            @Input(name = "Mix", defaultValue = "read=70,create=10,update=15,delete=5") String mix,
+            // Value of the name filter of reads, empty to list all products
+            @Input(name = "ReadFilter", defaultValue = "") String readFilter,
+            @Input(name = "MaxInFlight", defaultValue = "256") int maxInFlight,
+            @Input(name = "TimeoutMs", defaultValue = "10000") long timeoutMs,
+            @Input(name = "MaxProducts", defaultValue = "1000") int maxProducts,
+            @Input(name = "IdBase", defaultValue = "100000") int idBase,
+            @Input(name = "IdPoolSize", defaultValue = "500") int idPoolSize,
+            // Deletes the products left by the workload once it is done
+            @Input(name = "Cleanup", defaultValue = "true") boolean cleanup,
+            // Fraction of failed requests above which the keyword reports a business error
+            @Input(name = "MaxErrorRate", defaultValue = "0.01") double maxErrorRate,
+            // 0 for a random seed
+            @Input(name = "Seed", defaultValue = "0") long seed) throws Exception {
+        String base = trimSlash(baseUrl);
+        Arrivals arrivalProcess = Arrivals.parse(arrivals);
+        WorkloadMix workloadMix = WorkloadMix.parse(mix);
+        SplittableRandom random = seed == 0 ? new SplittableRandom() : new SplittableRandom(seed);
+
+        List<Integer> existingIds = listProductIds(base, timeoutMs);
+        if (existingIds == null) {
+            return;
+        }
+        ProductIdPool ids = new ProductIdPool(idBase, idPoolSize, maxProducts, existingIds);
+        CrudWorkload workload = new CrudWorkload(client, base, workloadMix, ids, readFilter, timeoutMs, maxInFlight, random);
+
+        long startNs = System.nanoTime();
+        List<Result> results = workload.run(arrivalProcess, rate, durationMs);
+        long elapsedNs = System.nanoTime() - startNs;
+        int cleanedUp = cleanup ? workload.cleanup() : 0;
+
+        int errors = report(name, results);
+        output.add("Requests", results.size());
+        output.add("Errors", errors);
+        output.add("Substituted", results.stream().filter(r -> r.substituted).count());
+        output.add("TargetRate", rate);
+        output.add("AchievedRate", elapsedNs > 0 ? results.size() / (elapsedNs / 1_000_000_000.0) : 0.0);
+        output.add("MaxSchedulingLagMs", toMs(workload.getMaxSchedulingLagNs()));
+        output.add("IdCapacity", ids.getCapacity());
+        output.add("LiveProducts", ids.getLiveCount());
+        output.add("CleanedUp", cleanedUp);
+        if (!results.isEmpty() && errors > maxErrorRate * results.size()) {
+            output.setBusinessError(errors + " of " + results.size() + " requests failed, more than the maximum error rate of "
+                    + maxErrorRate);
+        }
+    }
+
+    // Returns null, after reporting a business error, if the SUT cannot be listed
+    private List<Integer> listProductIds(String base, long timeoutMs) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(URI.create(base + CrudWorkload.PRODUCTS_PATH))
+                .timeout(Duration.ofMillis(timeoutMs)).GET().build();
+        HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            output.setBusinessError("Listing the products of " + base + " failed with HTTP status " + response.statusCode());
+            return null;
+        }
+        List<Integer> ids = new ArrayList<>();
+        try (JsonReader reader = Json.createReader(new StringReader(response.body()))) {
+            for (JsonValue product : reader.readArray()) {
+                ids.add(product.asJsonObject().getInt("id"));
+            }
+        }
+        return ids;
+    }
+
+    // Publishes the measures and the per-operation latency summary, and returns the number of failed requests
+    private int report(String name, List<Result> results) {
+        Map<Operation, List<Result>> byOperation = new EnumMap<>(Operation.class);
+        int errors = 0;
+        for (Result result : results) {
+            byOperation.computeIfAbsent(result.operation, o -> new ArrayList<>()).add(result);
+            Map<String, Object> data = new HashMap<>();
+            data.put("status", result.status);
+            data.put("serviceMs", result.serviceNs / 1_000_000L);
+            if (result.substituted) {
+                data.put("substituted", true);
+            }
+            if (result.error != null) {
+                data.put("error", result.error);
+            }
+            if (!result.isSuccess()) {
+                errors++;
+            }
+            output.addMeasure(new Measure(name + "." + result.operation.measureSuffix(), result.latencyNs / 1_000_000L,
+                    result.intendedEpochMs, data, result.isSuccess() ? Measure.Status.PASSED : Measure.Status.FAILED));
+        }
+        for (Map.Entry<Operation, List<Result>> entry : byOperation.entrySet()) {
+            List<Result> operationResults = entry.getValue();
+            long[] latencies = operationResults.stream().mapToLong(r -> r.latencyNs).sorted().toArray();
+            long[] serviceTimes = operationResults.stream().mapToLong(r -> r.serviceNs).sorted().toArray();
+            String prefix = capitalize(entry.getKey().measureSuffix());
+            output.add(prefix + "Count", latencies.length);
+            output.add(prefix + "Errors", operationResults.stream().filter(r -> !r.isSuccess()).count());
+            output.add(prefix + "P50Ms", toMs(percentile(latencies, 0.50)));
+            output.add(prefix + "P99Ms", toMs(percentile(latencies, 0.99)));
+            output.add(prefix + "MaxMs", toMs(latencies[latencies.length - 1]));
+            output.add(prefix + "ServiceP99Ms", toMs(percentile(serviceTimes, 0.99)));
+        }
+        return errors;
+    }
+
+    static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    private static double toMs(long nanos) {
+        return Math.round(nanos / 1_000.0) / 1_000.0;
+    }
+
+    private static String capitalize(String value) {
+        return Character.toUpperCase(value.charAt(0)) + value.substring(1);
+    }
+
+    private static String trimSlash(String url) {
+        return url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+}
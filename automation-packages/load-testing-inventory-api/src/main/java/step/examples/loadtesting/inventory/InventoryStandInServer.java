@@ -0,0 +1,243 @@
+package step.examples.loadtesting.inventory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonException;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process stand-in for the product API of {@code sut/InventoryWebSUT}, so that the workload keywords can be run
+ * and tested without the .NET SUT. It mirrors the SUT's endpoints, status codes, JSON format, seed products and
+ * {@code MAX_PRODUCTS} limit.
+ * <p>
+ * Requests are served by a fixed number of worker threads, each of which can be made to spend a constant service
+ * time per request: offering more than {@code workers / serviceTime} requests per second then overloads the server
+ * and requests queue up, as they would in front of a saturated SUT.
+ * <p>
+ * Run {@link #main(String[])} to serve it on the SUT's default port: {@code [port] [workers] [serviceTimeMs]}.
+ */
+public final class InventoryStandInServer implements AutoCloseable {
+
+    public static final int MAX_PRODUCTS = 1000;
+    public static final int DEFAULT_PORT = 30001;
+
+    private static final String PRODUCTS_PATH = "/api/products";
+
+    private final Map<Integer, JsonObject> products = new ConcurrentHashMap<>();
+    private final AtomicInteger idCounter = new AtomicInteger(2);
+    private final AtomicInteger requests = new AtomicInteger();
+    private final long serviceTimeMs;
+    private final HttpServer server;
+    private final ExecutorService workers;
+
+    public InventoryStandInServer(int port, int workers, long serviceTimeMs) throws IOException {
+        this.serviceTimeMs = serviceTimeMs;
+        seed();
+        this.workers = Executors.newFixedThreadPool(workers, r -> {
+            Thread thread = new Thread(r, "inventory-stand-in");
+            thread.setDaemon(true);
+            return thread;
+        });
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext(PRODUCTS_PATH, this::handleProducts);
+        server.createContext("/api/reset", this::handleReset);
+        server.setExecutor(this.workers);
+        server.start();
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int workers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        long serviceTimeMs = args.length > 2 ? Long.parseLong(args[2]) : 0;
+        InventoryStandInServer server = new InventoryStandInServer(port, workers, serviceTimeMs);
+        System.out.println("Inventory stand-in listening on " + server.getBaseUrl());
+        // The worker threads are daemons, keep the JVM alive until it is killed
+        Thread.currentThread().join();
+    }
+
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    public int getProductCount() {
+        return products.size();
+    }
+
+    public boolean containsProduct(int id) {
+        return products.containsKey(id);
+    }
+
+    /**
+     * Number of requests served so far.
+     */
+    public int getRequests() {
+        return requests.get();
+    }
+
+    private void seed() {
+        products.put(1, product(1, "Automation Tool", 99.99));
+        products.put(2, product(2, "Performance Script", 49.50));
+    }
+
+    private static JsonObject product(int id, String name, double price) {
+        return Json.createObjectBuilder().add("id", id).add("name", name).add("price", price).build();
+    }
+
+    private void handleProducts(HttpExchange exchange) throws IOException {
+        try {
+            serve();
+            String method = exchange.getRequestMethod();
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals(PRODUCTS_PATH) || path.equals(PRODUCTS_PATH + "/")) {
+                if (method.equals("GET")) {
+                    list(exchange);
+                } else if (method.equals("POST")) {
+                    create(exchange);
+                } else {
+                    respond(exchange, 405, null);
+                }
+                return;
+            }
+            int id;
+            try {
+                id = Integer.parseInt(path.substring(PRODUCTS_PATH.length() + 1));
+            } catch (NumberFormatException e) {
+                respond(exchange, 404, null);
+                return;
+            }
+            if (method.equals("PUT")) {
+                update(exchange, id);
+            } else if (method.equals("DELETE")) {
+                respond(exchange, products.remove(id) != null ? 204 : 404, null);
+            } else {
+                respond(exchange, 405, null);
+            }
+        } catch (JsonException e) {
+            respond(exchange, 400, null);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void list(HttpExchange exchange) throws IOException {
+        String query = exchange.getRequestURI().getQuery();
+        String filter = null;
+        if (query != null) {
+            for (String parameter : query.split("&")) {
+                if (parameter.startsWith("name=")) {
+                    filter = URLDecoder.decode(parameter.substring("name=".length()), StandardCharsets.UTF_8).toLowerCase();
+                }
+            }
+        }
+        JsonArrayBuilder array = Json.createArrayBuilder();
+        for (JsonObject product : products.values()) {
+            if (filter == null || filter.isEmpty() || product.getString("name").toLowerCase().contains(filter)) {
+                array.add(product);
+            }
+        }
+        respond(exchange, 200, array.build().toString());
+    }
+
+    private void create(HttpExchange exchange) throws IOException {
+        JsonObject body = readBody(exchange);
+        // Like the SUT, the limit is checked before the insertion, so concurrent creates may slightly overshoot it
+        if (products.size() >= MAX_PRODUCTS) {
+            respond(exchange, 400, "\"Memory limit reached.\"");
+            return;
+        }
+        int id = body.getInt("id", 0);
+        if (id <= 0) {
+            id = idCounter.incrementAndGet();
+        }
+        JsonObject product = product(id, body.getString("name", ""), price(body));
+        if (products.putIfAbsent(id, product) != null) {
+            respond(exchange, 400, "\"Product with ID " + id + " already exists.\"");
+            return;
+        }
+        exchange.getResponseHeaders().add("Location", PRODUCTS_PATH + "/" + id);
+        respond(exchange, 201, product.toString());
+    }
+
+    private void update(HttpExchange exchange, int id) throws IOException {
+        JsonObject body = readBody(exchange);
+        JsonObject product = product(id, body.getString("name", ""), price(body));
+        respond(exchange, products.replace(id, product) != null ? 204 : 404, null);
+    }
+
+    private static double price(JsonObject body) {
+        JsonNumber price = body.getJsonNumber("price");
+        return price != null ? price.doubleValue() : 0.0;
+    }
+
+    private void handleReset(HttpExchange exchange) throws IOException {
+        try {
+            serve();
+            if (!exchange.getRequestMethod().equals("DELETE")) {
+                respond(exchange, 405, null);
+                return;
+            }
+            products.clear();
+            idCounter.set(0);
+            respond(exchange, 204, null);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void serve() {
+        requests.incrementAndGet();
+        if (serviceTimeMs > 0) {
+            try {
+                Thread.sleep(serviceTimeMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static JsonObject readBody(HttpExchange exchange) throws IOException {
+        try (JsonReader reader = Json.createReader(exchange.getRequestBody())) {
+            return reader.readObject();
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        if (json == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        workers.shutdownNow();
+        try {
+            workers.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
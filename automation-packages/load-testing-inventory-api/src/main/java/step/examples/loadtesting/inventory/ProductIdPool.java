@@ -0,0 +1,107 @@
+package step.examples.loadtesting.inventory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * The product IDs a workload may use, in the range {@code [firstId, firstId + size)}. The SUT refuses to hold more
+ * than {@code MAX_PRODUCTS} products, so the workload creates products with explicit IDs taken from this pool
+ * instead of letting the SUT generate them: the number of products it adds is then bounded by the pool's capacity.
+ * <p>
+ * An ID is either free (no such product in the SUT), live (the product exists) or uncertain (a create or delete
+ * whose outcome is unknown, e.g. after a timeout). IDs are leased while a request is in flight, so that an update
+ * and a delete never race on the same product. Uncertain IDs are not reused; they are deleted during the cleanup.
+ */
+final class ProductIdPool {
+
+    private final ConcurrentLinkedQueue<Integer> free = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Integer> live = new ConcurrentLinkedQueue<>();
+    private final Set<Integer> uncertain = ConcurrentHashMap.newKeySet();
+    private final int capacity;
+
+    /**
+     * @param firstId     the first ID of the range
+     * @param size        the number of IDs in the range
+     * @param maxProducts the maximum number of products the SUT accepts
+     * @param existingIds the IDs of the products already in the SUT; those inside the range are adopted as live
+     */
+    ProductIdPool(int firstId, int size, int maxProducts, Collection<Integer> existingIds) {
+        if (firstId <= 0 || size <= 0) {
+            throw new IllegalArgumentException("illegal ID range (first ID and size must be > 0)");
+        }
+        int others = 0;
+        for (Integer id : existingIds) {
+            if (contains(firstId, size, id)) {
+                live.add(id);
+            } else {
+                others++;
+            }
+        }
+        capacity = Math.max(0, Math.min(size, maxProducts - others));
+        Set<Integer> adopted = Set.copyOf(live);
+        for (int id = firstId; id < firstId + size && adopted.size() + free.size() < capacity; id++) {
+            if (!adopted.contains(id)) {
+                free.add(id);
+            }
+        }
+    }
+
+    private static boolean contains(int firstId, int size, int id) {
+        return id >= firstId && id - firstId < size;
+    }
+
+    /**
+     * Leases an ID that is not in the SUT, for a create, or returns null if the pool is exhausted.
+     */
+    Integer leaseFree() {
+        return free.poll();
+    }
+
+    /**
+     * Leases the ID of an existing product, for an update or a delete, or returns null if there is none.
+     */
+    Integer leaseLive() {
+        return live.poll();
+    }
+
+    void releaseFree(int id) {
+        free.add(id);
+    }
+
+    void releaseLive(int id) {
+        live.add(id);
+    }
+
+    void releaseUncertain(int id) {
+        uncertain.add(id);
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    int getLiveCount() {
+        return live.size();
+    }
+
+    /**
+     * Drains the IDs that may still exist in the SUT: live ones, then uncertain ones.
+     */
+    List<Integer> drainForCleanup() {
+        List<Integer> ids = new ArrayList<>();
+        Integer id;
+        while ((id = live.poll()) != null) {
+            ids.add(id);
+        }
+        for (Integer uncertainId : uncertain) {
+            if (uncertain.remove(uncertainId)) {
+                ids.add(uncertainId);
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,102 @@
+package step.examples.loadtesting.inventory;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Weighted mix of the CRUD operations issued by the workload, parsed from a specification such as
+ * {@code "read=70,create=10,update=15,delete=5"}. Weights are relative and do not need to add up to 100; operations
+ * that are not listed have a weight of 0.
+ */
+final class WorkloadMix {
+
+    enum Operation {
+        /** GET /api/products, expects 200. */
+        READ(200),
+        /** POST /api/products, expects 201. */
+        CREATE(201),
+        /** PUT /api/products/{id}, expects 204. */
+        UPDATE(204),
+        /** DELETE /api/products/{id}, expects 204. */
+        DELETE(204);
+
+        private final int expectedStatus;
+
+        Operation(int expectedStatus) {
+            this.expectedStatus = expectedStatus;
+        }
+
+        int getExpectedStatus() {
+            return expectedStatus;
+        }
+
+        String measureSuffix() {
+            return name().toLowerCase();
+        }
+    }
+
+    private final Map<Operation, Double> weights;
+    private final double[] cumulative;
+
+    private WorkloadMix(Map<Operation, Double> weights) {
+        this.weights = weights;
+        Operation[] operations = Operation.values();
+        cumulative = new double[operations.length];
+        double total = 0.0;
+        for (int i = 0; i < operations.length; i++) {
+            total += weights.getOrDefault(operations[i], 0.0);
+            cumulative[i] = total;
+        }
+        if (!(total > 0)) {
+            throw new IllegalArgumentException("illegal workload mix (at least one weight must be > 0)");
+        }
+    }
+
+    static WorkloadMix parse(String spec) {
+        Map<Operation, Double> weights = new EnumMap<>(Operation.class);
+        for (String part : spec.split(",")) {
+            if (part.isBlank()) {
+                continue;
+            }
+            String[] keyValue = part.split("=");
+            if (keyValue.length != 2) {
+                throw new IllegalArgumentException("illegal workload mix entry: " + part + " (must be <operation>=<weight>)");
+            }
+            Operation operation;
+            try {
+                operation = Operation.valueOf(keyValue[0].trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("illegal workload operation: " + keyValue[0].trim()
+                        + " (must be read, create, update or delete)");
+            }
+            double weight;
+            try {
+                weight = Double.parseDouble(keyValue[1].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("illegal weight for " + keyValue[0].trim() + ": " + keyValue[1].trim());
+            }
+            if (weight < 0) {
+                throw new IllegalArgumentException("illegal weight for " + keyValue[0].trim() + " (must be >= 0)");
+            }
+            weights.put(operation, weight);
+        }
+        return new WorkloadMix(weights);
+    }
+
+    Operation next(SplittableRandom random) {
+        double draw = random.nextDouble() * cumulative[cumulative.length - 1];
+        Operation[] operations = Operation.values();
+        for (int i = 0; i < operations.length; i++) {
+            if (draw < cumulative[i]) {
+                return operations[i];
+            }
+        }
+        // Only reached through rounding of the last bucket
+        return operations[operations.length - 1];
+    }
+
+    double getWeight(Operation operation) {
+        return weights.getOrDefault(operation, 0.0);
+    }
+}
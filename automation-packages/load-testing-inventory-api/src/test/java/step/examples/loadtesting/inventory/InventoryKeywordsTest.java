@@ -0,0 +1,101 @@
+package step.examples.loadtesting.inventory;
+
+import org.junit.After;
+import org.junit.Test;
+import step.core.reports.Measure;
+import step.functions.io.Output;
+import step.handlers.javahandler.KeywordRunner;
+import step.handlers.javahandler.KeywordRunner.ExecutionContext;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class InventoryKeywordsTest {
+
+    private InventoryStandInServer server;
+    private ExecutionContext ctx;
+
+    private void start(int workers, long serviceTimeMs) throws IOException {
+        server = new InventoryStandInServer(0, workers, serviceTimeMs);
+        ctx = KeywordRunner.getExecutionContext(Map.of(), InventoryKeywords.class);
+    }
+
+    @After
+    public void tearDown() {
+        if (ctx != null) {
+            ctx.close();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void workloadRunsTheMixAndCleansUp() throws Exception {
+        start(4, 0);
+        Output<JsonObject> reset = ctx.run("InventoryReset", Json.createObjectBuilder()
+                .add("BaseURL", server.getBaseUrl()).build());
+        assertEquals(204, reset.getPayload().getInt("StatusCode"));
+        assertEquals(0, server.getProductCount());
+
+        Output<JsonObject> output = ctx.run("InventoryCrudWorkload", Json.createObjectBuilder()
+                .add("BaseURL", server.getBaseUrl()).add("Rate", 200).add("DurationMs", 1000).add("Seed", 1).build());
+        assertNull(output.getError());
+        JsonObject payload = output.getPayload();
+        int requests = payload.getInt("Requests");
+        assertTrue("requests: " + requests, requests > 120 && requests < 300);
+        assertEquals(0, payload.getInt("Errors"));
+        assertEquals(requests, payload.getInt("ReadCount") + payload.getInt("CreateCount")
+                + payload.getInt("UpdateCount", 0) + payload.getInt("DeleteCount", 0));
+        Set<String> names = output.getMeasures().stream().map(Measure::getName).collect(Collectors.toSet());
+        assertTrue(names.contains("Inventory.read"));
+        assertTrue(names.contains("Inventory.create"));
+        assertEquals(requests, output.getMeasures().size());
+
+        // Everything the workload created was deleted again
+        assertEquals(payload.getInt("CleanedUp"), payload.getInt("CreateCount") - payload.getInt("DeleteCount", 0));
+        assertEquals(0, server.getProductCount());
+    }
+
+    @Test
+    public void latencyIncludesTheWaitForAFreeSlot() throws Exception {
+        // 50 requests planned over 500 ms, but only one at a time, each taking at least 20 ms
+        start(1, 20);
+        Output<JsonObject> output = ctx.run("InventoryCrudWorkload", Json.createObjectBuilder()
+                .add("BaseURL", server.getBaseUrl()).add("Rate", 100).add("DurationMs", 500).add("Arrivals", "fixed")
+                .add("Mix", "read=1").add("MaxInFlight", 1).build());
+        JsonObject payload = output.getPayload();
+        assertEquals(50, payload.getInt("Requests"));
+        double serviceP99 = payload.getJsonNumber("ReadServiceP99Ms").doubleValue();
+        double p99 = payload.getJsonNumber("ReadP99Ms").doubleValue();
+        assertTrue("service p99: " + serviceP99 + ", p99: " + p99, serviceP99 < 200 && p99 > 300);
+        assertTrue(payload.getJsonNumber("MaxSchedulingLagMs").doubleValue() > 300);
+    }
+
+    @Test
+    public void createsStopAtTheProductLimit() throws Exception {
+        start(4, 0);
+        // The 2 seed products are kept, leaving room for 8 more
+        Output<JsonObject> output = ctx.run("InventoryCrudWorkload", Json.createObjectBuilder()
+                .add("BaseURL", server.getBaseUrl()).add("Rate", 200).add("DurationMs", 300).add("Mix", "create=1")
+                .add("MaxProducts", 10).add("Cleanup", false).build());
+        JsonObject payload = output.getPayload();
+        assertNull(output.getError());
+        assertEquals(0, payload.getInt("Errors"));
+        assertEquals(8, payload.getInt("IdCapacity"));
+        assertEquals(8, payload.getInt("CreateCount"));
+        assertTrue(payload.getInt("Substituted") > 0);
+        assertEquals(10, server.getProductCount());
+        assertTrue(server.containsProduct(100_000));
+        assertFalse(server.containsProduct(100_008));
+    }
+}
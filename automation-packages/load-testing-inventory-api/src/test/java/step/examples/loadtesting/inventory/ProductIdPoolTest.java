@@ -0,0 +1,50 @@
+package step.examples.loadtesting.inventory;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ProductIdPoolTest {
+
+    @Test
+    public void capacityLeavesRoomForOtherProducts() {
+        ProductIdPool pool = new ProductIdPool(100, 50, 20, List.of(1, 2, 3));
+        assertEquals(17, pool.getCapacity());
+        for (int i = 0; i < 17; i++) {
+            assertEquals(100 + i, (int) pool.leaseFree());
+        }
+        assertNull(pool.leaseFree());
+        assertNull(pool.leaseLive());
+    }
+
+    @Test
+    public void existingIdsInTheRangeAreAdopted() {
+        ProductIdPool pool = new ProductIdPool(100, 5, 1000, List.of(1, 101, 103));
+        assertEquals(5, pool.getCapacity());
+        assertEquals(2, pool.getLiveCount());
+        assertEquals(Set.of(100, 102, 104), Set.of(pool.leaseFree(), pool.leaseFree(), pool.leaseFree()));
+        assertNull(pool.leaseFree());
+    }
+
+    @Test
+    public void leasedIdsAreHandedOutOnce() {
+        ProductIdPool pool = new ProductIdPool(1, 2, 1000, List.of());
+        int first = pool.leaseFree();
+        pool.releaseLive(first);
+        assertEquals(first, (int) pool.leaseLive());
+        assertNull(pool.leaseLive());
+        pool.releaseUncertain(first);
+        int second = pool.leaseFree();
+        pool.releaseLive(second);
+
+        // Uncertain IDs are never leased again, but are cleaned up
+        assertNull(pool.leaseFree());
+        assertEquals(List.of(second, first), pool.drainForCleanup());
+        assertTrue(pool.drainForCleanup().isEmpty());
+    }
+}
@@ -0,0 +1,49 @@
+package step.examples.loadtesting.inventory;
+
+import org.junit.Test;
+import step.examples.loadtesting.inventory.WorkloadMix.Operation;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+public class WorkloadMixTest {
+
+    @Test
+    public void drawsFollowTheWeights() {
+        WorkloadMix mix = WorkloadMix.parse("read=70, create=10,update=15,delete=5");
+        assertEquals(15.0, mix.getWeight(Operation.UPDATE), 0.0);
+        Map<Operation, Integer> counts = new EnumMap<>(Operation.class);
+        SplittableRandom random = new SplittableRandom(42);
+        int draws = 100_000;
+        for (int i = 0; i < draws; i++) {
+            counts.merge(mix.next(random), 1, Integer::sum);
+        }
+        assertEquals(0.70, counts.get(Operation.READ) / (double) draws, 0.01);
+        assertEquals(0.10, counts.get(Operation.CREATE) / (double) draws, 0.01);
+        assertEquals(0.15, counts.get(Operation.UPDATE) / (double) draws, 0.01);
+        assertEquals(0.05, counts.get(Operation.DELETE) / (double) draws, 0.01);
+    }
+
+    @Test
+    public void unlistedOperationsAreNeverDrawn() {
+        WorkloadMix mix = WorkloadMix.parse("CREATE=3");
+        SplittableRandom random = new SplittableRandom(1);
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(Operation.CREATE, mix.next(random));
+        }
+    }
+
+    @Test
+    public void illegalMixesAreRejected() {
+        assertTrue(assertThrows(IllegalArgumentException.class, () -> WorkloadMix.parse("read=1,patch=1"))
+                .getMessage().contains("patch"));
+        assertThrows(IllegalArgumentException.class, () -> WorkloadMix.parse("read=-1"));
+        assertThrows(IllegalArgumentException.class, () -> WorkloadMix.parse("read"));
+        assertThrows(IllegalArgumentException.class, () -> WorkloadMix.parse("read=0"));
+    }
+}
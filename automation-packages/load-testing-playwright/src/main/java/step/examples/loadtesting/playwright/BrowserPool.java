@@ -0,0 +1,186 @@
+package step.examples.loadtesting.playwright;
+
+import com.microsoft.playwright.Browser;
+import com.microsoft.playwright.BrowserType;
+import com.microsoft.playwright.Playwright;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import step.functions.io.AbstractSession;
+
+import java.io.Closeable;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps one Playwright instance and launched browser per Step session (i.e. per virtual user of a thread group),
+ * so that iterations only pay for a fresh {@link com.microsoft.playwright.BrowserContext} instead of a new browser
+ * process.
+ * <p>
+ * Playwright objects are not thread-safe, which is why they are never shared between sessions. Browsers are stored as
+ * session objects and closed together with the session. A background reaper closes browsers left idle for longer than
+ * their idle timeout, terminating the browser process and the Playwright driver, and the session launches a new one
+ * on its next use. Every access to a pooled browser's Playwright objects, by the session's thread or the reaper, is
+ * synchronized on it, and the reaper only closes browsers not in use. With an idle timeout of 0, browsers are not
+ * stored and are closed on release.
+ */
+final class BrowserPool {
+    private static final Logger logger = LoggerFactory.getLogger(BrowserPool.class);
+
+    private static final String SESSION_KEY_PREFIX = BrowserPool.class.getName() + ":";
+    private static final long REAPER_INTERVAL_MS = 1000;
+
+    private static final Set<PooledBrowser> pooled = ConcurrentHashMap.newKeySet();
+    private static ScheduledExecutorService reaper;
+
+    private BrowserPool() {
+    }
+
+    /**
+     * Returns the session's browser for the given launch configuration, launching it if needed. The browser must be
+     * handed back with {@link PooledBrowser#release()} at the end of the iteration.
+     *
+     * @param session       the keyword session, or null to launch a browser that is closed on release
+     * @param configKey     identifies the launch options; browsers launched with other options are not reused
+     * @param idleTimeoutMs time after which an unused browser is closed, 0 to close it on release
+     */
+    static PooledBrowser acquire(AbstractSession session, String configKey, BrowserType.LaunchOptions options,
+                                 long idleTimeoutMs) {
+        if (session == null || idleTimeoutMs <= 0) {
+            PooledBrowser browser = new PooledBrowser(configKey, options, 0);
+            browser.acquire();
+            return browser;
+        }
+        String key = SESSION_KEY_PREFIX + configKey;
+        PooledBrowser browser = (PooledBrowser) session.get(key);
+        if (browser == null) {
+            browser = new PooledBrowser(configKey, options, idleTimeoutMs);
+            session.put(key, browser);
+            pooled.add(browser);
+            startReaper();
+        }
+        browser.acquire();
+        return browser;
+    }
+
+    static int getPooledCount() {
+        return pooled.size();
+    }
+
+    private static synchronized void startReaper() {
+        if (reaper != null) return;
+        reaper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "playwright-browser-reaper");
+            t.setDaemon(true);
+            return t;
+        });
+        reaper.scheduleWithFixedDelay(BrowserPool::closeIdle, REAPER_INTERVAL_MS, REAPER_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private static void closeIdle() {
+        long nowNs = System.nanoTime();
+        for (PooledBrowser browser : pooled) {
+            try {
+                browser.closeIfIdle(nowNs);
+            } catch (RuntimeException e) {
+                logger.warn("Unable to close idle browser", e);
+            }
+        }
+    }
+
+    static final class PooledBrowser implements Closeable {
+        private final String configKey;
+        private final BrowserType.LaunchOptions options;
+        private final long idleTimeoutNs;
+
+        private Playwright playwright;
+        private Browser browser;
+        private boolean inUse;
+        private boolean closed;
+        private boolean launched; // by the last acquire
+        private long releasedNs;
+        private int launches;
+
+        private PooledBrowser(String configKey, BrowserType.LaunchOptions options, long idleTimeoutMs) {
+            this.configKey = configKey;
+            this.options = options;
+            this.idleTimeoutNs = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+        }
+
+        private synchronized void acquire() {
+            if (closed) {
+                throw new IllegalStateException("Browser session already closed");
+            }
+            inUse = true;
+            launched = false;
+            if (browser != null && !browser.isConnected()) {
+                logger.warn("Pooled browser {} disconnected, relaunching", configKey);
+                closeBrowser();
+            }
+            if (browser == null) {
+                playwright = Playwright.create();
+                browser = playwright.chromium().launch(options);
+                launched = true;
+                launches++;
+            }
+        }
+
+        synchronized Browser getBrowser() {
+            return browser;
+        }
+
+        /**
+         * Whether the browser had to be launched for the current iteration.
+         */
+        synchronized boolean isLaunched() {
+            return launched;
+        }
+
+        synchronized int getLaunches() {
+            return launches;
+        }
+
+        /**
+         * Hands the browser back to the session; browsers acquired without a session or an idle timeout are closed.
+         */
+        synchronized void release() {
+            inUse = false;
+            releasedNs = System.nanoTime();
+            if (idleTimeoutNs == 0) {
+                close();
+            }
+        }
+
+        // called by the reaper: the monitor keeps the session's thread out while the browser is closed
+        private synchronized void closeIfIdle(long nowNs) {
+            if (!inUse && browser != null && nowNs - releasedNs > idleTimeoutNs) {
+                logger.info("Closing browser {} idle for more than {} ms", configKey, idleTimeoutNs / 1_000_000L);
+                closeBrowser();
+            }
+        }
+
+        private void closeBrowser() {
+            try {
+                // closing Playwright also terminates the browser process it launched
+                playwright.close();
+            } finally {
+                playwright = null;
+                browser = null;
+            }
+        }
+
+        /**
+         * Called when the Step session ends.
+         */
+        @Override
+        public synchronized void close() {
+            closed = true;
+            pooled.remove(this);
+            if (browser != null) {
+                closeBrowser();
+            }
+        }
+    }
+}
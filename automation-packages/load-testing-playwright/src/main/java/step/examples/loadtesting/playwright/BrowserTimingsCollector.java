@@ -0,0 +1,122 @@
+package step.examples.loadtesting.playwright;
+
+import com.microsoft.playwright.Page;
+import step.functions.io.OutputBuilder;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Publishes the browser's own timings of a page as Step measures, so that server time (TTFB) can be told apart from
+ * front-end time without DevTools.
+ * <p>
+ * After each step, one script evaluation reads the Navigation Timing, Paint and Largest Contentful Paint entries of
+ * a newly loaded document, and the Resource Timing entries added since the previous step. Resources are aggregated
+ * in the page by initiator type and host, keeping only the {@link #MAX_HOSTS} hosts with most requests apart, so
+ * that the number of distinct measure names stays bounded. Measures are named after the step,
+ * e.g. "Load homepage.ttfb" or "Load homepage.resources.script@example.com"; the duration of a resource group is
+ * its slowest request, with request count, transferred bytes and summed duration as measure data.
+ * <p>
+ * One collector follows one page; instances are not thread-safe.
+ */
+class BrowserTimingsCollector {
+
+    static final int MAX_HOSTS = 5;
+    private static final int RESOURCE_BUFFER_SIZE = 1000;
+
+    private static final String SCRIPT = "([lastOrigin, fromIndex, maxHosts, bufferSize]) => {\n"
+            + "  const origin = performance.timeOrigin;\n"
+            + "  const newDocument = origin !== lastOrigin;\n"
+            + "  const result = {origin: origin, timings: {}, resources: []};\n"
+            + "  if (newDocument) {\n"
+            + "    performance.setResourceTimingBufferSize(bufferSize);\n"
+            + "    const nav = performance.getEntriesByType('navigation')[0];\n"
+            + "    if (nav) {\n"
+            + "      Object.assign(result.timings, {\n"
+            + "        dns: nav.domainLookupEnd - nav.domainLookupStart,\n"
+            + "        connect: nav.connectEnd - nav.connectStart,\n"
+            + "        tls: nav.secureConnectionStart > 0 ? nav.connectEnd - nav.secureConnectionStart : 0,\n"
+            + "        ttfb: nav.responseStart - nav.requestStart,\n"
+            + "        download: nav.responseEnd - nav.responseStart,\n"
+            + "        domInteractive: nav.domInteractive,\n"
+            + "        domContentLoaded: nav.domContentLoadedEventEnd,\n"
+            + "        load: nav.loadEventEnd});\n"
+            + "    }\n"
+            + "    for (const paint of performance.getEntriesByType('paint')) {\n"
+            + "      result.timings[paint.name === 'first-contentful-paint' ? 'fcp' : 'fp'] = paint.startTime;\n"
+            + "    }\n"
+            + "    try {\n"
+            + "      const observer = new PerformanceObserver(() => {});\n"
+            + "      observer.observe({type: 'largest-contentful-paint', buffered: true});\n"
+            + "      const lcp = observer.takeRecords();\n"
+            + "      observer.disconnect();\n"
+            + "      if (lcp.length > 0) result.timings.lcp = lcp[lcp.length - 1].startTime;\n"
+            + "    } catch (e) {}\n"
+            + "  }\n"
+            + "  const entries = performance.getEntriesByType('resource');\n"
+            + "  result.resourceCount = entries.length;\n"
+            + "  const fresh = entries.slice(newDocument ? 0 : fromIndex);\n"
+            + "  const hostOf = entry => { try { return new URL(entry.name).host || 'other'; } catch (e) { return 'other'; } };\n"
+            + "  const perHost = {};\n"
+            + "  for (const entry of fresh) perHost[hostOf(entry)] = (perHost[hostOf(entry)] || 0) + 1;\n"
+            + "  const kept = new Set(Object.keys(perHost).sort((a, b) => perHost[b] - perHost[a]).slice(0, maxHosts));\n"
+            + "  const groups = {};\n"
+            + "  for (const entry of fresh) {\n"
+            + "    const host = kept.has(hostOf(entry)) ? hostOf(entry) : 'other';\n"
+            + "    const key = (entry.initiatorType || 'other') + '@' + host;\n"
+            + "    const group = groups[key] || (groups[key] = {name: key, count: 0, bytes: 0, totalMs: 0, maxMs: 0});\n"
+            + "    group.count++;\n"
+            + "    group.bytes += entry.transferSize || 0;\n"
+            + "    group.totalMs += entry.duration;\n"
+            + "    group.maxMs = Math.max(group.maxMs, entry.duration);\n"
+            + "  }\n"
+            + "  result.resources = Object.values(groups);\n"
+            + "  return result;\n"
+            + "}";
+
+    private double lastOrigin = -1;
+    private int resourceIndex;
+
+    /**
+     * Reads the timings recorded by the page since the previous call and adds them as measures of the given step.
+     */
+    @SuppressWarnings("unchecked")
+    void collect(Page page, String stepName, OutputBuilder output) {
+        Map<String, Object> result = (Map<String, Object>) page.evaluate(SCRIPT,
+                Arrays.asList(lastOrigin, resourceIndex, MAX_HOSTS, RESOURCE_BUFFER_SIZE));
+        lastOrigin = ((Number) result.get("origin")).doubleValue();
+        resourceIndex = ((Number) result.get("resourceCount")).intValue();
+
+        Map<String, Object> timings = (Map<String, Object>) result.get("timings");
+        for (Map.Entry<String, Object> timing : timings.entrySet()) {
+            long ms = Math.round(((Number) timing.getValue()).doubleValue());
+            // event markers are 0 while the event has not happened yet
+            if (ms > 0 || isDuration(timing.getKey())) {
+                output.addMeasure(stepName + "." + timing.getKey(), ms);
+            }
+        }
+        for (Map<String, Object> group : (List<Map<String, Object>>) result.get("resources")) {
+            Map<String, Object> data = new HashMap<>();
+            data.put("count", ((Number) group.get("count")).longValue());
+            data.put("bytes", ((Number) group.get("bytes")).longValue());
+            data.put("totalMs", Math.round(((Number) group.get("totalMs")).doubleValue()));
+            output.addMeasure(stepName + ".resources." + group.get("name"),
+                    Math.round(((Number) group.get("maxMs")).doubleValue()), data);
+        }
+    }
+
+    private static boolean isDuration(String timing) {
+        switch (timing) {
+            case "dns":
+            case "connect":
+            case "tls":
+            case "ttfb":
+            case "download":
+                return true;
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package step.examples.loadtesting.playwright;
+
+import com.microsoft.playwright.Locator;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.options.LoadState;
+import com.microsoft.playwright.options.SelectOption;
+import com.microsoft.playwright.options.WaitForSelectorState;
+import step.core.reports.Measure;
+import step.functions.io.OutputBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Facade over a {@link Page} that publishes every interaction as its own measure, so that the cost of a step can be
+ * attributed to the action that caused it.
+ * <p>
+ * Actions (navigate, click, type, select) are named after the current step, the action and its selector, e.g.
+ * "Checkout.click #button-account", with the measure data {@code kind=action}. Actions taking longer than the slow
+ * action threshold get {@code slow=true} and are listed by {@link #getSlowActions()}. Waits for page events are
+ * measured separately with {@code kind=wait}, e.g. "Checkout.wait visible #button-account", so that time spent
+ * waiting for the application is not mistaken for time spent interacting with it. Failed interactions are recorded
+ * with the status FAILED before their exception is rethrown.
+ * <p>
+ * Like the page itself, instances are not thread-safe.
+ */
+class InstrumentedPage {
+
+    private final Page page;
+    private final OutputBuilder output;
+    private final long slowActionThresholdMs;
+    private final List<String> slowActions = new ArrayList<>();
+    private String step = "";
+
+    InstrumentedPage(Page page, OutputBuilder output, long slowActionThresholdMs) {
+        this.page = page;
+        this.output = output;
+        this.slowActionThresholdMs = slowActionThresholdMs;
+    }
+
+    Page getPage() {
+        return page;
+    }
+
+    /**
+     * Starts the measure of a step; the following interactions are named after it.
+     */
+    void startStep(String name) {
+        step = name;
+        output.startMeasure(name);
+    }
+
+    void stopStep() {
+        output.stopMeasure();
+    }
+
+    void navigate(String url) {
+        action("navigate " + url, () -> page.navigate(url));
+    }
+
+    void click(String selector) {
+        action("click " + selector, () -> page.locator(selector).click());
+    }
+
+    /**
+     * Types the text key by key, like a user would.
+     */
+    void type(String selector, String text) {
+        action("type " + selector, () -> page.locator(selector).pressSequentially(text));
+    }
+
+    void selectOption(String selector, String label) {
+        action("select " + selector, () -> page.locator(selector).selectOption(new SelectOption().setLabel(label)));
+    }
+
+    void waitForLoadState(LoadState state) {
+        waitFor(state.name().toLowerCase(Locale.ROOT), () -> page.waitForLoadState(state));
+    }
+
+    void waitForVisible(String selector) {
+        waitFor("visible " + selector, () -> page.locator(selector)
+                .waitFor(new Locator.WaitForOptions().setState(WaitForSelectorState.VISIBLE)));
+    }
+
+    /**
+     * Waits until the condition holds, polling it while processing the page's events.
+     */
+    void waitUntil(String description, BooleanSupplier condition) {
+        waitFor(description, () -> page.waitForCondition(condition));
+    }
+
+    /**
+     * The actions that took longer than the threshold so far, with their duration.
+     */
+    List<String> getSlowActions() {
+        return slowActions;
+    }
+
+    private void action(String name, Runnable action) {
+        long durationMs = timed(step + "." + name, "action", action);
+        if (durationMs > slowActionThresholdMs) {
+            slowActions.add(step + "." + name + " (" + durationMs + " ms)");
+        }
+    }
+
+    private void waitFor(String name, Runnable wait) {
+        timed(step + ".wait " + name, "wait", wait);
+    }
+
+    private long timed(String name, String kind, Runnable interaction) {
+        long begin = System.currentTimeMillis();
+        long startNs = System.nanoTime();
+        Measure.Status status = Measure.Status.FAILED;
+        long durationMs;
+        try {
+            interaction.run();
+            status = Measure.Status.PASSED;
+        } finally {
+            durationMs = (System.nanoTime() - startNs) / 1_000_000L;
+            Map<String, Object> data = new HashMap<>();
+            data.put("kind", kind);
+            if (kind.equals("action") && durationMs > slowActionThresholdMs) {
+                data.put("slow", true);
+            }
+            output.addMeasure(new Measure(name, durationMs, begin, data, status));
+        }
+        return durationMs;
+    }
+}
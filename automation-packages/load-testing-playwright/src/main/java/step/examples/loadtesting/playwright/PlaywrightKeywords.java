@@ -1,62 +1,114 @@
 package step.examples.loadtesting.playwright;
 
-import com.microsoft.playwright.Browser;
+import com.microsoft.playwright.BrowserContext;
 import com.microsoft.playwright.BrowserType;
 import com.microsoft.playwright.Page;
-import com.microsoft.playwright.Playwright;
 import com.microsoft.playwright.options.LoadState;
-import com.microsoft.playwright.options.SelectOption;
 import step.handlers.javahandler.AbstractKeyword;
+import step.handlers.javahandler.Input;
 import step.handlers.javahandler.Keyword;
 
+import java.util.Map;
+
 public class PlaywrightKeywords extends AbstractKeyword {
 
     @Keyword(name = "Buy MacBook in OpenCart")
-    public void buyMacBookInOpenCart() throws InterruptedException {
-        try (Playwright playwright = Playwright.create()) {
-            output.startMeasure("Open browser");
-            Browser browser = playwright.chromium().launch(new BrowserType.LaunchOptions().setHeadless(false));
-            Page page = browser.newPage();
-            output.stopMeasure();
+    public void buyMacBookInOpenCart(
+            // The browser is kept per session (virtual user) and closed when unused for this long; 0 disables reuse
+            @Input(name = "browserIdleTimeoutSeconds", defaultValue = "300") int browserIdleTimeoutSeconds,
+            // Publishes navigation, paint and resource timings read from the browser after each step
+            @Input(name = "collectBrowserTimings", defaultValue = "false") boolean collectBrowserTimings,
+            // Lean mode runs headless and blocks the requests below, to fit more virtual users on an agent
+            @Input(name = "leanMode", defaultValue = "false") boolean leanMode,
+            // Playwright resource types blocked in lean mode, separated by ';'
+            @Input(name = "blockedResourceTypes", defaultValue = "image;font;media") String blockedResourceTypes,
+            // Regular expressions of URLs blocked in lean mode, separated by ';'
+            @Input(name = "blockedUrlPatterns", defaultValue = "") String blockedUrlPatterns,
+            // Estimates the bytes saved by lean mode, with a HEAD request per new blocked URL
+            @Input(name = "estimateBlockedBytes", defaultValue = "false") boolean estimateBlockedBytes,
+            // Page actions taking longer than this are flagged as slow
+            @Input(name = "slowActionThresholdMs", defaultValue = "1000") long slowActionThresholdMs) {
+        output.startMeasure("Open browser");
+        BrowserPool.PooledBrowser pooledBrowser = BrowserPool.acquire(session,
+                leanMode ? "chromium/headless" : "chromium/headed",
+                new BrowserType.LaunchOptions().setHeadless(leanMode), browserIdleTimeoutSeconds * 1000L);
+        ResourceBlocker blocker = leanMode ? new ResourceBlocker(blockedResourceTypes, blockedUrlPatterns,
+                estimateBlockedBytes) : null;
+        // Each iteration gets a fresh context, so no cookies, cache or storage leak between iterations
+        try (BrowserContext context = pooledBrowser.getBrowser().newContext()) {
+            Page page = context.newPage();
+            if (blocker != null) {
+                blocker.install(page);
+            }
+            output.stopMeasure(Map.<String, Object>of("browserLaunched", pooledBrowser.isLaunched()));
+            output.add("browserLaunched", pooledBrowser.isLaunched());
+            BrowserTimingsCollector timings = collectBrowserTimings ? new BrowserTimingsCollector() : null;
+
+            InstrumentedPage ui = new InstrumentedPage(page, output, slowActionThresholdMs);
 
             // Measure the loading time of the homepage using the Keyword API
-            output.startMeasure("Load homepage");
-            page.navigate("https://opencart-prf.exense.ch/");
-            output.stopMeasure();
+            ui.startStep("Load homepage");
+            ui.navigate("https://opencart-prf.exense.ch/");
+            ui.stopStep();
+            collectTimings(timings, page, "Load homepage");
 
-            output.startMeasure("Search article");
-            page.locator("text=MacBook").click();
+            ui.startStep("Search article");
+            ui.click("text=MacBook");
             // The previous click loads quite a few resources such as jQuery etc.;
             // If we don't include this wait, the next click may hang forever.
-            page.waitForLoadState(LoadState.DOMCONTENTLOADED);
-            output.stopMeasure();
-
-            output.startMeasure("Add to cart and view cart");
-            page.locator("text=Add to Cart").click();
-            page.locator("text=1 item").click();
-            page.locator("text=View Cart").click();
-            output.stopMeasure();
-
-            output.startMeasure("Checkout");
-            page.locator("//a[text()='Checkout']").click();
-            page.locator("text=Guest Checkout").click();
-            page.waitForLoadState(LoadState.DOMCONTENTLOADED);
-            // Another timing issue potentially hanging the script
-            Thread.sleep(500);
-            page.locator("#button-account").click();
-            page.locator("#input-payment-firstname").type("Gustav");
-            page.locator("#input-payment-lastname").type("Muster");
-            page.locator("#input-payment-email").type("customer@opencart.demo");
-            page.locator("#input-payment-telephone").type("+41777777777");
-            page.locator("#input-payment-address-1").type("Bahnhofstrasse 1");
-            page.locator("#input-payment-city").type("Zurich");
-            page.locator("#input-payment-postcode").type("8001");
-            page.locator("#input-payment-country").selectOption(new SelectOption().setLabel("Switzerland"));
-            page.locator("#input-payment-zone").selectOption(new SelectOption().setLabel("Zürich"));
-            page.locator("#button-guest").click();
-            output.stopMeasure();
+            ui.waitForLoadState(LoadState.DOMCONTENTLOADED);
+            ui.stopStep();
+            collectTimings(timings, page, "Search article");
+
+            ui.startStep("Add to cart and view cart");
+            ui.click("text=Add to Cart");
+            ui.click("text=1 item");
+            ui.click("text=View Cart");
+            ui.stopStep();
+            collectTimings(timings, page, "Add to cart and view cart");
+
+            ui.startStep("Checkout");
+            ui.click("//a[text()='Checkout']");
+            ui.click("text=Guest Checkout");
+            ui.waitForLoadState(LoadState.DOMCONTENTLOADED);
+            // Continuing before the checkout option is applied may hang the script; wait for it instead of sleeping
+            ui.waitUntil("guest checkout selected",
+                    () -> page.locator("input[name='account'][value='guest']").isChecked());
+            ui.waitForVisible("#button-account");
+            ui.click("#button-account");
+            ui.type("#input-payment-firstname", "Gustav");
+            ui.type("#input-payment-lastname", "Muster");
+            ui.type("#input-payment-email", "customer@opencart.demo");
+            ui.type("#input-payment-telephone", "+41777777777");
+            ui.type("#input-payment-address-1", "Bahnhofstrasse 1");
+            ui.type("#input-payment-city", "Zurich");
+            ui.type("#input-payment-postcode", "8001");
+            ui.selectOption("#input-payment-country", "Switzerland");
+            ui.selectOption("#input-payment-zone", "Zürich");
+            ui.click("#button-guest");
+            ui.stopStep();
+            collectTimings(timings, page, "Checkout");
 
+            output.add("slowActions", ui.getSlowActions().size());
+            if (!ui.getSlowActions().isEmpty()) {
+                output.add("slowActionList", String.join("; ", ui.getSlowActions()));
+            }
             output.add("version", "0.0.0-SNAPSHOT-v5");
+        } finally {
+            if (blocker != null) {
+                output.add("blockedRequests", blocker.getBlockedRequests());
+                if (estimateBlockedBytes) {
+                    output.add("blockedBytes", blocker.getBlockedBytes());
+                }
+            }
+            pooledBrowser.release();
+        }
+    }
+
+    // Called outside of the step's own measure, so that reading the timings does not add to it
+    private void collectTimings(BrowserTimingsCollector timings, Page page, String step) {
+        if (timings != null) {
+            timings.collect(page, step, output);
         }
     }
 }
\ No newline at end of file
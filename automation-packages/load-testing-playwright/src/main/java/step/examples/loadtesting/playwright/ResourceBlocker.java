@@ -0,0 +1,134 @@
+package step.examples.loadtesting.playwright;
+
+import com.microsoft.playwright.APIResponse;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.Request;
+import com.microsoft.playwright.Route;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * Aborts requests of a page by resource type (e.g. image, font, media) or by URL pattern, so that load
+ * agents do not spend CPU on rendering that is irrelevant for the backend under test.
+ * <p>
+ * Blocked requests are counted. Blocked resources are never downloaded: the bytes saved are only estimated on demand,
+ * from the Content-Length returned by a HEAD request sent once per URL. The sizes of the most recent URLs are cached
+ * per JVM; URLs whose size could not be determined only count as blocked requests.
+ */
+class ResourceBlocker {
+
+    private static final int MAX_CACHED_SIZES = 10_000;
+    private static final Map<String, Long> sizes = Collections.synchronizedMap(
+            new LinkedHashMap<String, Long>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+                    return size() > MAX_CACHED_SIZES;
+                }
+            });
+
+    private final Set<String> resourceTypes;
+    private final List<Pattern> urlPatterns;
+    private final boolean estimateBytes;
+    private final AtomicLong blockedRequests = new AtomicLong();
+    private final AtomicLong blockedBytes = new AtomicLong();
+
+    /**
+     * @param resourceTypes Playwright resource types, separated by ';'
+     * @param urlPatterns   regular expressions found anywhere in the URL, separated by ';'
+     * @param estimateBytes whether to estimate the bytes saved, at the cost of a HEAD request per new URL
+     */
+    ResourceBlocker(String resourceTypes, String urlPatterns, boolean estimateBytes) {
+        this.estimateBytes = estimateBytes;
+        this.resourceTypes = new TreeSet<>();
+        for (String type : split(resourceTypes)) {
+            this.resourceTypes.add(type.toLowerCase(Locale.ROOT));
+        }
+        this.urlPatterns = new ArrayList<>();
+        for (String pattern : split(urlPatterns)) {
+            this.urlPatterns.add(Pattern.compile(pattern));
+        }
+    }
+
+    private static List<String> split(String list) {
+        List<String> values = new ArrayList<>();
+        if (list != null) {
+            for (String value : list.split(";")) {
+                if (!value.trim().isEmpty()) {
+                    values.add(value.trim());
+                }
+            }
+        }
+        return values;
+    }
+
+    void install(Page page) {
+        page.route("**/*", this::handle);
+    }
+
+    private void handle(Route route) {
+        Request request = route.request();
+        if (!isBlocked(request)) {
+            route.resume();
+            return;
+        }
+        blockedRequests.incrementAndGet();
+        if (estimateBytes) {
+            // not computeIfAbsent: the sync API may dispatch other route callbacks while fetching
+            Long size = sizes.get(request.url());
+            if (size == null) {
+                size = fetchContentLength(route);
+                sizes.putIfAbsent(request.url(), size);
+            }
+            if (size >= 0) {
+                blockedBytes.addAndGet(size);
+            }
+        }
+        route.abort("blockedbyclient");
+    }
+
+    private boolean isBlocked(Request request) {
+        if (resourceTypes.contains(request.resourceType())) {
+            return true;
+        }
+        for (Pattern pattern : urlPatterns) {
+            if (pattern.matcher(request.url()).find()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static long fetchContentLength(Route route) {
+        try {
+            APIResponse response = route.fetch(new Route.FetchOptions().setMethod("HEAD"));
+            try {
+                String contentLength = response.headers().get("content-length");
+                return response.ok() && contentLength != null ? Long.parseLong(contentLength.trim()) : -1L;
+            } finally {
+                response.dispose();
+            }
+        } catch (RuntimeException e) { // includes a malformed Content-Length
+            return -1L;
+        }
+    }
+
+    long getBlockedRequests() {
+        return blockedRequests.get();
+    }
+
+    /**
+     * Bytes of the blocked responses, as far as their size is known, or 0 if they are not estimated.
+     */
+    long getBlockedBytes() {
+        return blockedBytes.get();
+    }
+}
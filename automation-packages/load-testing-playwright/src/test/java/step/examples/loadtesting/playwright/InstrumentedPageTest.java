@@ -0,0 +1,88 @@
+package step.examples.loadtesting.playwright;
+
+import com.microsoft.playwright.Locator;
+import com.microsoft.playwright.Page;
+import com.microsoft.playwright.PlaywrightException;
+import org.junit.Test;
+import step.core.reports.Measure;
+import step.functions.io.OutputBuilder;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class InstrumentedPageTest {
+
+    @Test
+    public void actionsAndWaitsAreMeasuredSeparately() {
+        OutputBuilder output = new OutputBuilder();
+        InstrumentedPage ui = new InstrumentedPage(stubPage(), output, 20);
+
+        ui.startStep("Checkout");
+        ui.click("#fast");
+        ui.click("#slow");
+        ui.waitForVisible("#slow");
+        ui.waitUntil("always", () -> true);
+        ui.stopStep();
+
+        Map<String, Measure> measures = output.build().getMeasures().stream()
+                .collect(Collectors.toMap(Measure::getName, m -> m));
+        assertEquals("action", measures.get("Checkout.click #fast").getData().get("kind"));
+        assertFalse(measures.get("Checkout.click #fast").getData().containsKey("slow"));
+        assertEquals(true, measures.get("Checkout.click #slow").getData().get("slow"));
+        assertEquals("wait", measures.get("Checkout.wait visible #slow").getData().get("kind"));
+        assertEquals("wait", measures.get("Checkout.wait always").getData().get("kind"));
+        assertTrue(measures.containsKey("Checkout"));
+
+        List<String> slowActions = ui.getSlowActions();
+        assertEquals(1, slowActions.size());
+        assertTrue(slowActions.get(0).startsWith("Checkout.click #slow ("));
+    }
+
+    @Test
+    public void failedActionsAreMeasured() {
+        OutputBuilder output = new OutputBuilder();
+        InstrumentedPage ui = new InstrumentedPage(stubPage(), output, 1000);
+        try {
+            ui.click("#missing");
+            fail();
+        } catch (PlaywrightException e) {
+            // expected
+        }
+        Measure measure = output.build().getMeasures().get(0);
+        assertEquals(".click #missing", measure.getName());
+        assertEquals(Measure.Status.FAILED, measure.getStatus());
+    }
+
+    // Clicks on "#slow" take 50 ms and clicks on "#missing" fail, everything else returns immediately
+    private static Page stubPage() {
+        return (Page) Proxy.newProxyInstance(Page.class.getClassLoader(), new Class<?>[]{Page.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("locator")) {
+                        return stubLocator((String) args[0]);
+                    }
+                    return null;
+                });
+    }
+
+    private static Locator stubLocator(String selector) {
+        return (Locator) Proxy.newProxyInstance(Locator.class.getClassLoader(), new Class<?>[]{Locator.class},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("click")) {
+                        if (selector.equals("#missing")) {
+                            throw new PlaywrightException("Element not found");
+                        }
+                        if (selector.equals("#slow")) {
+                            Thread.sleep(50);
+                        }
+                    }
+                    return null;
+                });
+    }
+}
@@ -3,12 +3,18 @@ package step.examples.loadtesting.playwright;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
+import step.functions.io.Output;
 import step.handlers.javahandler.KeywordRunner;
 import step.handlers.javahandler.KeywordRunner.ExecutionContext;
 
+import javax.json.JsonObject;
 import java.util.HashMap;
 import java.util.Map;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 // This uses the "traditional" way to test the Step keyword.
 public class PlaywrightKeywordsTest {
 
@@ -24,6 +30,41 @@ public class PlaywrightKeywordsTest {
         ctx.run("Buy MacBook in OpenCart");
     }
 
+    @Test
+    public void browserIsReusedWithinTheSession() throws Exception {
+        Output<JsonObject> first = ctx.run("Buy MacBook in OpenCart");
+        Output<JsonObject> second = ctx.run("Buy MacBook in OpenCart");
+        assertTrue(first.getPayload().getBoolean("browserLaunched"));
+        assertFalse(second.getPayload().getBoolean("browserLaunched"));
+        assertEquals(1, BrowserPool.getPooledCount());
+        ctx.close();
+        assertEquals(0, BrowserPool.getPooledCount());
+    }
+
+    @Test
+    public void browserIsClosedAfterEachIterationWithoutIdleTimeout() throws Exception {
+        Output<JsonObject> first = ctx.run("Buy MacBook in OpenCart", "{\"browserIdleTimeoutSeconds\":0}");
+        Output<JsonObject> second = ctx.run("Buy MacBook in OpenCart", "{\"browserIdleTimeoutSeconds\":0}");
+        assertTrue(first.getPayload().getBoolean("browserLaunched"));
+        assertTrue(second.getPayload().getBoolean("browserLaunched"));
+        assertEquals(0, BrowserPool.getPooledCount());
+    }
+
+    @Test
+    public void leanModeBlocksImages() throws Exception {
+        Output<JsonObject> output = ctx.run("Buy MacBook in OpenCart", "{\"leanMode\":true}");
+        assertTrue(output.getPayload().getJsonNumber("blockedRequests").longValue() > 0);
+        assertFalse(output.getPayload().containsKey("blockedBytes"));
+    }
+
+    @Test
+    public void leanModeEstimatesBlockedBytesOnDemand() throws Exception {
+        Output<JsonObject> output = ctx.run("Buy MacBook in OpenCart",
+                "{\"leanMode\":true,\"estimateBlockedBytes\":true}");
+        assertTrue(output.getPayload().getJsonNumber("blockedRequests").longValue() > 0);
+        assertTrue(output.getPayload().getJsonNumber("blockedBytes").longValue() > 0);
+    }
+
     @After
     public void tearDown() {
         ctx.close();
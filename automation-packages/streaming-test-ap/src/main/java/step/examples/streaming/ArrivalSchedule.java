@@ -0,0 +1,88 @@
+package step.examples.streaming;
+
+import java.util.SplittableRandom;
+
+/**
+ * Open-model launch plan for attachments: launch times follow an arrival process and are fixed up-front, so they do
+ * not depend on how long earlier launches took. The first attachment is always launched immediately.
+ */
+final class ArrivalSchedule {
+
+    enum Profile {
+        /** Launch one after another on the keyword thread, sleeping a random time in between (closed model). */
+        SEQUENTIAL,
+        /** Constant inter-arrival time of {@code 1 / rate}. */
+        FIXED,
+        /** Exponentially distributed inter-arrival times with mean {@code 1 / rate}. */
+        POISSON,
+        /** Rate rising (or falling) linearly from the ramp start rate to the rate over the ramp duration, then constant. */
+        RAMP;
+
+        static Profile parse(String value) {
+            try {
+                return Profile.valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("illegal arrival mode: " + value + " (must be sequential, fixed, poisson or ramp)");
+            }
+        }
+    }
+
+    private ArrivalSchedule() {
+    }
+
+    /**
+     * Computes the planned launch offsets, in nanoseconds from the first launch, for an open-model profile.
+     */
+    static long[] plan(Profile profile, int count, double ratePerSecond, double rampStartRatePerSecond,
+                       long rampDurationMs, SplittableRandom random) {
+        if (profile == Profile.SEQUENTIAL) {
+            throw new IllegalArgumentException("sequential arrivals are not planned up-front");
+        }
+        if (!(ratePerSecond > 0)) {
+            throw new IllegalArgumentException("illegal arrival rate (must be > 0)");
+        }
+        if (profile == Profile.RAMP && (rampStartRatePerSecond < 0 || rampDurationMs < 0)) {
+            throw new IllegalArgumentException("illegal ramp params (must be >= 0)");
+        }
+        long[] offsetsNs = new long[count];
+        double t = 0.0; // seconds
+        for (int k = 0; k < count; k++) {
+            switch (profile) {
+                case FIXED:
+                    t = k / ratePerSecond;
+                    break;
+                case POISSON:
+                    if (k > 0) {
+                        t += -Math.log(1.0 - random.nextDouble()) / ratePerSecond;
+                    }
+                    break;
+                case RAMP:
+                    t = rampArrivalSeconds(k, rampStartRatePerSecond, ratePerSecond, rampDurationMs / 1000.0);
+                    break;
+                default:
+                    throw new IllegalStateException("unexpected profile " + profile);
+            }
+            offsetsNs[k] = (long) (t * 1_000_000_000L);
+        }
+        return offsetsNs;
+    }
+
+    /*
+     * Time of the k-th arrival of a deterministic process with rate r(t) = r0 + a*t for t < T, r1 afterwards,
+     * i.e. the solution of Lambda(t) = k, where Lambda is the integral of r.
+     */
+    private static double rampArrivalSeconds(int k, double r0, double r1, double rampSeconds) {
+        if (rampSeconds <= 0) {
+            return k / r1;
+        }
+        double a = (r1 - r0) / rampSeconds;
+        double arrivalsDuringRamp = r0 * rampSeconds + a * rampSeconds * rampSeconds / 2.0;
+        if (k > arrivalsDuringRamp) {
+            return rampSeconds + (k - arrivalsDuringRamp) / r1;
+        }
+        if (a == 0.0) {
+            return k / r0;
+        }
+        return (-r0 + Math.sqrt(r0 * r0 + 2.0 * a * k)) / a;
+    }
+}
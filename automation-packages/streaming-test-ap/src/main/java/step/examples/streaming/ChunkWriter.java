@@ -0,0 +1,286 @@
+package step.examples.streaming;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Write path used by {@link ProducerFiber} to hand content chunks to the file tailed by the live upload, or to the
+ * {@link RingBuffer} read by it.
+ * <p>
+ * Chunks are staged in a bounded buffer and drained to the target according to a {@link FlushPolicy}.
+ * Draining always happens in write order on the owning fiber, so the uploader never observes
+ * reordered or partially skipped content. Instances are not thread-safe.
+ */
+abstract class ChunkWriter implements Closeable {
+
+    /*
+     * A preallocated memory-mapped mode is deliberately not offered: mapping a region extends the file
+     * to its final size up-front, and the live uploader, which tails the file length, would then read
+     * not-yet-written zeros.
+     */
+    enum IoMode {
+        /** Plain {@link FileOutputStream}, draining from a heap buffer. */
+        STREAM,
+        /** {@link FileChannel} draining from a direct {@link ByteBuffer}. */
+        CHANNEL;
+
+        static IoMode parse(String value) {
+            try {
+                return IoMode.valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("illegal io mode: " + value + " (must be stream or channel)");
+            }
+        }
+    }
+
+    enum FlushPolicy {
+        /** Drain after every chunk (one write syscall per chunk). */
+        CHUNK,
+        /** Drain as soon as at least {@code flushBytes} are pending. */
+        BYTES,
+        /** Drain once per scheduling step of the fiber. */
+        TICK;
+
+        static FlushPolicy parse(String value) {
+            try {
+                return FlushPolicy.valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("illegal flush policy: " + value + " (must be chunk, bytes or tick)");
+            }
+        }
+    }
+
+    private final FlushPolicy policy;
+    private final int flushBytes;
+
+    private long syscalls;
+    private long bytesDrained;
+    private long drainNanos;
+
+    protected ChunkWriter(FlushPolicy policy, int flushBytes) {
+        this.policy = policy;
+        this.flushBytes = flushBytes;
+    }
+
+    static ChunkWriter open(IoMode mode, FlushPolicy policy, int flushBytes, File file) throws IOException {
+        if (flushBytes < ProducerFiber.CHUNK_SIZE) {
+            throw new IllegalArgumentException("illegal flushBytes (must be >= " + ProducerFiber.CHUNK_SIZE + ")");
+        }
+        switch (mode) {
+            case STREAM:
+                return new StreamChunkWriter(policy, flushBytes, file);
+            case CHANNEL:
+                return new ChannelChunkWriter(policy, flushBytes, file);
+            default:
+                throw new IllegalArgumentException("unsupported io mode: " + mode);
+        }
+    }
+
+    /**
+     * Opens a writer draining into an in-memory ring instead of a file; each drain counts as one write call.
+     */
+    static ChunkWriter toRing(FlushPolicy policy, int flushBytes, RingBuffer ring) {
+        if (flushBytes < ProducerFiber.CHUNK_SIZE) {
+            throw new IllegalArgumentException("illegal flushBytes (must be >= " + ProducerFiber.CHUNK_SIZE + ")");
+        }
+        return new RingChunkWriter(policy, flushBytes, ring);
+    }
+
+    /**
+     * Stages {@code len} bytes (at most the staging capacity) and drains according to the flush policy.
+     */
+    final void write(byte[] buf, int off, int len) throws IOException {
+        if (len > capacity() - pending()) {
+            drainPending();
+        }
+        stage(buf, off, len);
+        if (policy == FlushPolicy.CHUNK || (policy == FlushPolicy.BYTES && pending() >= flushBytes)) {
+            drainPending();
+        }
+    }
+
+    /**
+     * Signals the end of a fiber scheduling step.
+     */
+    final void endOfTick() throws IOException {
+        if (policy == FlushPolicy.TICK) {
+            drainPending();
+        }
+    }
+
+    @Override
+    public final void close() throws IOException {
+        try {
+            drainPending();
+        } finally {
+            closeTarget();
+        }
+    }
+
+    private void drainPending() throws IOException {
+        int pending = pending();
+        if (pending == 0) return;
+        long t0 = System.nanoTime();
+        syscalls += drain();
+        drainNanos += System.nanoTime() - t0;
+        bytesDrained += pending;
+    }
+
+    long getSyscalls() {
+        return syscalls;
+    }
+
+    long getBytesDrained() {
+        return bytesDrained;
+    }
+
+    long getDrainNanos() {
+        return drainNanos;
+    }
+
+    protected abstract int capacity();
+
+    protected abstract int pending();
+
+    protected abstract void stage(byte[] buf, int off, int len);
+
+    /**
+     * Writes out all pending bytes, returning the number of write calls issued.
+     */
+    protected abstract int drain() throws IOException;
+
+    protected abstract void closeTarget() throws IOException;
+
+    static final class StreamChunkWriter extends ChunkWriter {
+        private final FileOutputStream out;
+        private final byte[] staging;
+        private int pending;
+
+        StreamChunkWriter(FlushPolicy policy, int flushBytes, File file) throws IOException {
+            super(policy, flushBytes);
+            this.out = new FileOutputStream(file);
+            this.staging = new byte[policy == FlushPolicy.CHUNK ? ProducerFiber.CHUNK_SIZE : flushBytes];
+        }
+
+        @Override
+        protected int capacity() {
+            return staging.length;
+        }
+
+        @Override
+        protected int pending() {
+            return pending;
+        }
+
+        @Override
+        protected void stage(byte[] buf, int off, int len) {
+            System.arraycopy(buf, off, staging, pending, len);
+            pending += len;
+        }
+
+        @Override
+        protected int drain() throws IOException {
+            out.write(staging, 0, pending);
+            pending = 0;
+            return 1;
+        }
+
+        @Override
+        protected void closeTarget() throws IOException {
+            out.close();
+        }
+    }
+
+    static final class ChannelChunkWriter extends ChunkWriter {
+        private final FileChannel channel;
+        private final ByteBuffer staging;
+
+        ChannelChunkWriter(FlushPolicy policy, int flushBytes, File file) throws IOException {
+            super(policy, flushBytes);
+            this.channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+            this.staging = ByteBuffer.allocateDirect(policy == FlushPolicy.CHUNK ? ProducerFiber.CHUNK_SIZE : flushBytes);
+        }
+
+        @Override
+        protected int capacity() {
+            return staging.capacity();
+        }
+
+        @Override
+        protected int pending() {
+            return staging.position();
+        }
+
+        @Override
+        protected void stage(byte[] buf, int off, int len) {
+            staging.put(buf, off, len);
+        }
+
+        @Override
+        protected int drain() throws IOException {
+            int calls = 0;
+            staging.flip();
+            while (staging.hasRemaining()) {
+                channel.write(staging);
+                calls++;
+            }
+            staging.clear();
+            return calls;
+        }
+
+        @Override
+        protected void closeTarget() throws IOException {
+            channel.close();
+        }
+    }
+
+    static final class RingChunkWriter extends ChunkWriter {
+        private final RingBuffer ring;
+        private final byte[] staging;
+        private int pending;
+
+        RingChunkWriter(FlushPolicy policy, int flushBytes, RingBuffer ring) {
+            super(policy, flushBytes);
+            this.ring = ring;
+            this.staging = new byte[policy == FlushPolicy.CHUNK ? ProducerFiber.CHUNK_SIZE : flushBytes];
+        }
+
+        RingBuffer getRing() {
+            return ring;
+        }
+
+        @Override
+        protected int capacity() {
+            return staging.length;
+        }
+
+        @Override
+        protected int pending() {
+            return pending;
+        }
+
+        @Override
+        protected void stage(byte[] buf, int off, int len) {
+            System.arraycopy(buf, off, staging, pending, len);
+            pending += len;
+        }
+
+        @Override
+        protected int drain() throws IOException {
+            ring.write(staging, 0, pending);
+            pending = 0;
+            return 1;
+        }
+
+        @Override
+        protected void closeTarget() {
+            // the ring stays readable until the upload signals end of input
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package step.examples.streaming;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Deterministic generator for the content emitted by {@link ProducerFiber}.
+ * <p>
+ * Text content is drawn from a fixed alphabet, with a line break inserted after every 40..80 symbols.
+ * Binary content is either made of short runs of repeated bytes, which compresses well, or of uniformly
+ * random bytes, which does not compress at all.
+ * Generators fill caller-provided buffers and never allocate, so a fiber can reuse one buffer for
+ * its whole lifetime. Instances are not thread-safe; each fiber owns its own generator.
+ */
+abstract class ContentGenerator {
+
+    enum Mode {
+        /**
+         * Byte-identical to the original {@code java.util.Random}-based algorithm (one draw per byte),
+         * but using an inlined, unsynchronized copy of the same LCG.
+         */
+        COMPAT,
+        /**
+         * Several symbols per 64-bit draw. Deterministic for a given seed, but produces a different
+         * stream than {@link #COMPAT}.
+         */
+        BULK,
+        /**
+         * Binary content: runs of 1..16 identical bytes, of random values. Deflate shrinks it to about a quarter.
+         */
+        COMPRESSIBLE,
+        /**
+         * Binary content: uniformly random bytes, eight per 64-bit draw.
+         */
+        INCOMPRESSIBLE;
+
+        static Mode parse(String value) {
+            try {
+                return Mode.valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("illegal content mode: " + value
+                        + " (must be compat, bulk, compressible or incompressible)");
+            }
+        }
+
+        boolean isText() {
+            return this == COMPAT || this == BULK;
+        }
+    }
+
+    static final byte[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789 .,;:!?+-*/=_()[]{}<>#'\""
+                    .getBytes(StandardCharsets.US_ASCII);
+
+    static final int LINE_LENGTH_MIN = 40;
+    static final int LINE_LENGTH_RANGE = 41; // 40..80 inclusive
+
+    // counts bytes until the next '\n'
+    protected int lineRemaining;
+
+    static ContentGenerator create(Mode mode, long seed) {
+        switch (mode) {
+            case COMPAT:
+                return new Compat(seed);
+            case BULK:
+                return new Bulk(seed);
+            case COMPRESSIBLE:
+                return new Compressible(seed);
+            case INCOMPRESSIBLE:
+                return new Incompressible(seed);
+            default:
+                throw new IllegalArgumentException("unsupported content mode: " + mode);
+        }
+    }
+
+    /**
+     * Fills {@code buf[off, off+len)} with the next {@code len} bytes of the stream.
+     */
+    abstract void fill(byte[] buf, int off, int len);
+
+    /**
+     * Reproduces {@code java.util.Random#nextInt(int)} exactly, without the atomic seed update.
+     */
+    static final class Compat extends ContentGenerator {
+        private static final long MULTIPLIER = 0x5DEECE66DL;
+        private static final long ADDEND = 0xBL;
+        private static final long MASK = (1L << 48) - 1;
+
+        private long seed;
+
+        Compat(long seed) {
+            this.seed = (seed ^ MULTIPLIER) & MASK;
+            this.lineRemaining = LINE_LENGTH_MIN + nextInt(LINE_LENGTH_RANGE);
+        }
+
+        private int next31() {
+            seed = (seed * MULTIPLIER + ADDEND) & MASK;
+            return (int) (seed >>> 17);
+        }
+
+        private int nextInt(int bound) {
+            int r = next31();
+            int m = bound - 1;
+            if ((bound & m) == 0) {
+                return (int) ((bound * (long) r) >> 31);
+            }
+            for (int u = r; u - (r = u % bound) + m < 0; u = next31()) ;
+            return r;
+        }
+
+        @Override
+        void fill(byte[] buf, int off, int len) {
+            final byte[] alphabet = ALPHABET;
+            final int end = off + len;
+            int remaining = lineRemaining;
+            for (int i = off; i < end; i++) {
+                if (remaining == 0) {
+                    buf[i] = (byte) '\n';
+                    remaining = LINE_LENGTH_MIN + nextInt(LINE_LENGTH_RANGE);
+                } else {
+                    buf[i] = alphabet[nextInt(alphabet.length)];
+                    remaining--;
+                }
+            }
+            lineRemaining = remaining;
+        }
+    }
+
+    /**
+     * SplitMix64 stream, consumed as four 16-bit lanes per draw. Each lane is mapped onto its range
+     * by multiply-shift, which avoids the division and rejection loop of {@code nextInt}.
+     */
+    static final class Bulk extends ContentGenerator {
+        private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+        private long state;
+        private long lanes;
+        private int lanesLeft;
+
+        Bulk(long seed) {
+            this.state = seed;
+            this.lineRemaining = LINE_LENGTH_MIN + nextLane(LINE_LENGTH_RANGE);
+        }
+
+        static long mix64(long z) {
+            z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+            z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+            return z ^ (z >>> 31);
+        }
+
+        private int nextLane(int bound) {
+            if (lanesLeft == 0) {
+                lanes = mix64(state += GOLDEN_GAMMA);
+                lanesLeft = 4;
+            }
+            int lane = (int) (lanes & 0xFFFF);
+            lanes >>>= 16;
+            lanesLeft--;
+            return (lane * bound) >>> 16;
+        }
+
+        @Override
+        void fill(byte[] buf, int off, int len) {
+            final byte[] alphabet = ALPHABET;
+            final int end = off + len;
+            int remaining = lineRemaining;
+            for (int i = off; i < end; i++) {
+                if (remaining == 0) {
+                    buf[i] = (byte) '\n';
+                    remaining = LINE_LENGTH_MIN + nextLane(LINE_LENGTH_RANGE);
+                } else {
+                    buf[i] = alphabet[nextLane(alphabet.length)];
+                    remaining--;
+                }
+            }
+            lineRemaining = remaining;
+        }
+    }
+
+    /**
+     * Runs of identical bytes, each draw of the SplitMix64 stream providing four runs as 16-bit lanes:
+     * the byte value in the low 8 bits, the run length minus one in the next 4 bits.
+     */
+    static final class Compressible extends ContentGenerator {
+        private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+        private long state;
+        private long lanes;
+        private int lanesLeft;
+        private byte value;
+        private int runRemaining;
+
+        Compressible(long seed) {
+            this.state = seed;
+        }
+
+        private void nextRun() {
+            if (lanesLeft == 0) {
+                lanes = Bulk.mix64(state += GOLDEN_GAMMA);
+                lanesLeft = 4;
+            }
+            value = (byte) lanes;
+            runRemaining = 1 + (int) ((lanes >>> 8) & 0xF);
+            lanes >>>= 16;
+            lanesLeft--;
+        }
+
+        @Override
+        void fill(byte[] buf, int off, int len) {
+            final int end = off + len;
+            int i = off;
+            while (i < end) {
+                if (runRemaining == 0) {
+                    nextRun();
+                }
+                int run = Math.min(runRemaining, end - i);
+                for (int j = 0; j < run; j++) {
+                    buf[i++] = value;
+                }
+                runRemaining -= run;
+            }
+        }
+    }
+
+    /**
+     * The SplitMix64 stream itself, least significant byte first.
+     */
+    static final class Incompressible extends ContentGenerator {
+        private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+        private long state;
+        private long bytes;
+        private int bytesLeft;
+
+        Incompressible(long seed) {
+            this.state = seed;
+        }
+
+        @Override
+        void fill(byte[] buf, int off, int len) {
+            final int end = off + len;
+            int i = off;
+            // drain what is left of the previous draw, so that the stream does not depend on the fill sizes
+            while (i < end && bytesLeft > 0) {
+                buf[i++] = (byte) bytes;
+                bytes >>>= 8;
+                bytesLeft--;
+            }
+            while (end - i >= 8) {
+                long draw = Bulk.mix64(state += GOLDEN_GAMMA);
+                for (int b = 0; b < 8; b++) {
+                    buf[i++] = (byte) draw;
+                    draw >>>= 8;
+                }
+            }
+            if (i < end) {
+                bytes = Bulk.mix64(state += GOLDEN_GAMMA);
+                bytesLeft = 8;
+                while (i < end) {
+                    buf[i++] = (byte) bytes;
+                    bytes >>>= 8;
+                    bytesLeft--;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package step.examples.streaming;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+/**
+ * Checks uploaded content against what a {@link ProducerFiber} wrote, by regenerating the expected bytes from the
+ * fiber's seed and comparing them block by block with the uploaded stream. Nothing is buffered beyond one block
+ * on each side, so resources of any size can be verified.
+ */
+final class ContentVerifier {
+    static final int BLOCK_SIZE = 64 * 1024;
+
+    static final class Result {
+        final long bytes;          // uploaded bytes read
+        final long checksum;       // CRC32C of the uploaded bytes
+        final long mismatchOffset; // first differing byte, or -1 if identical
+
+        Result(long bytes, long checksum, long mismatchOffset) {
+            this.bytes = bytes;
+            this.checksum = checksum;
+            this.mismatchOffset = mismatchOffset;
+        }
+
+        boolean isValid() {
+            return mismatchOffset < 0;
+        }
+    }
+
+    private ContentVerifier() {
+    }
+
+    /**
+     * Reads {@code uploaded} to the end and compares it to the content of {@code producer}, which must have completed.
+     */
+    static Result verify(ProducerFiber producer, InputStream uploaded) throws IOException {
+        long expectedSize = producer.getBytesWritten();
+        ContentGenerator generator = producer.newContentGenerator();
+        byte[] expected = new byte[BLOCK_SIZE];
+        byte[] actual = new byte[BLOCK_SIZE];
+        CRC32C checksum = new CRC32C();
+        long offset = 0;
+        long mismatchOffset = -1;
+        int read;
+        while ((read = readBlock(uploaded, actual)) > 0) {
+            checksum.update(actual, 0, read);
+            if (mismatchOffset < 0) {
+                int comparable = (int) Math.max(0, Math.min(read, expectedSize - offset));
+                fill(generator, expected, comparable);
+                int mismatch = Arrays.mismatch(expected, 0, comparable, actual, 0, read);
+                if (mismatch >= 0) {
+                    mismatchOffset = offset + mismatch; // differing or surplus byte
+                }
+            }
+            offset += read;
+        }
+        if (mismatchOffset < 0 && offset < expectedSize) {
+            mismatchOffset = offset; // truncated
+        }
+        return new Result(offset, checksum.getValue(), mismatchOffset);
+    }
+
+    // the fiber fills in CHUNK_SIZE steps, so the generator is driven the same way
+    private static void fill(ContentGenerator generator, byte[] block, int len) {
+        for (int off = 0; off < len; off += ProducerFiber.CHUNK_SIZE) {
+            generator.fill(block, off, Math.min(ProducerFiber.CHUNK_SIZE, len - off));
+        }
+    }
+
+    private static int readBlock(InputStream in, byte[] block) throws IOException {
+        int filled = 0;
+        int n;
+        while (filled < block.length && (n = in.read(block, filled, block.length - filled)) != -1) {
+            filled += n;
+        }
+        return filled;
+    }
+}
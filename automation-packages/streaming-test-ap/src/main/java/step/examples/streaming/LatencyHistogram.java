@@ -0,0 +1,84 @@
+package step.examples.streaming;
+
+/**
+ * Compact log-linear histogram of non-negative durations, recorded with microsecond resolution.
+ * <p>
+ * Values below {@code 2 * SUB_BUCKETS} microseconds are counted exactly; above that every power of two is
+ * split into {@code SUB_BUCKETS} linear buckets, which bounds the relative error of reported percentiles to
+ * about 6%. Recording is a few shifts and an array increment and never allocates. Instances are not
+ * thread-safe: each producer fiber records into its own histogram, and the keyword merges them once all
+ * fibers are done.
+ */
+final class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_LIMIT = SUB_BUCKETS << 1;
+    // values are capped at 2^32 us (about 71 minutes)
+    private static final int MAX_SHIFT = 31 - SUB_BUCKET_BITS;
+    private static final long MAX_VALUE_US = (1L << 32) - 1;
+
+    private final int[] counts = new int[LINEAR_LIMIT + MAX_SHIFT * SUB_BUCKETS];
+    private long totalCount;
+    private long maxUs;
+
+    void recordNanos(long valueNs) {
+        record(Math.max(0L, valueNs) / 1_000L);
+    }
+
+    private void record(long valueUs) {
+        if (valueUs > MAX_VALUE_US) valueUs = MAX_VALUE_US;
+        counts[indexOf(valueUs)]++;
+        totalCount++;
+        if (valueUs > maxUs) maxUs = valueUs;
+    }
+
+    void add(LatencyHistogram other) {
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        maxUs = Math.max(maxUs, other.maxUs);
+    }
+
+    long getTotalCount() {
+        return totalCount;
+    }
+
+    long getMaxMicros() {
+        return maxUs;
+    }
+
+    /**
+     * Returns the highest value equivalent to the given percentile, never more than the recorded maximum.
+     */
+    long getPercentileMicros(double percentile) {
+        if (totalCount == 0) return 0L;
+        long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * totalCount));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestEquivalentValue(i), maxUs);
+            }
+        }
+        return maxUs;
+    }
+
+    private static int indexOf(long valueUs) {
+        if (valueUs < LINEAR_LIMIT) {
+            return (int) valueUs;
+        }
+        int shift = (63 - Long.numberOfLeadingZeros(valueUs)) - SUB_BUCKET_BITS;
+        int top = (int) (valueUs >>> shift); // in [SUB_BUCKETS, 2 * SUB_BUCKETS)
+        return LINEAR_LIMIT + (shift - 1) * SUB_BUCKETS + (top - SUB_BUCKETS);
+    }
+
+    private static long highestEquivalentValue(int index) {
+        if (index < LINEAR_LIMIT) {
+            return index;
+        }
+        int shift = (index - LINEAR_LIMIT) / SUB_BUCKETS + 1;
+        long top = (index - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+        return ((top + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,343 @@
+package step.examples.streaming;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import step.reporting.LiveReporting;
+import step.streaming.client.upload.StreamingUploadSession;
+import step.streaming.client.upload.impl.AbstractStreamingUploadProvider;
+import step.streaming.client.upload.impl.BasicStreamingUploadSession;
+import step.streaming.common.QuotaExceededException;
+import step.streaming.common.StreamingResourceMetadata;
+import step.streaming.common.StreamingResourceStatus;
+import step.streaming.common.StreamingResourceTransferStatus;
+import step.streaming.data.EndOfInputSignal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process stand-in for the controller side of live file uploads, to be plugged into
+ * {@link StreamingUploadsTestKeyword#junitSetLiveReporting(LiveReporting)} via {@link #newLiveReporting()}.
+ * <p>
+ * Files are tailed exactly like the agent does it (the base class wraps them into a live file input stream), but
+ * the data is discarded after being counted per resource. Ingestion can be constrained by the same quotas as the
+ * controller, using its {@code reporting.attachments.streaming.quota.*} property names, by a total ingest bandwidth
+ * shared by all uploads, and by a fixed ingest latency, which delays the acknowledged size without throttling the
+ * transfer. Execution-wide quotas apply to the lifetime of the provider. With {@link #RETAIN_CONTENT}, ingested data
+ * is kept in memory instead, so that it can be read back for verification.
+ * <p>
+ * Producer-to-ingest lag is measured by sampling the length of all tailed files every
+ * {@link #FILE_SAMPLING_INTERVAL_MS} ms, on a thread of its own so that sampling never delays acknowledgements:
+ * whenever a size is acknowledged, the time since the file was first seen at least that long is recorded.
+ */
+public class LoopbackStreamingUploadProvider extends AbstractStreamingUploadProvider
+        implements UploadedContentSource, StreamUploadProvider {
+    private static final Logger logger = LoggerFactory.getLogger(LoopbackStreamingUploadProvider.class);
+
+    public static final String QUOTA_MAX_BYTES_PER_RESOURCE = "reporting.attachments.streaming.quota.maxBytesPerResource";
+    public static final String QUOTA_MAX_BYTES_PER_EXECUTION = "reporting.attachments.streaming.quota.maxBytesPerExecution";
+    public static final String QUOTA_MAX_RESOURCES_PER_EXECUTION = "reporting.attachments.streaming.quota.maxResourcesPerExecution";
+    /** Total ingest bandwidth in bytes per second, 0 for unlimited. */
+    public static final String INGEST_BYTES_PER_SECOND = "loopback.ingestBytesPerSecond";
+    /** Delay between reading data and acknowledging it as ingested, in milliseconds. */
+    public static final String INGEST_LATENCY_MS = "loopback.ingestLatencyMs";
+    /** Whether to keep ingested data in memory, "true" or "false" (default). */
+    public static final String RETAIN_CONTENT = "loopback.retainContent";
+
+    static final long FILE_SAMPLING_INTERVAL_MS = 5;
+    private static final int TRANSFER_BUFFER_SIZE = 64 * 1024;
+
+    private final long maxBytesPerResource;
+    private final long maxBytesPerExecution;
+    private final long maxResourcesPerExecution;
+    private final long bytesPerSecond;
+    private final long latencyNs;
+    private final boolean retainContent;
+
+    // single thread, so that delayed acknowledgements of one upload stay in order
+    private final ScheduledExecutorService timer;
+    private final ScheduledExecutorService fileSampler;
+    private final List<LoopbackSession> sessions = new CopyOnWriteArrayList<>();
+    private final List<LoopbackSession> tailed = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger resources = new AtomicInteger();
+    private final AtomicLong executionBytes = new AtomicLong();
+    private final LatencyHistogram ingestLag = new LatencyHistogram();
+    private long bandwidthNextFreeNs;
+
+    public LoopbackStreamingUploadProvider() {
+        this(Map.of());
+    }
+
+    public LoopbackStreamingUploadProvider(Map<String, String> properties) {
+        super(Executors.newCachedThreadPool(daemonThreads("loopback-upload-")));
+        this.maxBytesPerResource = longProperty(properties, QUOTA_MAX_BYTES_PER_RESOURCE, -1L);
+        this.maxBytesPerExecution = longProperty(properties, QUOTA_MAX_BYTES_PER_EXECUTION, -1L);
+        this.maxResourcesPerExecution = longProperty(properties, QUOTA_MAX_RESOURCES_PER_EXECUTION, -1L);
+        this.bytesPerSecond = longProperty(properties, INGEST_BYTES_PER_SECOND, 0L);
+        this.latencyNs = TimeUnit.MILLISECONDS.toNanos(longProperty(properties, INGEST_LATENCY_MS, 0L));
+        this.retainContent = Boolean.parseBoolean(properties.getOrDefault(RETAIN_CONTENT, "false").trim());
+        this.timer = Executors.newSingleThreadScheduledExecutor(daemonThreads("loopback-ingest-"));
+        this.fileSampler = Executors.newSingleThreadScheduledExecutor(daemonThreads("loopback-file-sampler-"));
+        fileSampler.scheduleAtFixedRate(this::sampleFileLengths, 0, FILE_SAMPLING_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    private static long longProperty(Map<String, String> properties, String key, long defaultValue) {
+        String value = properties.get(key);
+        return (value == null || value.isBlank()) ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger seq = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + seq.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Live reporting whose file uploads go to this provider; live measures are discarded.
+     */
+    public LiveReporting newLiveReporting() {
+        return new LiveReporting(this, measure -> {});
+    }
+
+    /**
+     * Bytes acknowledged so far for each resource, by file name, in upload start order.
+     */
+    public Map<String, Long> getIngestedBytesPerResource() {
+        Map<String, Long> snapshot = new LinkedHashMap<>();
+        for (LoopbackSession session : sessions) {
+            snapshot.put(session.getMetadata().getFilename(), session.ingested.get());
+        }
+        return snapshot;
+    }
+
+    public long getTotalIngestedBytes() {
+        long total = 0;
+        for (LoopbackSession session : sessions) {
+            total += session.ingested.get();
+        }
+        return total;
+    }
+
+    /**
+     * The ingested content of an upload started by this provider, if content is retained.
+     */
+    @Override
+    public InputStream openUploadedContent(StreamingUploadSession session) {
+        if (!(session instanceof LoopbackSession) || ((LoopbackSession) session).content == null) {
+            return null;
+        }
+        ByteArrayOutputStream content = ((LoopbackSession) session).content;
+        synchronized (content) {
+            return new ByteArrayInputStream(content.toByteArray());
+        }
+    }
+
+    /**
+     * Copy of the producer-to-ingest lag recorded so far.
+     */
+    LatencyHistogram getIngestLag() {
+        LatencyHistogram copy = new LatencyHistogram();
+        synchronized (ingestLag) {
+            copy.add(ingestLag);
+        }
+        return copy;
+    }
+
+    @Override
+    public StreamingUploadSession startStreamUpload(InputStream input, StreamingResourceMetadata metadata,
+                                                    EndOfInputSignal endOfInputSignal) throws QuotaExceededException, IOException {
+        return startLiveFileUpload(input, metadata, endOfInputSignal);
+    }
+
+    @Override
+    protected StreamingUploadSession startLiveFileUpload(File file, StreamingResourceMetadata metadata, Charset charset)
+            throws QuotaExceededException, IOException {
+        // the base class only hands the tailing stream to the upload, but lag sampling needs the file itself
+        StreamingUploadSession session = super.startLiveFileUpload(file, metadata, charset);
+        if (session instanceof LoopbackSession) {
+            ((LoopbackSession) session).sampleFile(file);
+        }
+        return session;
+    }
+
+    @Override
+    protected StreamingUploadSession startLiveFileUpload(InputStream input, StreamingResourceMetadata metadata,
+                                                         EndOfInputSignal endOfInputSignal) throws QuotaExceededException, IOException {
+        if (maxResourcesPerExecution >= 0 && resources.incrementAndGet() > maxResourcesPerExecution) {
+            input.close();
+            throw new QuotaExceededException("Quota exceeded: " + QUOTA_MAX_RESOURCES_PER_EXECUTION + "=" + maxResourcesPerExecution);
+        }
+        LoopbackSession session = new LoopbackSession(input, metadata, endOfInputSignal);
+        sessions.add(session);
+        tailed.add(session);
+        executorService.submit(session::transfer);
+        return session;
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        fileSampler.shutdownNow();
+        timer.shutdownNow();
+        executorService.shutdownNow();
+    }
+
+    private void sampleFileLengths() {
+        long nowNs = System.nanoTime();
+        for (LoopbackSession session : tailed) {
+            session.sampleFileLength(nowNs);
+        }
+    }
+
+    private void throttle(int bytes) throws InterruptedException {
+        if (bytesPerSecond <= 0) return;
+        long costNs = bytes * 1_000_000_000L / bytesPerSecond;
+        long doneNs;
+        synchronized (this) {
+            long nowNs = System.nanoTime();
+            doneNs = Math.max(bandwidthNextFreeNs, nowNs) + costNs;
+            bandwidthNextFreeNs = doneNs;
+        }
+        long waitNs = doneNs - System.nanoTime();
+        if (waitNs > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNs);
+        }
+    }
+
+    private void afterLatency(Runnable action) {
+        if (latencyNs > 0) {
+            timer.schedule(action, latencyNs, TimeUnit.NANOSECONDS);
+        } else {
+            action.run();
+        }
+    }
+
+    private final class LoopbackSession extends BasicStreamingUploadSession {
+        private final InputStream input;
+        private File file; // null until sampled, and if started through the stream-based API only
+        private final AtomicLong ingested = new AtomicLong();
+        private final ByteArrayOutputStream content; // null unless content is retained
+
+        // (length, first seen at) pairs, appended by the sampler and consumed on acknowledgement
+        private final ArrayDeque<long[]> lengthSamples = new ArrayDeque<>();
+        private long sampledLength;
+
+        LoopbackSession(InputStream input, StreamingResourceMetadata metadata, EndOfInputSignal endOfInputSignal) {
+            super(metadata, endOfInputSignal);
+            this.input = input;
+            this.content = retainContent ? new ByteArrayOutputStream() : null;
+            setCurrentStatus(new StreamingResourceStatus(StreamingResourceTransferStatus.INITIATED, 0L, null));
+        }
+
+        void transfer() {
+            byte[] buffer = new byte[TRANSFER_BUFFER_SIZE];
+            long transferred = 0;
+            long lines = 0;
+            boolean countLines = metadata.getSupportsLineAccess();
+            try (input) {
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    if (read == 0) continue;
+                    checkByteQuotas(transferred, read);
+                    throttle(read);
+                    transferred += read;
+                    if (content != null) {
+                        synchronized (content) {
+                            content.write(buffer, 0, read);
+                        }
+                    }
+                    if (countLines) {
+                        for (int i = 0; i < read; i++) {
+                            if (buffer[i] == '\n') lines++;
+                        }
+                    }
+                    long size = transferred;
+                    Long lineCount = countLines ? lines : null;
+                    afterLatency(() -> acknowledge(StreamingResourceTransferStatus.IN_PROGRESS, size, lineCount));
+                }
+                long size = transferred;
+                Long lineCount = countLines ? lines : null;
+                afterLatency(() -> {
+                    StreamingResourceStatus status = acknowledge(StreamingResourceTransferStatus.COMPLETED, size, lineCount);
+                    finalStatusFuture.complete(status);
+                });
+            } catch (Exception e) {
+                logger.warn("Loopback upload of {} failed after {} bytes: {}", metadata.getFilename(), transferred, e.getMessage());
+                setCurrentStatus(new StreamingResourceStatus(StreamingResourceTransferStatus.FAILED, ingested.get(), null));
+                finalStatusFuture.completeExceptionally(e);
+                tailed.remove(this);
+            }
+        }
+
+        private void checkByteQuotas(long transferred, int read) throws QuotaExceededException {
+            if (maxBytesPerResource >= 0 && transferred + read > maxBytesPerResource) {
+                throw new QuotaExceededException("Quota exceeded: " + QUOTA_MAX_BYTES_PER_RESOURCE + "=" + maxBytesPerResource);
+            }
+            if (maxBytesPerExecution >= 0 && executionBytes.addAndGet(read) > maxBytesPerExecution) {
+                throw new QuotaExceededException("Quota exceeded: " + QUOTA_MAX_BYTES_PER_EXECUTION + "=" + maxBytesPerExecution);
+            }
+        }
+
+        private StreamingResourceStatus acknowledge(StreamingResourceTransferStatus transferStatus, long size, Long lines) {
+            ingested.set(size);
+            recordLag(size, System.nanoTime());
+            if (transferStatus == StreamingResourceTransferStatus.COMPLETED) {
+                tailed.remove(this);
+            }
+            StreamingResourceStatus status = new StreamingResourceStatus(transferStatus, size, lines);
+            setCurrentStatus(status);
+            return status;
+        }
+
+        /**
+         * Starts sampling the length of the tailed file; earlier acknowledgements are not recorded as lag.
+         */
+        synchronized void sampleFile(File file) {
+            this.file = file;
+        }
+
+        synchronized void sampleFileLength(long nowNs) {
+            if (file == null) return;
+            long length = file.length();
+            if (length > sampledLength) {
+                sampledLength = length;
+                lengthSamples.addLast(new long[]{length, nowNs});
+            }
+        }
+
+        private void recordLag(long size, long nowNs) {
+            long firstSeenNs;
+            synchronized (this) {
+                if (file == null) return;
+                // drop samples entirely covered by this acknowledgement; the head is then the first one reaching size
+                while (!lengthSamples.isEmpty() && lengthSamples.peekFirst()[0] < size) {
+                    lengthSamples.pollFirst();
+                }
+                // not sampled yet: the file grew and was ingested within one sampling interval
+                firstSeenNs = lengthSamples.isEmpty() ? nowNs : lengthSamples.peekFirst()[1];
+            }
+            synchronized (ingestLag) {
+                ingestLag.recordNanos(nowNs - firstSeenNs);
+            }
+        }
+    }
+}
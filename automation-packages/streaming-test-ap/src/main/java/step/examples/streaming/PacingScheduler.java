@@ -0,0 +1,23 @@
+package step.examples.streaming;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules the next step of a self-rescheduling {@link ProducerFiber}.
+ */
+interface PacingScheduler {
+
+    /**
+     * Runs {@code task} once, no earlier than {@code delayNs} from now.
+     */
+    void schedule(Runnable task, long delayNs);
+
+    /**
+     * Adapts a JDK scheduled executor. Delays are truncated to whole milliseconds, as they always were
+     * for the executor-based producer mode.
+     */
+    static PacingScheduler of(ScheduledExecutorService executor) {
+        return (task, delayNs) -> executor.schedule(task, Math.max(0L, delayNs / 1_000_000L), TimeUnit.MILLISECONDS);
+    }
+}
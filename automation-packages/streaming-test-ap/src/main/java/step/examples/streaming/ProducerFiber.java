@@ -0,0 +1,306 @@
+package step.examples.streaming;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * Emits deterministic content into a file, or an in-memory ring, at a constant rate.
+ * <p>
+ * A fiber with a zero duration is unpaced: it writes as fast as its writer absorbs, in steps of at most
+ * {@value #UNPACED_STEP_BYTES} bytes so that it yields its thread to the other fibers between steps.
+ * <p>
+ * A fiber is either multiplexed onto a shared scheduler ({@link #start(PacingScheduler)}), rescheduling
+ * itself after every step, or driven as a blocking loop that sleeps until the next step is due
+ * ({@link #startBlocking(Executor)}), which is intended for one virtual thread per fiber.
+ */
+final class ProducerFiber {
+    private static final Logger logger = LoggerFactory.getLogger(ProducerFiber.class);
+    private PacingScheduler scheduler;
+    private final int index;
+    private final File file; // null when writing to a ring
+    private final ChunkWriter out;
+    private final long durationMs;
+    private final long size;
+    private final Long failAtByte; // nullable; guaranteed < size when provided
+
+    // Generator used *only* for content & line breaks (never for chunk size / timing)
+    private final long seed;
+    private final ContentGenerator.Mode contentMode;
+    private final ContentGenerator content;
+    private final byte[] buffer = new byte[CHUNK_SIZE];
+    private final CRC32C checksum = new CRC32C(); // over all bytes handed to the writer
+
+    private final long startNs = System.nanoTime();
+    private final long durationNs;
+    private final double bytesPerNs; // constant emission rate
+    private long written = 0L;
+    private volatile long emitted = 0L; // drained by the writer, published once per step for other threads
+    private long lastByteNs = -1L;
+
+    // lag behind the target emission curve, and wake-up lateness against the requested delay
+    private final LatencyHistogram lag = new LatencyHistogram();
+    private final LatencyHistogram jitter = new LatencyHistogram();
+    private long wakeDueNs;
+
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+    private final Runnable stepTask = this::step;
+
+    private static final long MAX_SCHEDULE_DELAY_NS = 50_000_000L; // 50 ms
+    private static final long FINISHED = -1L;
+    static final int CHUNK_SIZE = 128;                           // fixed for determinism
+    static final long UNPACED_STEP_BYTES = 1L << 20;
+
+    ProducerFiber(int index, File file, ChunkWriter out, long size, long durationMs,
+                  Long failAtByte, long seed, ContentGenerator.Mode contentMode) {
+        this.index = index;
+        this.file = file;
+        this.out = out;
+        this.size = size;
+        this.durationMs = durationMs;
+        this.failAtByte = failAtByte;
+        this.seed = seed;
+        this.contentMode = contentMode;
+        this.content = ContentGenerator.create(contentMode, seed);
+        this.durationNs = durationMs * 1_000_000L;
+        this.bytesPerNs = (durationNs > 0) ? ((double) size) / (double) durationNs : Double.POSITIVE_INFINITY;
+    }
+
+    CompletableFuture<Void> start(PacingScheduler scheduler) {
+        logStart();
+        this.scheduler = scheduler;
+        wakeDueNs = System.nanoTime();
+        scheduler.schedule(stepTask, 0L);
+        return done;
+    }
+
+    CompletableFuture<Void> startBlocking(Executor executor) {
+        logStart();
+        wakeDueNs = System.nanoTime();
+        executor.execute(this::run);
+        return done;
+    }
+
+    private void logStart() {
+        logger.info("Producer Fiber {} starting: file={}, size={}, durationMs={}, failAtByte={}",
+                index, (file != null) ? file.getAbsolutePath() : "<memory>", size, durationMs, failAtByte);
+    }
+
+    ChunkWriter getWriter() {
+        return out;
+    }
+
+    int getIndex() {
+        return index;
+    }
+
+    /**
+     * A new generator reproducing this fiber's content from the start.
+     */
+    ContentGenerator newContentGenerator() {
+        return ContentGenerator.create(contentMode, seed);
+    }
+
+    /**
+     * Bytes written so far. Only stable once the fiber completed.
+     */
+    long getBytesWritten() {
+        return written;
+    }
+
+    /**
+     * Bytes the writer handed on to the file or ring, as of the end of the last step. Safe to read from any thread.
+     */
+    long getBytesEmitted() {
+        return emitted;
+    }
+
+    /**
+     * CRC32C of the bytes written so far. Only stable once the fiber completed.
+     */
+    long getChecksum() {
+        return checksum.getValue();
+    }
+
+    long getDurationNs() {
+        return durationNs;
+    }
+
+    /**
+     * {@link System#nanoTime()} at fiber creation, the origin of {@link #getAchievedDurationNs()}.
+     */
+    long getStartNs() {
+        return startNs;
+    }
+
+    /**
+     * Time from fiber creation until the last byte was written, or -1 if the fiber did not write all its bytes.
+     */
+    long getAchievedDurationNs() {
+        return (lastByteNs < 0) ? -1L : lastByteNs - startNs;
+    }
+
+    /**
+     * How long the next byte had been overdue on the target curve, recorded on every step while emitting.
+     */
+    LatencyHistogram getLagHistogram() {
+        return lag;
+    }
+
+    /**
+     * How much later than requested each step started. Early wake-ups are recorded as zero.
+     */
+    LatencyHistogram getJitterHistogram() {
+        return jitter;
+    }
+
+    private void step() {
+        try {
+            long delayNs = advance();
+            if (delayNs != FINISHED) {
+                scheduleNext(delayNs);
+            }
+        } catch (Throwable t) {
+            completeExceptionally(t);
+        }
+    }
+
+    private void run() {
+        try {
+            long delayNs;
+            while ((delayNs = advance()) != FINISHED) {
+                wakeDueNs = System.nanoTime() + delayNs;
+                if (delayNs > 0) {
+                    TimeUnit.NANOSECONDS.sleep(delayNs);
+                }
+            }
+        } catch (Throwable t) {
+            completeExceptionally(t);
+        }
+    }
+
+    /**
+     * Performs one emission step.
+     *
+     * @return the delay until the next step is due, or {@link #FINISHED} once the fiber completed normally
+     */
+    private long advance() throws Exception {
+        if (done.isDone()) return FINISHED;
+
+        final long nowNs = System.nanoTime();
+        jitter.recordNanos(nowNs - wakeDueNs);
+
+        if (size == 0L) {
+            return finishAfterRemainingDelay();
+        }
+
+        if (failAtByte != null && written >= failAtByte) {
+            failNow();
+        }
+
+        final long elapsedNs = nowNs - startNs;
+
+        long allowed = (durationNs > 0)
+                ? Math.min(size, (long) Math.floor(bytesPerNs * elapsedNs))
+                : Math.min(size, written + UNPACED_STEP_BYTES);
+
+        if (failAtByte != null) {
+            allowed = Math.min(allowed, failAtByte);
+        }
+
+        if (durationNs > 0 && written < size) {
+            lag.recordNanos(elapsedNs - dueAtNs(written + 1));
+        }
+
+        long toWrite = allowed - written;
+
+        if (toWrite > 0) {
+            writeBytesDeterministic(toWrite);
+            out.endOfTick();
+            emitted = out.getBytesDrained();
+
+            if (failAtByte != null && written >= failAtByte) {
+                failNow();
+            }
+            if (written >= size) {
+                lastByteNs = System.nanoTime();
+                return finishAfterRemainingDelay();
+            }
+        }
+
+        return timeUntilNextByteNs(elapsedNs);
+    }
+
+    private void writeBytesDeterministic(long toWrite) throws Exception {
+        while (toWrite > 0) {
+            int chunk = (int) Math.min(toWrite, (long) CHUNK_SIZE); // fixed chunk size
+
+            content.fill(buffer, 0, chunk);
+            checksum.update(buffer, 0, chunk);
+
+            out.write(buffer, 0, chunk);
+
+            written += chunk;
+            toWrite -= chunk;
+
+            if (failAtByte != null && written >= failAtByte) break; // let advance() throw immediately after
+        }
+    }
+
+    private long timeUntilNextByteNs(long elapsedNs) {
+        if (durationNs <= 0 || written >= size) return 0L;
+        long delayNs = dueAtNs(written + 1) - elapsedNs;
+        if (delayNs <= 0) return 0L;
+        return Math.min(delayNs, MAX_SCHEDULE_DELAY_NS);
+    }
+
+    // offset from startNs at which the given (1-based) byte is due on the target curve
+    private long dueAtNs(long byteIndex) {
+        return (long) Math.ceil((double) byteIndex / bytesPerNs);
+    }
+
+    private void scheduleNext(long delayNs) {
+        wakeDueNs = System.nanoTime() + delayNs;
+        scheduler.schedule(stepTask, delayNs);
+    }
+
+    private long finishAfterRemainingDelay() {
+        long remainingNs = durationNs - (System.nanoTime() - startNs);
+        if (remainingNs <= 0) {
+            completeNormally();
+            return FINISHED;
+        }
+        return Math.min(remainingNs, MAX_SCHEDULE_DELAY_NS);
+    }
+
+    private void failNow() {
+        logger.warn("Producer Fiber {}: Failing at requested byte {}", index, failAtByte);
+        throw new RuntimeException("Dummy exception: failure requested at byte " + failAtByte);
+    }
+
+    private void completeNormally() {
+        logger.info("Producer Fiber {}: completeNormally()", index);
+        try {
+            out.close();
+        } catch (Exception e) {
+            done.completeExceptionally(e);
+            return;
+        }
+        emitted = out.getBytesDrained();
+        done.complete(null);
+    }
+
+    private void completeExceptionally(Throwable t) {
+        logger.info("Producer Fiber {}: completeExceptionally()", index);
+        try {
+            out.close();
+        } catch (Exception ignore) {
+        }
+        done.completeExceptionally(t);
+    }
+}
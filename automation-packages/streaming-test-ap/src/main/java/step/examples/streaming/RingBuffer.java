@@ -0,0 +1,200 @@
+package step.examples.streaming;
+
+import step.streaming.client.upload.StreamingUploadProvider;
+import step.streaming.client.upload.StreamingUploadSession;
+import step.streaming.common.QuotaExceededException;
+import step.streaming.common.StreamingResourceMetadata;
+import step.streaming.data.EndOfInputSignal;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Bounded in-memory byte pipe between one producer and one upload, replacing the tailed temp file.
+ * <p>
+ * The producer blocks in {@link #write} while the ring is full, which is the backpressure applied when the upload
+ * falls behind; the time spent blocked is accounted. The upload side reads through {@link #newInputStream}, which
+ * blocks while the ring is empty and reports end of input once the upload's end-of-input signal completed and all
+ * bytes were read, like the live file input stream does for files.
+ * <p>
+ * A blocked producer keeps the thread it runs on: with the scheduler and wheel producer modes, each producer waiting
+ * for the upload to catch up holds one of the {@code producerThreads} pacing threads, delaying the other producers
+ * sharing it, so that the ring size and thread count bound the throughput. Only virtual producers release their
+ * carrier thread while blocked.
+ */
+final class RingBuffer {
+    private final byte[] ring;
+    private long readPosition;  // total bytes read, index is position % capacity
+    private long writePosition; // total bytes written
+    private boolean endOfInput;
+    private boolean closed;
+
+    private long stalls;
+    private long stallNanos;
+
+    RingBuffer(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("illegal ring buffer capacity (must be > 0)");
+        }
+        this.ring = new byte[capacity];
+    }
+
+    int capacity() {
+        return ring.length;
+    }
+
+    /**
+     * Appends all bytes, blocking while the ring is full.
+     *
+     * @throws IOException if the reading side was closed
+     */
+    void write(byte[] buf, int off, int len) throws IOException {
+        synchronized (this) {
+            while (len > 0) {
+                long free = ring.length - (writePosition - readPosition);
+                if (free == 0) {
+                    awaitSpace();
+                    continue;
+                }
+                int index = (int) (writePosition % ring.length);
+                int n = (int) Math.min(Math.min(free, len), ring.length - index);
+                System.arraycopy(buf, off, ring, index, n);
+                writePosition += n;
+                off += n;
+                len -= n;
+                notifyAll();
+            }
+        }
+    }
+
+    private void awaitSpace() throws IOException {
+        stalls++;
+        long t0 = System.nanoTime();
+        try {
+            while (!closed && writePosition - readPosition == ring.length) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for the upload to catch up", e);
+        } finally {
+            stallNanos += System.nanoTime() - t0;
+        }
+        if (closed) {
+            throw new IOException("Upload stream closed, " + (writePosition - readPosition) + " bytes not consumed");
+        }
+    }
+
+    /**
+     * Ends both sides: blocked writers fail, readers see end of input once the remaining bytes are consumed.
+     */
+    synchronized void close() {
+        closed = true;
+        endOfInput = true;
+        notifyAll();
+    }
+
+    private synchronized void signalEndOfInput() {
+        endOfInput = true;
+        notifyAll();
+    }
+
+    private synchronized int read(byte[] buf, int off, int len) throws IOException {
+        try {
+            while (writePosition == readPosition) {
+                if (endOfInput) {
+                    return -1;
+                }
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for content", e);
+        }
+        int index = (int) (readPosition % ring.length);
+        int n = (int) Math.min(Math.min(writePosition - readPosition, len), ring.length - index);
+        System.arraycopy(ring, index, buf, off, n);
+        readPosition += n;
+        notifyAll();
+        return n;
+    }
+
+    /**
+     * The upload side of the ring. Only one stream per ring must be created.
+     */
+    InputStream newInputStream(EndOfInputSignal endOfInputSignal) {
+        endOfInputSignal.whenComplete((r, t) -> signalEndOfInput());
+        return new InputStream() {
+            private final byte[] single = new byte[1];
+
+            @Override
+            public int read() throws IOException {
+                int n = read(single, 0, 1);
+                return (n == -1) ? -1 : single[0] & 0xff;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                if (len == 0) return 0;
+                return RingBuffer.this.read(b, off, len);
+            }
+
+            @Override
+            public int available() {
+                synchronized (RingBuffer.this) {
+                    return (int) (writePosition - readPosition);
+                }
+            }
+
+            @Override
+            public void close() {
+                RingBuffer.this.close();
+            }
+        };
+    }
+
+    /**
+     * Starts a live upload reading from this ring. The public provider API only accepts files, so the provider must
+     * also implement {@link StreamUploadProvider}, as the loopback provider does.
+     */
+    StreamingUploadSession startUpload(StreamingUploadProvider provider, StreamingResourceMetadata metadata)
+            throws QuotaExceededException, IOException {
+        if (!(provider instanceof StreamUploadProvider)) {
+            close();
+            throw new IllegalStateException("Memory-backed uploads are not supported by " + provider.getClass().getName());
+        }
+        EndOfInputSignal endOfInputSignal = new EndOfInputSignal();
+        try {
+            return ((StreamUploadProvider) provider).startStreamUpload(newInputStream(endOfInputSignal), metadata,
+                    endOfInputSignal);
+        } catch (QuotaExceededException | IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    synchronized long getBytesWritten() {
+        return writePosition;
+    }
+
+    /**
+     * Bytes consumed by the upload side so far.
+     */
+    synchronized long getBytesRead() {
+        return readPosition;
+    }
+
+    /**
+     * Number of times the producer found the ring full.
+     */
+    synchronized long getStalls() {
+        return stalls;
+    }
+
+    /**
+     * Total time the producer spent blocked on a full ring.
+     */
+    synchronized long getStallNanos() {
+        return stallNanos;
+    }
+}
@@ -0,0 +1,21 @@
+package step.examples.streaming;
+
+import step.streaming.client.upload.StreamingUploadSession;
+import step.streaming.common.QuotaExceededException;
+import step.streaming.common.StreamingResourceMetadata;
+import step.streaming.data.EndOfInputSignal;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Upload providers able to upload from a stream rather than from a file, used by memory-backed uploads.
+ */
+interface StreamUploadProvider {
+
+    /**
+     * Starts a live upload reading the input until it reports end of input, once the signal completed.
+     */
+    StreamingUploadSession startStreamUpload(InputStream input, StreamingResourceMetadata metadata,
+                                             EndOfInputSignal endOfInputSignal) throws QuotaExceededException, IOException;
+}
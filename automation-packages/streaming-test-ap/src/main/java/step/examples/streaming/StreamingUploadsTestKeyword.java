@@ -0,0 +1,937 @@
+package step.examples.streaming;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import step.grid.io.AttachmentHelper;
+import step.handlers.javahandler.AbstractKeyword;
+import step.handlers.javahandler.Input;
+import step.handlers.javahandler.Keyword;
+import step.reporting.LiveReporting;
+import step.streaming.client.upload.StreamingUpload;
+import step.streaming.client.upload.StreamingUploadSession;
+import step.streaming.common.StreamingResourceMetadata;
+import step.streaming.common.StreamingResourceStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+public class StreamingUploadsTestKeyword extends AbstractKeyword {
+    private static final Logger logger = LoggerFactory.getLogger(StreamingUploadsTestKeyword.class);
+
+    public void junitSetLiveReporting(LiveReporting liveReporting) {
+        super.liveReporting = liveReporting;
+    }
+
+    enum ProducerMode {
+        /** Fibers multiplexed onto a small pool of platform threads, rescheduling themselves after every step. */
+        SCHEDULER,
+        /** Fibers paced by a hashed timing wheel with sub-millisecond ticks, stepped by a small worker pool. */
+        WHEEL,
+        /** One virtual thread per fiber, sleeping until the next step is due (requires Java 21+). */
+        VIRTUAL;
+
+        static ProducerMode parse(String value) {
+            try {
+                return ProducerMode.valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("illegal producer mode: " + value + " (must be scheduler, wheel or virtual)");
+            }
+        }
+    }
+
+    enum UploadBacking {
+        /** Producers write a temp file which the upload tails, as real keywords do. */
+        FILE,
+        /**
+         * Like {@link #FILE}, but the temp files live on the memory-backed file system {@value #TMPFS_DIRECTORY}, which
+         * keeps disk I/O off the hot path with any provider, including the agent's.
+         */
+        TMPFS,
+        /**
+         * Producers write a bounded in-memory ring which the upload reads directly, blocking producers when full.
+         * Needs a provider uploading from streams, i.e. the loopback one; a blocked producer holds its pacing thread.
+         */
+        MEMORY;
+
+        static final String TMPFS_DIRECTORY = "/dev/shm";
+
+        static UploadBacking parse(String value) {
+            try {
+                return UploadBacking.valueOf(value.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("illegal upload backing: " + value + " (must be file, tmpfs or memory)");
+            }
+        }
+    }
+
+    // ---- shared, tiny scheduler (create once, shut down at the very end)
+    private static ScheduledThreadPoolExecutor newScheduler(int threads) {
+        ThreadFactory tf = new ThreadFactory() {
+            final ThreadFactory base = Executors.defaultThreadFactory();
+            final AtomicInteger seq = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = base.newThread(r);
+                t.setName("producer-scheduler-with-" + threads + "-threads-" + seq.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            }
+        };
+        ScheduledThreadPoolExecutor sch = new ScheduledThreadPoolExecutor(threads, tf);
+        sch.setRemoveOnCancelPolicy(true);  // keep the queue clean on cancellations
+        return sch;
+    }
+
+    private static ExecutorService newCompletionExecutor(int threads) {
+        return Executors.newFixedThreadPool(threads, daemonThreads("upload-completion-"));
+    }
+
+    private static ThreadFactory daemonThreads(String namePrefix) {
+        AtomicInteger seq = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, namePrefix + seq.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    // Looked up reflectively so that the keyword still compiles and runs on Java 11 agents
+    static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("producerMode=virtual requires Java 21 or later, agent runs on Java " + Runtime.version());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unable to create virtual thread executor", e);
+        }
+    }
+
+    private static long processCpuTimeNs() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return -1L;
+    }
+
+    @Keyword
+    public void StreamingUploadsTest(
+            @Input(name = "attachmentsCount", defaultValue = "2") int attachmentsCount,
+            @Input(name = "attachmentSizeMin", defaultValue = "100") long attachmentSizeMin,
+            @Input(name = "attachmentSizeMax", defaultValue = "100000") long attachmentSizeMax,
+            @Input(name = "productionTimeSecondsMin", defaultValue = "10") int productionTimeSecondsMin,
+            @Input(name = "productionTimeSecondsMax", defaultValue = "30") int productionTimeSecondsMax,
+            @Input(name = "sleepBetweenSecondsMin", defaultValue = "1") int sleepBetweenSecondsMin,
+            @Input(name = "sleepBetweenSecondsMax", defaultValue = "3") int sleepBetweenSecondsMax,
+            @Input(name = "failingIndexes", defaultValue = "-1;-1") List<Integer> failingIndexes,
+            @Input(name = "forgetToCompleteIndexes", defaultValue = "-1;-1") List<Integer> forgetToCompleteIndexes,
+            @Input(name = "mimeType", defaultValue = "text/plain") String mimeType,
+            @Input(name = "randomSeedNumber", defaultValue = "31337") String randomSeedNumber,
+            @Input(name = "producerThreads", defaultValue = "2") int producerThreads,
+            @Input(name = "producerMode", defaultValue = "scheduler") String producerMode,
+            @Input(name = "wheelTickMicros", defaultValue = "100") int wheelTickMicros,
+            @Input(name = "contentMode", defaultValue = "compat") String contentMode,
+            @Input(name = "ioMode", defaultValue = "stream") String ioMode,
+            @Input(name = "flushPolicy", defaultValue = "chunk") String flushPolicy,
+            @Input(name = "flushBytes", defaultValue = "65536") int flushBytes,
+            @Input(name = "completionThreads", defaultValue = "8") int completionThreads,
+            @Input(name = "arrivalMode", defaultValue = "sequential") String arrivalMode,
+            @Input(name = "arrivalRatePerSecond", defaultValue = "1") double arrivalRatePerSecond,
+            @Input(name = "arrivalRampStartRatePerSecond", defaultValue = "0") double arrivalRampStartRatePerSecond,
+            @Input(name = "arrivalRampSeconds", defaultValue = "60") int arrivalRampSeconds,
+            @Input(name = "uploadBacking", defaultValue = "file") String uploadBacking,
+            @Input(name = "ringBufferBytes", defaultValue = "1048576") int ringBufferBytes,
+            @Input(name = "verifyUploads", defaultValue = "false") boolean verifyUploads,
+            @Input(name = "verifierThreads", defaultValue = "4") int verifierThreads,
+            @Input(name = "lagSamplingIntervalMs", defaultValue = "0") int lagSamplingIntervalMs)
+            throws Exception {
+
+        ByteArrayOutputStream errorBytes = new ByteArrayOutputStream();
+        PrintWriter errorWriter = new PrintWriter(errorBytes);
+
+        ScheduledThreadPoolExecutor scheduler = null;
+        ExecutorService completions = null;
+        ExecutorService verifiers = null;
+        TimingWheelScheduler wheel = null;
+        ExecutorService virtualThreads = null;
+        ScheduledThreadPoolExecutor arrivalTimer = null;
+        ExecutorService launchers = null;
+        UploadLagSampler lagSampler = null;
+        Attachments attachments = null;
+        try {
+            if (attachmentsCount < 0) {
+                throw new IllegalArgumentException("illegal attachments count (must be >=0)");
+            }
+            if (attachmentSizeMin < 0 || attachmentSizeMax < attachmentSizeMin) {
+                throw new IllegalArgumentException("illegal attachment size params (must be >=0)");
+            }
+            if (sleepBetweenSecondsMin < 0 || sleepBetweenSecondsMax < sleepBetweenSecondsMin) {
+                throw new IllegalArgumentException("illegal sleep params (must be >=0)");
+            }
+            // a production time of 0 makes an unpaced attachment, written as fast as the upload pipeline absorbs it
+            if (productionTimeSecondsMin < 0 || productionTimeSecondsMax < productionTimeSecondsMin) {
+                throw new IllegalArgumentException("illegal production time params (must be >=0)");
+            }
+            if (completionThreads < 1) {
+                throw new IllegalArgumentException("illegal completion threads (must be > 0)");
+            }
+            if (lagSamplingIntervalMs < 0) {
+                throw new IllegalArgumentException("illegal lag sampling interval (must be >=0, 0 to disable)");
+            }
+            completions = newCompletionExecutor(Math.min(Math.max(1, attachmentsCount), completionThreads));
+            if (verifyUploads) {
+                if (verifierThreads < 1) {
+                    throw new IllegalArgumentException("illegal verifier threads (must be > 0)");
+                }
+                verifiers = Executors.newFixedThreadPool(Math.min(Math.max(1, attachmentsCount), verifierThreads),
+                        daemonThreads("upload-verifier-"));
+            }
+
+            ContentGenerator.Mode generatorMode = ContentGenerator.Mode.parse(contentMode);
+            if (!generatorMode.isText() && mimeType.equals("text/plain")) {
+                mimeType = "application/octet-stream"; // the default mime type only fits text content
+            }
+            ChunkWriter.IoMode writerMode = ChunkWriter.IoMode.parse(ioMode);
+            ChunkWriter.FlushPolicy writerFlushPolicy = ChunkWriter.FlushPolicy.parse(flushPolicy);
+            ArrivalSchedule.Profile arrivals = ArrivalSchedule.Profile.parse(arrivalMode);
+            UploadBacking backing = UploadBacking.parse(uploadBacking);
+            if (backing == UploadBacking.MEMORY) {
+                if (ringBufferBytes < 1) {
+                    throw new IllegalArgumentException("illegal ring buffer size (must be > 0)");
+                }
+                if (!(liveReporting.fileUploads.getProvider() instanceof StreamUploadProvider)) {
+                    throw new IllegalArgumentException("uploadBacking=memory is not supported by the upload provider "
+                            + liveReporting.fileUploads.getProvider().getClass().getName() + ", use uploadBacking=tmpfs");
+                }
+            } else if (backing == UploadBacking.TMPFS) {
+                Path tmpfs = Paths.get(UploadBacking.TMPFS_DIRECTORY);
+                if (!Files.isDirectory(tmpfs) || !Files.isWritable(tmpfs)) {
+                    throw new IllegalArgumentException("uploadBacking=tmpfs requires a writable "
+                            + UploadBacking.TMPFS_DIRECTORY + " on the agent");
+                }
+            }
+
+            ProducerMode mode = ProducerMode.parse(producerMode);
+            int nThreads = Math.min(attachmentsCount, producerThreads);
+            PacingScheduler pacing = null;
+            if (mode == ProducerMode.VIRTUAL) {
+                virtualThreads = newVirtualThreadPerTaskExecutor();
+                logger.info("Using one virtual thread per producer fiber for {} producer fibers", attachmentsCount);
+            } else if (mode == ProducerMode.WHEEL) {
+                if (wheelTickMicros < 1) {
+                    throw new IllegalArgumentException("illegal wheel tick (must be >= 1 microsecond)");
+                }
+                wheel = new TimingWheelScheduler("producer-wheel", wheelTickMicros * 1_000L, 1024, nThreads);
+                pacing = wheel;
+                logger.info("Using a {}us timing wheel and {} native threads for {} producer fibers",
+                        wheelTickMicros, nThreads, attachmentsCount);
+            } else {
+                scheduler = newScheduler(nThreads);
+                pacing = PacingScheduler.of(scheduler);
+                logger.info("Using {} native threads for scheduling {} producer fibers", nThreads, attachmentsCount);
+            }
+
+            SplittableRandom random; // because it has nextInt(min,max)
+            if (randomSeedNumber == null || randomSeedNumber.isBlank()) {
+                random = new SplittableRandom();
+            } else {
+                random = new SplittableRandom(Long.parseLong(randomSeedNumber));
+            }
+
+            if (lagSamplingIntervalMs > 0) {
+                lagSampler = new UploadLagSampler(lagSamplingIntervalMs);
+            }
+            attachments = new Attachments(attachmentsCount, errorWriter, mimeType, forgetToCompleteIndexes, backing,
+                    ringBufferBytes, writerMode, writerFlushPolicy, flushBytes, generatorMode, pacing, virtualThreads,
+                    completions, verifiers, lagSampler);
+
+            long cpuStartNs = processCpuTimeNs();
+            if (arrivals == ArrivalSchedule.Profile.SEQUENTIAL) {
+                for (int index = 0; index < attachmentsCount; index++) {
+                    if (index != 0) {
+                        long sleep = nextInt(random, sleepBetweenSecondsMin * 1000, sleepBetweenSecondsMax * 1000);
+                        Thread.sleep(sleep);
+                    }
+                    attachments.launch(index, planAttachment(index, random, attachmentSizeMin, attachmentSizeMax,
+                            productionTimeSecondsMin, productionTimeSecondsMax, failingIndexes));
+                }
+            } else {
+                long[] offsetsNs = ArrivalSchedule.plan(arrivals, attachmentsCount, arrivalRatePerSecond,
+                        arrivalRampStartRatePerSecond, arrivalRampSeconds * 1000L, random);
+                long[][] plans = new long[attachmentsCount][];
+                for (int index = 0; index < attachmentsCount; index++) {
+                    plans[index] = planAttachment(index, random, attachmentSizeMin, attachmentSizeMax,
+                            productionTimeSecondsMin, productionTimeSecondsMax, failingIndexes);
+                }
+                logger.info("Launching {} attachments with {} arrivals over {} ms", attachmentsCount,
+                        arrivals.name().toLowerCase(), (attachmentsCount > 0) ? offsetsNs[attachmentsCount - 1] / 1_000_000L : 0);
+                // the timer only hands launches over, so that a slow upload start never delays later launches
+                arrivalTimer = new ScheduledThreadPoolExecutor(1, daemonThreads("attachment-arrivals-"));
+                launchers = Executors.newCachedThreadPool(daemonThreads("attachment-launcher-"));
+                CompletableFuture<?>[] launches = new CompletableFuture[attachmentsCount];
+                long originNs = System.nanoTime();
+                for (int attachmentIndex = 0; attachmentIndex < attachmentsCount; attachmentIndex++) {
+                    final int index = attachmentIndex;
+                    CompletableFuture<Void> done = new CompletableFuture<>();
+                    launches[index] = done;
+                    ExecutorService launcherPool = launchers;
+                    Attachments pending = attachments;
+                    long delayNs = originNs + offsetsNs[index] - System.nanoTime();
+                    arrivalTimer.schedule(() -> launcherPool.execute(() -> {
+                        pending.recordLaunchDelay(index, System.nanoTime() - (originNs + offsetsNs[index]));
+                        try {
+                            pending.launch(index, plans[index]);
+                        } catch (Exception e) {
+                            logger.error("Error launching attachment " + index, e);
+                            pending.reportError("Error launching attachment " + index, e);
+                        }
+                        done.complete(null);
+                    }), Math.max(0L, delayNs), TimeUnit.NANOSECONDS);
+                }
+                CompletableFuture.allOf(launches).join();
+                reportLaunchDelays(attachments.launchDelayNs);
+            }
+
+            List<ProducerFiber> producers = attachments.startedProducers();
+            List<CompletableFuture<Void>> producerFutures = attachments.startedProducerFutures();
+            logger.info("{} producers started, awaiting results", producerFutures.size());
+            try {
+                CompletableFuture.allOf(producerFutures.toArray(new CompletableFuture[0])).join();
+            } catch (Exception ignored) {
+            }
+            long cpuEndNs = processCpuTimeNs();
+            logger.info("all producers completed; completing uploads");
+            reportProducerStatistics(mode, producers, (cpuStartNs < 0) ? -1L : cpuEndNs - cpuStartNs);
+            reportIoStatistics((backing == UploadBacking.MEMORY) ? "memory" : writerMode.name().toLowerCase(),
+                    writerFlushPolicy, producers);
+            if (backing == UploadBacking.MEMORY) {
+                reportBackpressure(producers);
+            }
+            reportEmissionLatencies(producers);
+            reportChecksums(producers);
+            CompletableFuture<Void>[] doneFutures = attachments.doneFutures;
+            try {
+                CompletableFuture.allOf(Arrays.stream(doneFutures).filter(Objects::nonNull)
+                        .toArray(CompletableFuture[]::new)).join();
+            } catch (Exception ignored) {
+            }
+            reportCompletionLatencies(attachments.completionNs, attachments.completionBeginMs);
+            reportThroughput(attachments);
+            if (lagSampler != null) {
+                lagSampler.close();
+                reportUploadLag(lagSampler);
+            }
+            for (int i = 0; i < doneFutures.length; ++i) {
+                if (doneFutures[i] == null) continue;
+                try {
+                    doneFutures[i].join();
+                } catch (Exception throwable) {
+                    logger.warn("upload {} failed: {}", i, throwable.getMessage());
+                    synchronized (errorWriter) {
+                        errorWriter.println("upload " + i + " failed: " + throwable.getMessage());
+                        throwable.printStackTrace(errorWriter);
+                    }
+                    attachments.uploads[i].cancel(throwable);
+                    if (output != null) {
+                        String msg = null;
+                        Throwable leaf = throwable;
+                        while (leaf.getCause() != null) {
+                            leaf = leaf.getCause();
+                        }
+                        msg = leaf.getMessage();
+                        if (msg == null) {
+                            msg = throwable.toString();
+                        }
+                        output.add("producer-" + i + "-exception", msg);
+                    }
+                }
+            }
+            logger.info("all uploads completed");
+            if (verifiers != null) {
+                reportVerifications(attachments);
+            }
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            synchronized (errorWriter) {
+                errorWriter.println("Generic exception: " + e.getMessage());
+                e.printStackTrace(errorWriter);
+            }
+        } finally {
+            if (arrivalTimer != null) {
+                arrivalTimer.shutdownNow();
+            }
+            if (launchers != null) {
+                launchers.shutdownNow();
+            }
+            if (lagSampler != null) {
+                lagSampler.close();
+            }
+            if (attachments != null) {
+                // unblocks producers and uploads still waiting on a ring
+                for (RingBuffer ring : attachments.rings) {
+                    if (ring != null) {
+                        ring.close();
+                    }
+                }
+                for (Path file : attachments.files) {
+                    if (file != null) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+            if (scheduler != null) {
+                scheduler.shutdownNow();
+            }
+            if (wheel != null) {
+                wheel.shutdownNow();
+            }
+            if (completions != null) {
+                completions.shutdownNow();
+            }
+            if (verifiers != null) {
+                verifiers.shutdownNow();
+            }
+            if (virtualThreads != null) {
+                virtualThreads.shutdownNow();
+            }
+        }
+        logger.info("Keyword execution finished");
+        synchronized (errorWriter) {
+            errorWriter.flush();
+            errorWriter.close();
+            byte[] bytes = errorBytes.toByteArray();
+            if (bytes.length > 0 && output != null) {
+                var att = AttachmentHelper.generateAttachmentFromByteArray(bytes, "kw-errors.txt", "text/plain");
+                output.addAttachment(att);
+                output.setBusinessError("At least one error was encountered");
+            }
+        }
+    }
+
+
+    private void reportProducerStatistics(ProducerMode mode, List<ProducerFiber> producers, long cpuNs) {
+        // rate error: how much later than planned the last byte was written, relative to the planned duration
+        double errorPctSum = 0.0;
+        double errorPctMax = 0.0;
+        int measured = 0;
+        for (ProducerFiber producer : producers) {
+            long achievedNs = producer.getAchievedDurationNs();
+            long plannedNs = producer.getDurationNs();
+            if (achievedNs < 0 || plannedNs <= 0) continue;
+            double errorPct = 100.0 * (achievedNs - plannedNs) / plannedNs;
+            errorPctSum += errorPct;
+            errorPctMax = Math.max(errorPctMax, errorPct);
+            measured++;
+        }
+        double errorPctAvg = (measured > 0) ? errorPctSum / measured : 0.0;
+        logger.info("producer mode={}: process cpu {} ms, rate error avg={}% max={}% over {} fibers",
+                mode, cpuNs / 1_000_000L, errorPctAvg, errorPctMax, measured);
+        if (output != null) {
+            output.add("producer-mode", mode.name().toLowerCase());
+            if (cpuNs >= 0) {
+                output.add("producer-process-cpu-ms", cpuNs / 1_000_000L);
+            }
+            output.add("producer-rate-error-pct-avg", errorPctAvg);
+            output.add("producer-rate-error-pct-max", errorPctMax);
+        }
+    }
+
+    private void reportIoStatistics(String mode, ChunkWriter.FlushPolicy policy, List<ProducerFiber> producers) {
+        long syscalls = 0;
+        long bytes = 0;
+        long nanos = 0;
+        for (ProducerFiber producer : producers) {
+            ChunkWriter writer = producer.getWriter();
+            syscalls += writer.getSyscalls();
+            bytes += writer.getBytesDrained();
+            nanos += writer.getDrainNanos();
+        }
+        double mbPerSecond = (nanos > 0) ? (bytes / 1_000_000.0) / (nanos / 1_000_000_000.0) : 0.0;
+        logger.info("io mode={}, flushPolicy={}: {} bytes in {} write calls, {} MB/s",
+                mode, policy, bytes, syscalls, mbPerSecond);
+        if (output != null) {
+            output.add("producer-io-mode", mode + "/" + policy.name().toLowerCase());
+            output.add("producer-io-bytes", bytes);
+            output.add("producer-io-syscalls", syscalls);
+            output.add("producer-io-mb-per-s", mbPerSecond);
+        }
+    }
+
+    private void reportBackpressure(List<ProducerFiber> producers) {
+        long stalls = 0;
+        long stallNanos = 0;
+        for (ProducerFiber producer : producers) {
+            RingBuffer ring = ((ChunkWriter.RingChunkWriter) producer.getWriter()).getRing();
+            stalls += ring.getStalls();
+            stallNanos += ring.getStallNanos();
+        }
+        logger.info("memory backing: producers blocked {} times for {} ms in total", stalls, stallNanos / 1_000_000L);
+        if (output != null) {
+            output.add("producer-backpressure-stalls", stalls);
+            output.add("producer-backpressure-ms", stallNanos / 1_000_000L);
+        }
+    }
+
+    private void reportChecksums(List<ProducerFiber> producers) {
+        if (output == null) return;
+        for (ProducerFiber producer : producers) {
+            output.add("producer-" + producer.getIndex() + "-bytes", producer.getBytesWritten());
+            output.add("producer-" + producer.getIndex() + "-crc32c", String.format("%08x", producer.getChecksum()));
+        }
+    }
+
+    private void reportVerifications(Attachments attachments) {
+        int verified = 0;
+        int skipped = 0;
+        for (int index = 0; index < attachments.verifications.length; index++) {
+            CompletableFuture<ContentVerifier.Result> verification = attachments.verifications[index];
+            if (verification == null) continue;
+            ContentVerifier.Result result;
+            try {
+                result = verification.join();
+            } catch (Exception e) {
+                attachments.reportError("Verification of upload " + index + " failed: " + e.getMessage(), e);
+                continue;
+            }
+            if (result == null) {
+                skipped++; // completion forgotten or failed, or content not readable back from the provider
+                continue;
+            }
+            verified++;
+            ProducerFiber producer = attachments.producers[index];
+            boolean valid = result.isValid() && result.checksum == producer.getChecksum();
+            if (!valid) {
+                String message = "Upload " + index + " differs from the produced content at byte "
+                        + Math.max(0, result.mismatchOffset) + " (uploaded " + result.bytes + " bytes, crc32c "
+                        + String.format("%08x", result.checksum) + ")";
+                logger.warn(message);
+                synchronized (attachments.errorWriter) {
+                    attachments.errorWriter.println(message);
+                }
+            }
+            if (output != null) {
+                output.add("upload-" + index + "-verified", valid);
+                output.addMeasure("upload-verification", attachments.verificationNs[index] / 1_000_000L,
+                        attachments.verificationBeginMs[index], Map.<String, Object>of("index", index,
+                                "bytes", result.bytes));
+            }
+        }
+        logger.info("verified {} uploads, {} skipped", verified, skipped);
+        if (output != null && skipped > 0) {
+            output.add("upload-verification-skipped", skipped);
+        }
+    }
+
+    private void reportEmissionLatencies(List<ProducerFiber> producers) {
+        LatencyHistogram lag = new LatencyHistogram();
+        LatencyHistogram jitter = new LatencyHistogram();
+        for (ProducerFiber producer : producers) {
+            lag.add(producer.getLagHistogram());
+            jitter.add(producer.getJitterHistogram());
+        }
+        publishLatencies("producer-lag", lag);
+        publishLatencies("producer-jitter", jitter);
+    }
+
+    // Measures only carry whole milliseconds, so the exact value is attached in microseconds
+    private void publishLatencies(String prefix, LatencyHistogram histogram) {
+        long p50 = histogram.getPercentileMicros(50.0);
+        long p99 = histogram.getPercentileMicros(99.0);
+        long max = histogram.getMaxMicros();
+        logger.info("{}: p50={}us p99={}us max={}us over {} samples", prefix, p50, p99, max, histogram.getTotalCount());
+        if (output != null && histogram.getTotalCount() > 0) {
+            output.addMeasure(prefix + "-p50", p50 / 1_000L, Map.<String, Object>of("us", p50, "samples", histogram.getTotalCount()));
+            output.addMeasure(prefix + "-p99", p99 / 1_000L, Map.<String, Object>of("us", p99, "samples", histogram.getTotalCount()));
+            output.addMeasure(prefix + "-max", max / 1_000L, Map.<String, Object>of("us", max, "samples", histogram.getTotalCount()));
+        }
+    }
+
+    /**
+     * Draws the random parameters of one attachment: size, production time, failure position and content seed.
+     */
+    static long[] planAttachment(int index, SplittableRandom random, long attachmentSizeMin, long attachmentSizeMax,
+                                 int productionTimeSecondsMin, int productionTimeSecondsMax, List<Integer> failingIndexes) {
+        long fileSize = nextLong(random, attachmentSizeMin, attachmentSizeMax);
+        long durationMs = nextInt(random, productionTimeSecondsMin, productionTimeSecondsMax) * 1000L;
+        long failAtByte = failingIndexes.contains(index) ? random.nextLong(0, fileSize / 2) : -1L;
+        return new long[]{fileSize, durationMs, failAtByte, random.nextLong()};
+    }
+
+    /**
+     * Achieved rates in MB/s (10^6 bytes): the producer rate from fiber creation to the last byte written, and the
+     * upload rate from fiber creation to the completed upload, per attachment and over all completed attachments.
+     * For unpaced attachments these are the ceiling of the pipeline; for paced ones, mostly the requested rate.
+     */
+    private void reportThroughput(Attachments attachments) {
+        long totalBytes = 0;
+        long firstStartNs = Long.MAX_VALUE;
+        long lastByteNs = Long.MIN_VALUE;
+        long lastCompletionNs = Long.MIN_VALUE;
+        int completed = 0;
+        for (int index = 0; index < attachments.producers.length; index++) {
+            ProducerFiber producer = attachments.producers[index];
+            CompletableFuture<Void> done = attachments.doneFutures[index];
+            if (producer == null || done == null || done.isCompletedExceptionally()
+                    || attachments.completionBeginMs[index] == 0) {
+                continue; // producer failed, upload forgotten or never started
+            }
+            long bytes = producer.getBytesWritten();
+            long producerNs = producer.getAchievedDurationNs();
+            long uploadNs = attachments.completionEndNs[index] - producer.getStartNs();
+            double producerMbPerSecond = mbPerSecond(bytes, producerNs);
+            double uploadMbPerSecond = mbPerSecond(bytes, uploadNs);
+            totalBytes += bytes;
+            firstStartNs = Math.min(firstStartNs, producer.getStartNs());
+            lastByteNs = Math.max(lastByteNs, producer.getStartNs() + producerNs);
+            lastCompletionNs = Math.max(lastCompletionNs, attachments.completionEndNs[index]);
+            completed++;
+            if (output != null) {
+                output.add("upload-" + index + "-mb-per-s", uploadMbPerSecond);
+                output.addMeasure("attachment-throughput", uploadNs / 1_000_000L, Map.<String, Object>of("index", index,
+                        "bytes", bytes, "producerMbPerSecond", producerMbPerSecond, "uploadMbPerSecond", uploadMbPerSecond));
+            }
+        }
+        if (completed == 0) return;
+        double producerMbPerSecond = mbPerSecond(totalBytes, lastByteNs - firstStartNs);
+        double uploadMbPerSecond = mbPerSecond(totalBytes, lastCompletionNs - firstStartNs);
+        logger.info("throughput: {} bytes in {} uploads, producers {} MB/s, uploads {} MB/s",
+                totalBytes, completed, producerMbPerSecond, uploadMbPerSecond);
+        if (output != null) {
+            output.add("throughput-bytes", totalBytes);
+            output.add("throughput-producer-mb-per-s", producerMbPerSecond);
+            output.add("throughput-upload-mb-per-s", uploadMbPerSecond);
+        }
+    }
+
+    /**
+     * Publishes the lag series of every sampled upload as "upload-lag" measures, its maximum as "upload-lag-max", and
+     * flags the uploads whose lag kept growing.
+     */
+    private void reportUploadLag(UploadLagSampler sampler) {
+        int growing = 0;
+        for (UploadLagSampler.Track track : sampler.getTracks()) {
+            if (track.samples.isEmpty()) continue;
+            if (track.growing) {
+                growing++;
+                logger.warn("upload {} is falling behind its producer: lag grew over {} consecutive samples, max {} ms / {} bytes",
+                        track.index, UploadLagSampler.GROWING_SAMPLES, track.maxLagNs / 1_000_000L, track.maxLagBytes);
+            }
+            if (output == null) continue;
+            for (UploadLagSampler.Sample sample : track.samples) {
+                output.addMeasure("upload-lag", sample.lagNs / 1_000_000L, sample.timeMs,
+                        Map.<String, Object>of("index", track.index, "bytes", sample.lagBytes));
+            }
+            output.addMeasure("upload-lag-max", track.maxLagNs / 1_000_000L, Map.<String, Object>of("index", track.index,
+                    "bytes", track.maxLagBytes, "samples", track.samples.size(), "growing", track.growing));
+            if (track.growing) {
+                output.add("upload-" + track.index + "-lag-growing", true);
+            }
+        }
+        logger.info("upload lag sampled for {} uploads, {} falling behind", sampler.getTracks().size(), growing);
+        if (output != null) {
+            output.add("upload-lag-growing", growing);
+        }
+    }
+
+    private static double mbPerSecond(long bytes, long nanos) {
+        return (nanos > 0) ? (bytes / 1_000_000.0) / (nanos / 1_000_000_000.0) : 0.0;
+    }
+
+    private void reportLaunchDelays(long[] launchDelayNs) {
+        if (output == null) return;
+        for (int index = 0; index < launchDelayNs.length; index++) {
+            output.addMeasure("attachment-launch-delay", launchDelayNs[index] / 1_000_000L,
+                    Map.<String, Object>of("index", index, "us", launchDelayNs[index] / 1_000L));
+        }
+    }
+
+    private void reportCompletionLatencies(long[] completionNs, long[] completionBeginMs) {
+        if (output == null) return;
+        for (int index = 0; index < completionNs.length; index++) {
+            if (completionBeginMs[index] == 0) continue; // producer failed, upload forgotten or never started
+            output.addMeasure("upload-completion", completionNs[index] / 1_000_000L, completionBeginMs[index],
+                    Map.<String, Object>of("index", index));
+        }
+    }
+
+    /**
+     * Per-call state of the launched attachments, indexed by attachment. Launches may run concurrently (open arrival
+     * modes), but each one only touches its own index.
+     */
+    private class Attachments {
+        final PrintWriter errorWriter;
+        private final String mimeType;
+        private final List<Integer> forgetToCompleteIndexes;
+        private final UploadBacking backing;
+        private final int ringBufferBytes;
+        private final ChunkWriter.IoMode writerMode;
+        private final ChunkWriter.FlushPolicy writerFlushPolicy;
+        private final int flushBytes;
+        private final ContentGenerator.Mode generatorMode;
+        private final PacingScheduler pacing;
+        private final ExecutorService virtualThreads;
+        private final ExecutorService completions;
+        private final ExecutorService verifiers; // null unless uploads are verified
+        private final UploadLagSampler lagSampler; // null unless lag is sampled
+
+        // null where the upload could not be started
+        final Path[] files;
+        final RingBuffer[] rings;
+        final StreamingUpload[] uploads;
+        final ProducerFiber[] producers;
+        final CompletableFuture<Void>[] producerFutures;
+        final CompletableFuture<Void>[] doneFutures;
+        final long[] completionNs;
+        final long[] completionBeginMs;
+        final long[] completionEndNs;
+        final long[] launchDelayNs;
+        final CompletableFuture<ContentVerifier.Result>[] verifications;
+        final long[] verificationNs;
+        final long[] verificationBeginMs;
+
+        @SuppressWarnings("unchecked")
+        Attachments(int count, PrintWriter errorWriter, String mimeType, List<Integer> forgetToCompleteIndexes,
+                    UploadBacking backing, int ringBufferBytes, ChunkWriter.IoMode writerMode, ChunkWriter.FlushPolicy writerFlushPolicy, int flushBytes,
+                    ContentGenerator.Mode generatorMode, PacingScheduler pacing, ExecutorService virtualThreads,
+                    ExecutorService completions, ExecutorService verifiers, UploadLagSampler lagSampler) {
+            this.errorWriter = errorWriter;
+            this.mimeType = mimeType;
+            this.forgetToCompleteIndexes = forgetToCompleteIndexes;
+            this.backing = backing;
+            this.ringBufferBytes = ringBufferBytes;
+            this.writerMode = writerMode;
+            this.writerFlushPolicy = writerFlushPolicy;
+            this.flushBytes = flushBytes;
+            this.generatorMode = generatorMode;
+            this.pacing = pacing;
+            this.virtualThreads = virtualThreads;
+            this.completions = completions;
+            this.verifiers = verifiers;
+            this.lagSampler = lagSampler;
+            files = new Path[count];
+            rings = new RingBuffer[count];
+            uploads = new StreamingUpload[count];
+            producers = new ProducerFiber[count];
+            producerFutures = new CompletableFuture[count];
+            doneFutures = new CompletableFuture[count];
+            completionNs = new long[count];
+            completionBeginMs = new long[count];
+            completionEndNs = new long[count];
+            launchDelayNs = new long[count];
+            verifications = new CompletableFuture[count];
+            verificationNs = new long[count];
+            verificationBeginMs = new long[count];
+        }
+
+        /**
+         * Creates the file (or ring), starts its upload and its producer fiber, and chains the upload completion.
+         *
+         * @param plan as returned by {@link #planAttachment}
+         */
+        void launch(int index, long[] plan) throws Exception {
+            long fileSize = plan[0];
+            long durationMs = plan[1];
+            Long failAtByte = (plan[2] < 0) ? null : plan[2];
+            long seed = plan[3];
+
+            if (backing == UploadBacking.MEMORY) {
+                launchFromMemory(index, fileSize, durationMs, failAtByte, seed);
+                return;
+            }
+            String prefix = "stream-" + index + "-";
+            String suffix = generatorMode.isText() ? ".txt" : ".bin";
+            Path file = (backing == UploadBacking.TMPFS)
+                    ? Files.createTempFile(Paths.get(UploadBacking.TMPFS_DIRECTORY), prefix, suffix)
+                    : Files.createTempFile(prefix, suffix);
+            files[index] = file;
+
+            try {
+                if (mimeType.equals("text/plain")) {
+                    // use simple high-level API
+                    uploads[index] = liveReporting.fileUploads.startTextFileUpload(file.toFile());
+                } else {
+                    // user lower-level API for explicitly setting mimeType
+                    var metadata = new StreamingResourceMetadata(file.toFile().getName(), mimeType, false);
+                    var session = liveReporting.fileUploads.getProvider().startLiveBinaryFileUpload(file.toFile(), metadata);
+                    uploads[index] = new StreamingUpload(session);
+                }
+            } catch (Exception e) {
+                logger.error("Error starting upload", e);
+                reportError("Error starting upload " + index, e);
+                return;
+            }
+
+            ChunkWriter writer = ChunkWriter.open(writerMode, writerFlushPolicy, flushBytes, file.toFile());
+            startProducer(index, new ProducerFiber(index, file.toFile(), writer, fileSize, durationMs,
+                    failAtByte, seed, generatorMode));
+        }
+
+        private void launchFromMemory(int index, long fileSize, long durationMs, Long failAtByte, long seed) {
+            RingBuffer ring = new RingBuffer(ringBufferBytes);
+            rings[index] = ring;
+            try {
+                boolean text = mimeType.equals("text/plain");
+                var metadata = new StreamingResourceMetadata("stream-" + index + (text ? ".txt" : ".bin"), mimeType, text);
+                uploads[index] = new StreamingUpload(ring.startUpload(liveReporting.fileUploads.getProvider(), metadata));
+            } catch (Exception e) {
+                logger.error("Error starting upload", e);
+                reportError("Error starting upload " + index, e);
+                return;
+            }
+            ChunkWriter writer = ChunkWriter.toRing(writerFlushPolicy, flushBytes, ring);
+            startProducer(index, new ProducerFiber(index, null, writer, fileSize, durationMs,
+                    failAtByte, seed, generatorMode));
+        }
+
+        private void startProducer(int index, ProducerFiber producer) {
+            producers[index] = producer;
+
+            CompletableFuture<Void> producerFuture = (virtualThreads != null)
+                    ? producer.startBlocking(virtualThreads)
+                    : producer.start(pacing);
+            producerFutures[index] = producerFuture;
+            doneFutures[index] = producerFuture.handle((r, ex) -> {
+                logger.info("Producer {} completed, ok={}", index, ex == null);
+                if (ex != null) {
+                    if (rings[index] != null) {
+                        rings[index].close(); // nothing more will be written, let the upload see the end of input
+                    }
+                    logger.warn("Upload {} failed: {}", index, ex.getMessage());
+                    reportError("Upload " + index + " failed: " + ex.getMessage(), ex);
+                    return CompletableFuture.<Void>failedFuture(ex);
+                }
+                // completing blocks until the upload is finalized, so it runs on the dedicated, bounded pool
+                return CompletableFuture.runAsync(() -> {
+                    if (forgetToCompleteIndexes.contains(index)) {
+                        logger.warn("Forgetting to complete upload {} as requested", index);
+                        return;
+                    }
+                    logger.info("Completing upload {} normally", index);
+                    completionBeginMs[index] = System.currentTimeMillis();
+                    long t0 = System.nanoTime();
+                    try {
+                        var result = uploads[index].complete(Duration.ofSeconds(60));
+                        logger.info("upload {} completed: {}", index, result);
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    } finally {
+                        completionEndNs[index] = System.nanoTime();
+                        completionNs[index] = completionEndNs[index] - t0;
+                    }
+                }, completions);
+            }).thenCompose(Function.identity());
+            if (lagSampler != null) {
+                lagSampler.track(index, producer::getBytesEmitted, uploadedBytes(index), doneFutures[index]::isDone);
+            }
+            if (verifiers != null) {
+                // verifications run as soon as each upload is complete, overlapping with the remaining uploads
+                verifications[index] = doneFutures[index].handleAsync((r, ex) -> (ex == null) ? verify(index) : null, verifiers);
+            }
+        }
+
+        /**
+         * Bytes acknowledged by the upload, or consumed from the ring when the session reports no status.
+         */
+        private LongSupplier uploadedBytes(int index) {
+            StreamingUploadSession session = uploads[index].getSession();
+            RingBuffer ring = rings[index];
+            return () -> {
+                StreamingResourceStatus status = session.getCurrentStatus();
+                Long size = (status != null) ? status.getCurrentSize() : null;
+                if (size != null) return size;
+                return (ring != null) ? ring.getBytesRead() : -1L;
+            };
+        }
+
+        /**
+         * Reads back the stored content of a completed upload from the provider. The producer's own file is never used
+         * instead, as it would only verify the source against itself.
+         *
+         * @return null if the upload was not completed or the provider cannot stream its content back
+         */
+        private ContentVerifier.Result verify(int index) {
+            if (completionBeginMs[index] == 0) return null;
+            verificationBeginMs[index] = System.currentTimeMillis();
+            long t0 = System.nanoTime();
+            try {
+                var provider = liveReporting.fileUploads.getProvider();
+                if (!(provider instanceof UploadedContentSource)) return null;
+                InputStream uploaded = ((UploadedContentSource) provider).openUploadedContent(uploads[index].getSession());
+                if (uploaded == null) return null;
+                try (InputStream in = uploaded) {
+                    return ContentVerifier.verify(producers[index], in);
+                }
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            } finally {
+                verificationNs[index] = System.nanoTime() - t0;
+            }
+        }
+
+        void recordLaunchDelay(int index, long delayNs) {
+            launchDelayNs[index] = delayNs;
+        }
+
+        void reportError(String message, Throwable t) {
+            synchronized (errorWriter) {
+                errorWriter.println(message);
+                t.printStackTrace(errorWriter);
+            }
+        }
+
+        List<ProducerFiber> startedProducers() {
+            List<ProducerFiber> started = new ArrayList<>();
+            for (ProducerFiber producer : producers) {
+                if (producer != null) started.add(producer);
+            }
+            return started;
+        }
+
+        List<CompletableFuture<Void>> startedProducerFutures() {
+            List<CompletableFuture<Void>> started = new ArrayList<>();
+            for (CompletableFuture<Void> future : producerFutures) {
+                if (future != null) started.add(future);
+            }
+            return started;
+        }
+    }
+
+    private static int nextInt(SplittableRandom random, int min, int max) {
+        if (min == max) return min;
+        return random.nextInt(min, max);
+    }
+
+    // Draws an int when both bounds fit in one, so that a seed picks the same sizes as before sizes were longs
+    private static long nextLong(SplittableRandom random, long min, long max) {
+        if (min == max) return min;
+        if (min >= Integer.MIN_VALUE && max <= Integer.MAX_VALUE) {
+            return random.nextInt((int) min, (int) max);
+        }
+        return random.nextLong(min, max);
+    }
+
+}
@@ -0,0 +1,327 @@
+package step.examples.streaming;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+
+/**
+ * Hashed timing wheel with sub-millisecond resolution for pacing producer fibers.
+ * <p>
+ * A single wheel thread advances one slot per tick. Inserts and cancellations from other threads go through
+ * lock-free queues and are applied by the wheel thread, so both are O(1). All timeouts expiring in the same
+ * slot are collected into one batch, which is either run on the wheel thread or split into one slice per
+ * worker thread. When nothing is scheduled, the wheel thread parks until the next insert instead of ticking.
+ * <p>
+ * A wheel created with an explicit clock has no wheel thread: its ticks are only processed by {@link #advance()},
+ * up to the clock's current time, which lets tests drive it deterministically.
+ */
+final class TimingWheelScheduler implements PacingScheduler {
+    private static final Logger logger = LoggerFactory.getLogger(TimingWheelScheduler.class);
+
+    private final long tickNs;
+    private final Slot[] wheel;
+    private final int mask;
+    private final Thread wheelThread; // nullable: ticks are processed by advance()
+    private final ExecutorService workers; // nullable: run batches on the wheel thread
+    private final int parallelism;
+
+    private final Queue<Timeout> pendingInserts = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> pendingCancels = new ConcurrentLinkedQueue<>();
+
+    private final LongSupplier nanoClock;
+    private final long startNs;
+    private volatile boolean running = true;
+    private volatile boolean idle;
+
+    // wheel-thread state
+    private long tick;
+    private int scheduled;
+    private List<Timeout> batch = new ArrayList<>();
+
+    TimingWheelScheduler(String name, long tickNs, int ticksPerWheel, int workerThreads) {
+        this(name, tickNs, ticksPerWheel, workerThreads, System::nanoTime, true);
+    }
+
+    /**
+     * Wheel without a wheel thread, timed by the given clock and driven by {@link #advance()}.
+     */
+    TimingWheelScheduler(String name, long tickNs, int ticksPerWheel, int workerThreads, LongSupplier nanoClock) {
+        this(name, tickNs, ticksPerWheel, workerThreads, nanoClock, false);
+    }
+
+    private TimingWheelScheduler(String name, long tickNs, int ticksPerWheel, int workerThreads,
+                                 LongSupplier nanoClock, boolean startWheelThread) {
+        if (tickNs <= 0) {
+            throw new IllegalArgumentException("illegal tick duration (must be > 0)");
+        }
+        if (ticksPerWheel <= 0 || Integer.bitCount(ticksPerWheel) != 1) {
+            throw new IllegalArgumentException("illegal wheel size (must be a power of two)");
+        }
+        this.tickNs = tickNs;
+        this.nanoClock = nanoClock;
+        this.startNs = nanoClock.getAsLong();
+        this.wheel = new Slot[ticksPerWheel];
+        for (int i = 0; i < ticksPerWheel; i++) {
+            wheel[i] = new Slot();
+        }
+        this.mask = ticksPerWheel - 1;
+        this.parallelism = Math.max(1, workerThreads);
+        this.workers = (workerThreads > 0) ? Executors.newFixedThreadPool(workerThreads, daemonThreads(name + "-worker-")) : null;
+        if (startWheelThread) {
+            this.wheelThread = daemonThreads(name + "-").newThread(this::runWheel);
+            this.wheelThread.start();
+        } else {
+            this.wheelThread = null;
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger seq = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + seq.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    @Override
+    public void schedule(Runnable task, long delayNs) {
+        newTimeout(task, delayNs);
+    }
+
+    Timeout newTimeout(Runnable task, long delayNs) {
+        if (!running) {
+            throw new IllegalStateException("Timing wheel has been shut down");
+        }
+        long deadlineNs = nanoClock.getAsLong() - startNs + Math.max(0L, delayNs);
+        Timeout timeout = new Timeout(this, task, deadlineNs);
+        pendingInserts.add(timeout);
+        if (idle && wheelThread != null) {
+            LockSupport.unpark(wheelThread);
+        }
+        return timeout;
+    }
+
+    void shutdownNow() {
+        running = false;
+        if (wheelThread != null) {
+            LockSupport.unpark(wheelThread);
+        }
+        if (workers != null) {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Processes all ticks that ended by the clock's current time, on the calling thread. Only for wheels created
+     * with an explicit clock.
+     */
+    void advance() {
+        if (wheelThread != null) {
+            throw new IllegalStateException("Timing wheel is driven by its own thread");
+        }
+        long elapsedTicks = (nanoClock.getAsLong() - startNs) / tickNs;
+        while (running && tick < elapsedTicks) {
+            if (scheduled == 0 && pendingInserts.isEmpty()) {
+                tick = elapsedTicks;
+                break;
+            }
+            processTick();
+        }
+    }
+
+    private void runWheel() {
+        while (running) {
+            if (scheduled == 0 && pendingInserts.isEmpty()) {
+                parkUntilInsert();
+                if (!running) break;
+                // nothing is bucketed, so idle ticks can be skipped entirely
+                tick = Math.max(tick, (nanoClock.getAsLong() - startNs) / tickNs);
+            }
+            waitForTick(tick);
+            processTick();
+        }
+    }
+
+    private void processTick() {
+        removeCancelled();
+        transferInserts();
+        expire(wheel[(int) (tick & mask)], batch);
+        if (!batch.isEmpty()) {
+            dispatch(batch);
+            batch = new ArrayList<>();
+        }
+        tick++;
+    }
+
+    private void parkUntilInsert() {
+        idle = true;
+        while (running && pendingInserts.isEmpty()) {
+            LockSupport.park(this);
+        }
+        idle = false;
+    }
+
+    private void waitForTick(long tick) {
+        long deadlineNs = startNs + (tick + 1) * tickNs;
+        long sleepNs;
+        while (running && (sleepNs = deadlineNs - nanoClock.getAsLong()) > 0) {
+            LockSupport.parkNanos(this, sleepNs);
+        }
+    }
+
+    private void transferInserts() {
+        Timeout timeout;
+        while ((timeout = pendingInserts.poll()) != null) {
+            if (timeout.state != Timeout.PENDING) continue;
+            long expiryTick = timeout.deadlineNs / tickNs;
+            timeout.remainingRounds = (expiryTick - tick) / wheel.length;
+            // never place a timeout into a slot that has already been processed
+            wheel[(int) (Math.max(expiryTick, tick) & mask)].add(timeout);
+            scheduled++;
+        }
+    }
+
+    private void removeCancelled() {
+        Timeout timeout;
+        while ((timeout = pendingCancels.poll()) != null) {
+            if (timeout.slot != null) {
+                timeout.slot.remove(timeout);
+                scheduled--;
+            }
+        }
+    }
+
+    private void expire(Slot slot, List<Timeout> batch) {
+        Timeout timeout = slot.head;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.remainingRounds <= 0) {
+                slot.remove(timeout);
+                scheduled--;
+                if (timeout.expire()) {
+                    batch.add(timeout);
+                }
+            } else {
+                timeout.remainingRounds--;
+            }
+            timeout = next;
+        }
+    }
+
+    private void dispatch(List<Timeout> batch) {
+        if (workers == null) {
+            runAll(batch, 0, batch.size());
+            return;
+        }
+        int slices = Math.min(parallelism, batch.size());
+        int sliceSize = (batch.size() + slices - 1) / slices;
+        for (int from = 0; from < batch.size(); from += sliceSize) {
+            int start = from;
+            int end = Math.min(batch.size(), from + sliceSize);
+            workers.execute(() -> runAll(batch, start, end));
+        }
+    }
+
+    private static void runAll(List<Timeout> batch, int from, int to) {
+        for (int i = from; i < to; i++) {
+            try {
+                batch.get(i).task.run();
+            } catch (Throwable t) {
+                logger.error("Scheduled task failed", t);
+            }
+        }
+    }
+
+    static final class Timeout {
+        private static final int PENDING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+        private static final AtomicIntegerFieldUpdater<Timeout> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(Timeout.class, "state");
+
+        private final TimingWheelScheduler wheel;
+        private final Runnable task;
+        private final long deadlineNs;
+        private volatile int state = PENDING;
+
+        // owned by the wheel thread
+        private long remainingRounds;
+        private Slot slot;
+        private Timeout next;
+        private Timeout prev;
+
+        private Timeout(TimingWheelScheduler wheel, Runnable task, long deadlineNs) {
+            this.wheel = wheel;
+            this.task = task;
+            this.deadlineNs = deadlineNs;
+        }
+
+        /**
+         * Cancels the timeout if it has not fired yet.
+         *
+         * @return true if this call prevented the task from running
+         */
+        boolean cancel() {
+            if (!STATE.compareAndSet(this, PENDING, CANCELLED)) {
+                return false;
+            }
+            wheel.pendingCancels.add(this);
+            return true;
+        }
+
+        boolean isCancelled() {
+            return state == CANCELLED;
+        }
+
+        private boolean expire() {
+            return STATE.compareAndSet(this, PENDING, EXPIRED);
+        }
+    }
+
+    /**
+     * Doubly linked list of timeouts, only accessed by the wheel thread.
+     */
+    private static final class Slot {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.slot = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.next = null;
+            timeout.prev = null;
+            timeout.slot = null;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package step.examples.streaming;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Samples, at a fixed interval, how far each upload trails its producer: the bytes the producer handed to the file
+ * or ring against the bytes the upload acknowledged (or consumed, where acknowledgements are not available).
+ * <p>
+ * The lag of a sample is the time since the oldest byte not uploaded yet was first seen written, at the sampling
+ * resolution. An upload is flagged as falling behind once its lag grew over {@value #GROWING_SAMPLES} consecutive
+ * samples, which a backend keeping up, even with some latency, does not do. Tracks are only touched by the sampling
+ * thread; results must be read after {@link #close()}.
+ */
+final class UploadLagSampler implements AutoCloseable {
+
+    static final int GROWING_SAMPLES = 5;
+
+    static final class Sample {
+        final long timeMs;
+        final long lagNs;
+        final long lagBytes;
+
+        Sample(long timeMs, long lagNs, long lagBytes) {
+            this.timeMs = timeMs;
+            this.lagNs = lagNs;
+            this.lagBytes = lagBytes;
+        }
+    }
+
+    static final class Track {
+        final int index;
+        private final LongSupplier writtenBytes;
+        private final LongSupplier uploadedBytes;
+        private final BooleanSupplier done;
+
+        // (written bytes, first seen at) pairs not entirely uploaded yet, oldest first
+        private final ArrayDeque<long[]> pending = new ArrayDeque<>();
+        final List<Sample> samples = new ArrayList<>();
+        long maxLagNs;
+        long maxLagBytes;
+        boolean growing;
+        private long previousLagNs = -1;
+        private int growingRun;
+        private boolean finished;
+
+        Track(int index, LongSupplier writtenBytes, LongSupplier uploadedBytes, BooleanSupplier done) {
+            this.index = index;
+            this.writtenBytes = writtenBytes;
+            this.uploadedBytes = uploadedBytes;
+            this.done = done;
+        }
+
+        void sample(long nowNs, long nowMs) {
+            if (finished) return;
+            finished = done.getAsBoolean(); // still sampled once, so that the series ends on the final state
+            long uploaded = uploadedBytes.getAsLong();
+            if (uploaded < 0) return; // progress not observable
+            long written = writtenBytes.getAsLong();
+            if (pending.isEmpty() || pending.peekLast()[0] < written) {
+                pending.addLast(new long[]{written, nowNs});
+            }
+            while (!pending.isEmpty() && pending.peekFirst()[0] <= uploaded) {
+                pending.pollFirst();
+            }
+            long lagNs = pending.isEmpty() ? 0L : nowNs - pending.peekFirst()[1];
+            long lagBytes = Math.max(0L, written - uploaded);
+            samples.add(new Sample(nowMs, lagNs, lagBytes));
+            maxLagNs = Math.max(maxLagNs, lagNs);
+            maxLagBytes = Math.max(maxLagBytes, lagBytes);
+            if (lagNs > previousLagNs && previousLagNs >= 0) {
+                if (++growingRun >= GROWING_SAMPLES) {
+                    growing = true;
+                }
+            } else {
+                growingRun = 0; // a steady lag breaks the run as well
+            }
+            previousLagNs = lagNs;
+        }
+    }
+
+    private final List<Track> tracks = new CopyOnWriteArrayList<>();
+    private final ScheduledThreadPoolExecutor executor;
+
+    /**
+     * @param intervalMs sampling interval, or 0 to only sample when {@link #sample} is called explicitly
+     */
+    UploadLagSampler(long intervalMs) {
+        if (intervalMs > 0) {
+            executor = new ScheduledThreadPoolExecutor(1, r -> {
+                Thread t = new Thread(r, "upload-lag-sampler");
+                t.setDaemon(true);
+                return t;
+            });
+            executor.scheduleAtFixedRate(() -> sample(System.nanoTime(), System.currentTimeMillis()),
+                    intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            executor = null;
+        }
+    }
+
+    /**
+     * Starts sampling an upload.
+     *
+     * @param writtenBytes  bytes handed on by the producer so far, readable from any thread
+     * @param uploadedBytes bytes acknowledged or consumed by the upload so far, or -1 if not known
+     * @param done          whether the upload ended, successfully or not
+     */
+    void track(int index, LongSupplier writtenBytes, LongSupplier uploadedBytes, BooleanSupplier done) {
+        tracks.add(new Track(index, writtenBytes, uploadedBytes, done));
+    }
+
+    void sample(long nowNs, long nowMs) {
+        for (Track track : tracks) {
+            track.sample(nowNs, nowMs);
+        }
+    }
+
+    List<Track> getTracks() {
+        return tracks;
+    }
+
+    /**
+     * Stops sampling, waiting for a sample in progress.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+}
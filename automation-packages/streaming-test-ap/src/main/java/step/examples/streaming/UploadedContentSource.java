@@ -0,0 +1,17 @@
+package step.examples.streaming;
+
+import step.streaming.client.upload.StreamingUploadSession;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Upload providers able to stream back what was stored for an upload, used to verify uploaded content.
+ */
+interface UploadedContentSource {
+
+    /**
+     * The stored content of a completed upload, or {@code null} if it is not available.
+     */
+    InputStream openUploadedContent(StreamingUploadSession session) throws IOException;
+}
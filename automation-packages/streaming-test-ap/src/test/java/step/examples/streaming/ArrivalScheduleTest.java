@@ -0,0 +1,47 @@
+package step.examples.streaming;
+
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.*;
+
+public class ArrivalScheduleTest {
+
+    private static final long SECOND_NS = 1_000_000_000L;
+
+    @Test
+    public void fixedArrivalsAreEvenlySpaced() {
+        long[] offsets = ArrivalSchedule.plan(ArrivalSchedule.Profile.FIXED, 5, 4.0, 0, 0, new SplittableRandom(1));
+        assertArrayEquals(new long[]{0, SECOND_NS / 4, SECOND_NS / 2, 3 * SECOND_NS / 4, SECOND_NS}, offsets);
+    }
+
+    @Test
+    public void poissonArrivalsHaveTheRequestedMeanRate() {
+        int count = 20_000;
+        long[] offsets = ArrivalSchedule.plan(ArrivalSchedule.Profile.POISSON, count, 100.0, 0, 0, new SplittableRandom(42));
+        assertEquals(0, offsets[0]);
+        for (int k = 1; k < count; k++) {
+            assertTrue(offsets[k] >= offsets[k - 1]);
+        }
+        double meanGapMs = offsets[count - 1] / 1e6 / (count - 1);
+        assertEquals(10.0, meanGapMs, 0.5);
+    }
+
+    @Test
+    public void rampArrivalsAccelerateUntilTheTargetRate() {
+        // 0 -> 10/s over 10s is 50 arrivals during the ramp, then one every 100ms
+        long[] offsets = ArrivalSchedule.plan(ArrivalSchedule.Profile.RAMP, 60, 10.0, 0, 10_000, new SplittableRandom(1));
+        assertEquals(0, offsets[0]);
+        for (int k = 2; k <= 50; k++) {
+            assertTrue(offsets[k] - offsets[k - 1] <= offsets[k - 1] - offsets[k - 2]);
+        }
+        assertEquals(10 * SECOND_NS, offsets[50], 1_000);
+        assertEquals(SECOND_NS / 10, offsets[59] - offsets[58], 1_000);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sequentialIsNotPlanned() {
+        ArrivalSchedule.plan(ArrivalSchedule.Profile.SEQUENTIAL, 1, 1.0, 0, 0, new SplittableRandom());
+    }
+}
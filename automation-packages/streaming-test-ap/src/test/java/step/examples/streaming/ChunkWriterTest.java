@@ -0,0 +1,77 @@
+package step.examples.streaming;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import static org.junit.Assert.*;
+
+public class ChunkWriterTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = Files.createTempFile("chunk-writer-", ".txt").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    private byte[] writeChunks(ChunkWriter writer, int chunks, boolean tickEveryChunk) throws Exception {
+        ContentGenerator generator = ContentGenerator.create(ContentGenerator.Mode.COMPAT, 31337L);
+        byte[] expected = new byte[chunks * ProducerFiber.CHUNK_SIZE];
+        byte[] buffer = new byte[ProducerFiber.CHUNK_SIZE];
+        try (writer) {
+            for (int i = 0; i < chunks; i++) {
+                generator.fill(buffer, 0, buffer.length);
+                System.arraycopy(buffer, 0, expected, i * buffer.length, buffer.length);
+                writer.write(buffer, 0, buffer.length);
+                if (tickEveryChunk) {
+                    writer.endOfTick();
+                }
+            }
+        }
+        return expected;
+    }
+
+    @Test
+    public void chunkPolicyDrainsEveryChunk() throws Exception {
+        for (ChunkWriter.IoMode mode : ChunkWriter.IoMode.values()) {
+            ChunkWriter writer = ChunkWriter.open(mode, ChunkWriter.FlushPolicy.CHUNK, 65536, file);
+            byte[] expected = writeChunks(writer, 100, false);
+            assertArrayEquals(mode.name(), expected, Files.readAllBytes(file.toPath()));
+            assertEquals(mode.name(), 100, writer.getSyscalls());
+            assertEquals(mode.name(), expected.length, writer.getBytesDrained());
+        }
+    }
+
+    @Test
+    public void bytesPolicyBatchesWrites() throws Exception {
+        for (ChunkWriter.IoMode mode : ChunkWriter.IoMode.values()) {
+            ChunkWriter writer = ChunkWriter.open(mode, ChunkWriter.FlushPolicy.BYTES, 1024, file);
+            byte[] expected = writeChunks(writer, 100, false);
+            assertArrayEquals(mode.name(), expected, Files.readAllBytes(file.toPath()));
+            // 8 chunks per 1 KiB drain, plus the remainder on close
+            assertEquals(mode.name(), 13, writer.getSyscalls());
+        }
+    }
+
+    @Test
+    public void tickPolicyDrainsOncePerTick() throws Exception {
+        ChunkWriter writer = ChunkWriter.open(ChunkWriter.IoMode.CHANNEL, ChunkWriter.FlushPolicy.TICK, 65536, file);
+        byte[] expected = writeChunks(writer, 10, true);
+        assertArrayEquals(expected, Files.readAllBytes(file.toPath()));
+        assertEquals(10, writer.getSyscalls());
+
+        writer = ChunkWriter.open(ChunkWriter.IoMode.STREAM, ChunkWriter.FlushPolicy.TICK, 65536, file);
+        expected = writeChunks(writer, 10, false);
+        assertArrayEquals(expected, Files.readAllBytes(file.toPath()));
+        assertEquals(1, writer.getSyscalls());
+    }
+}
@@ -0,0 +1,141 @@
+package step.examples.streaming;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.*;
+
+public class ContentGeneratorTest {
+
+    private static final long[] SEEDS = {0L, 1L, -1L, 42L, 31337L, Long.MIN_VALUE, Long.MAX_VALUE, 0x5DEECE66DL};
+    private static final int LENGTH = 200_000;
+
+    /**
+     * The original ProducerFiber algorithm: one {@link Random#nextInt(int)} per content byte,
+     * written in fixed 128-byte chunks.
+     */
+    private static byte[] legacyContent(long seed, int length) {
+        Random prng = new Random(seed);
+        int lineRemaining = 40 + prng.nextInt(41);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length);
+        long toWrite = length;
+        while (toWrite > 0) {
+            int chunk = (int) Math.min(toWrite, 128L);
+            byte[] buf = new byte[chunk];
+            for (int i = 0; i < chunk; i++) {
+                if (lineRemaining == 0) {
+                    buf[i] = (byte) '\n';
+                    lineRemaining = 40 + prng.nextInt(41);
+                } else {
+                    buf[i] = ContentGenerator.ALPHABET[prng.nextInt(ContentGenerator.ALPHABET.length)];
+                    lineRemaining--;
+                }
+            }
+            out.write(buf, 0, chunk);
+            toWrite -= chunk;
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] generate(ContentGenerator.Mode mode, long seed, int length, int chunkSize) {
+        ContentGenerator generator = ContentGenerator.create(mode, seed);
+        byte[] result = new byte[length];
+        byte[] buffer = new byte[chunkSize];
+        for (int pos = 0; pos < length; pos += chunkSize) {
+            int chunk = Math.min(chunkSize, length - pos);
+            generator.fill(buffer, 0, chunk);
+            System.arraycopy(buffer, 0, result, pos, chunk);
+        }
+        return result;
+    }
+
+    @Test
+    public void compatModeIsByteIdenticalToLegacyAlgorithm() {
+        for (long seed : SEEDS) {
+            byte[] expected = legacyContent(seed, LENGTH);
+            byte[] actual = generate(ContentGenerator.Mode.COMPAT, seed, LENGTH, ProducerFiber.CHUNK_SIZE);
+            assertArrayEquals("seed " + seed, expected, actual);
+        }
+    }
+
+    @Test
+    public void compatModeIsIndependentOfFillSize() {
+        byte[] expected = legacyContent(31337L, LENGTH);
+        for (int chunkSize : new int[]{1, 7, 64, 1000, 65536}) {
+            assertArrayEquals("chunk size " + chunkSize, expected,
+                    generate(ContentGenerator.Mode.COMPAT, 31337L, LENGTH, chunkSize));
+        }
+    }
+
+    @Test
+    public void bulkModeIsDeterministicPerSeed() {
+        for (long seed : SEEDS) {
+            byte[] first = generate(ContentGenerator.Mode.BULK, seed, LENGTH, ProducerFiber.CHUNK_SIZE);
+            byte[] second = generate(ContentGenerator.Mode.BULK, seed, LENGTH, 999);
+            assertArrayEquals("seed " + seed, first, second);
+        }
+        assertFalse(Arrays.equals(
+                generate(ContentGenerator.Mode.BULK, 1L, LENGTH, 128),
+                generate(ContentGenerator.Mode.BULK, 2L, LENGTH, 128)));
+    }
+
+    @Test
+    public void bulkModeKeepsAlphabetAndLineLengths() {
+        byte[] content = generate(ContentGenerator.Mode.BULK, 31337L, LENGTH, 128);
+        boolean[] allowed = new boolean[256];
+        for (byte b : ContentGenerator.ALPHABET) {
+            allowed[b & 0xFF] = true;
+        }
+        int lineLength = 0;
+        for (byte b : content) {
+            if (b == '\n') {
+                assertTrue("line length " + lineLength, lineLength >= 40 && lineLength <= 80);
+                lineLength = 0;
+            } else {
+                assertTrue("unexpected byte " + b, allowed[b & 0xFF]);
+                lineLength++;
+            }
+        }
+    }
+
+    @Test
+    public void binaryModesAreDeterministicAndIndependentOfFillSize() {
+        for (ContentGenerator.Mode mode : new ContentGenerator.Mode[]{
+                ContentGenerator.Mode.COMPRESSIBLE, ContentGenerator.Mode.INCOMPRESSIBLE}) {
+            assertFalse(mode.isText());
+            for (long seed : SEEDS) {
+                byte[] expected = generate(mode, seed, LENGTH, ProducerFiber.CHUNK_SIZE);
+                for (int chunkSize : new int[]{1, 7, 999, 65536}) {
+                    assertArrayEquals(mode + " seed " + seed + " chunk size " + chunkSize, expected,
+                            generate(mode, seed, LENGTH, chunkSize));
+                }
+            }
+            assertFalse(mode.toString(), Arrays.equals(generate(mode, 1L, LENGTH, 128), generate(mode, 2L, LENGTH, 128)));
+        }
+    }
+
+    @Test
+    public void binaryModesDifferInCompressibility() {
+        double compressible = deflateRatio(generate(ContentGenerator.Mode.COMPRESSIBLE, 31337L, LENGTH, 128));
+        double incompressible = deflateRatio(generate(ContentGenerator.Mode.INCOMPRESSIBLE, 31337L, LENGTH, 128));
+        assertTrue("compressible ratio " + compressible, compressible < 0.5);
+        assertTrue("incompressible ratio " + incompressible, incompressible > 0.99);
+    }
+
+    private static double deflateRatio(byte[] content) {
+        Deflater deflater = new Deflater();
+        deflater.setInput(content);
+        deflater.finish();
+        byte[] buffer = new byte[65536];
+        long compressed = 0;
+        while (!deflater.finished()) {
+            compressed += deflater.deflate(buffer);
+        }
+        deflater.end();
+        return (double) compressed / content.length;
+    }
+}
@@ -0,0 +1,72 @@
+package step.examples.streaming;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.CRC32C;
+
+import static org.junit.Assert.*;
+
+public class ContentVerifierTest {
+
+    private static final int SIZE = 200_000; // several blocks, last one partial
+
+    private File file;
+    private ProducerFiber producer;
+    private byte[] written;
+
+    @Before
+    public void setUp() throws Exception {
+        file = Files.createTempFile("content-verifier-", ".txt").toFile();
+        ChunkWriter writer = ChunkWriter.open(ChunkWriter.IoMode.STREAM, ChunkWriter.FlushPolicy.BYTES, 65536, file);
+        producer = new ProducerFiber(0, file, writer, SIZE, 0, null, 31337L, ContentGenerator.Mode.BULK);
+        producer.startBlocking(Runnable::run).join();
+        written = Files.readAllBytes(file.toPath());
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void producerChecksumCoversAllWrittenBytes() {
+        assertEquals(SIZE, producer.getBytesWritten());
+        CRC32C crc = new CRC32C();
+        crc.update(written);
+        assertEquals(crc.getValue(), producer.getChecksum());
+    }
+
+    @Test
+    public void identicalContentIsValid() throws Exception {
+        ContentVerifier.Result result = ContentVerifier.verify(producer, new ByteArrayInputStream(written));
+        assertTrue(result.isValid());
+        assertEquals(SIZE, result.bytes);
+        assertEquals(producer.getChecksum(), result.checksum);
+    }
+
+    @Test
+    public void firstDifferingByteIsReported() throws Exception {
+        byte[] corrupted = written.clone();
+        corrupted[150_001] ^= 1;
+        corrupted[150_002] ^= 1;
+        ContentVerifier.Result result = ContentVerifier.verify(producer, new ByteArrayInputStream(corrupted));
+        assertEquals(150_001, result.mismatchOffset);
+        assertNotEquals(producer.getChecksum(), result.checksum);
+    }
+
+    @Test
+    public void truncatedAndSurplusContentIsInvalid() throws Exception {
+        ContentVerifier.Result truncated = ContentVerifier.verify(producer,
+                new ByteArrayInputStream(Arrays.copyOf(written, 70_000)));
+        assertEquals(70_000, truncated.mismatchOffset);
+        ContentVerifier.Result surplus = ContentVerifier.verify(producer,
+                new ByteArrayInputStream(Arrays.copyOf(written, SIZE + 10)));
+        assertEquals(SIZE, surplus.mismatchOffset);
+    }
+}
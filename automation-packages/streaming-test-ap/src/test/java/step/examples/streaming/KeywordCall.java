@@ -0,0 +1,87 @@
+package step.examples.streaming;
+
+import step.functions.io.Output;
+import step.handlers.javahandler.Keyword;
+import step.handlers.javahandler.KeywordRunner;
+import step.handlers.javahandler.KeywordRunner.ExecutionContext;
+import step.reporting.LiveReporting;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Call of the {@code StreamingUploadsTest} keyword through the {@link KeywordRunner}, with the keyword's declared
+ * defaults except for short production and no sleeps between attachments. Tests override single inputs as needed;
+ * only the overridden inputs are sent.
+ */
+final class KeywordCall {
+
+    /**
+     * The keyword uploading through the live reporting of the current call, as the runner creates its own instances.
+     */
+    public static class LoopbackKeyword extends StreamingUploadsTestKeyword {
+        private static volatile LiveReporting callLiveReporting;
+
+        @Override
+        public void beforeKeyword(String keywordName, Keyword annotation) {
+            super.beforeKeyword(keywordName, annotation);
+            junitSetLiveReporting(callLiveReporting);
+        }
+    }
+
+    private final Map<String, Object> inputs = new LinkedHashMap<>();
+
+    KeywordCall() {
+        with("productionTimeSecondsMin", 1);
+        with("productionTimeSecondsMax", 1);
+        with("sleepBetweenSecondsMin", 0);
+        with("sleepBetweenSecondsMax", 0);
+    }
+
+    KeywordCall attachments(int count, long size) {
+        return with("attachmentsCount", count).with("attachmentSizeMin", size).with("attachmentSizeMax", size);
+    }
+
+    /**
+     * Overrides an input; lists are sent in the keyword's {@code a;b} notation.
+     */
+    KeywordCall with(String name, Object value) {
+        inputs.put(name, value);
+        return this;
+    }
+
+    JsonObject toInput() {
+        JsonObjectBuilder input = Json.createObjectBuilder();
+        inputs.forEach((name, value) -> {
+            if (value instanceof Boolean) {
+                input.add(name, (Boolean) value);
+            } else if (value instanceof Integer || value instanceof Long) {
+                input.add(name, ((Number) value).longValue());
+            } else if (value instanceof Number) {
+                input.add(name, ((Number) value).doubleValue());
+            } else if (value instanceof List) {
+                input.add(name, ((List<?>) value).stream().map(String::valueOf).collect(Collectors.joining(";")));
+            } else {
+                input.add(name, String.valueOf(value));
+            }
+        });
+        return input.build();
+    }
+
+    Output<JsonObject> run(LiveReporting liveReporting) throws Exception {
+        LoopbackKeyword.callLiveReporting = liveReporting;
+        ExecutionContext ctx = KeywordRunner.getExecutionContext(Map.of(), LoopbackKeyword.class);
+        try {
+            ctx.setThrowExceptionOnError(false);
+            return ctx.run("StreamingUploadsTest", toInput());
+        } finally {
+            ctx.close();
+            LoopbackKeyword.callLiveReporting = null;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package step.examples.streaming;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void smallValuesAreExact() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int us = 1; us <= 20; us++) {
+            histogram.recordNanos(us * 1_000L);
+        }
+        assertEquals(20, histogram.getTotalCount());
+        assertEquals(10, histogram.getPercentileMicros(50.0));
+        assertEquals(20, histogram.getPercentileMicros(99.0));
+        assertEquals(20, histogram.getMaxMicros());
+    }
+
+    @Test
+    public void largeValuesStayWithinRelativeError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long us = 1; us <= 100_000; us++) {
+            histogram.recordNanos(us * 1_000L);
+        }
+        assertEquals(100_000, histogram.getMaxMicros());
+        assertEquals(50_000, histogram.getPercentileMicros(50.0), 50_000 * 0.07);
+        assertEquals(99_000, histogram.getPercentileMicros(99.0), 99_000 * 0.07);
+        assertTrue(histogram.getPercentileMicros(99.0) >= 99_000);
+    }
+
+    @Test
+    public void negativeValuesCountAsZeroAndMergeAddsUp() {
+        LatencyHistogram a = new LatencyHistogram();
+        LatencyHistogram b = new LatencyHistogram();
+        a.recordNanos(-5_000L);
+        b.recordNanos(3_000_000L);
+        b.recordNanos(Long.MAX_VALUE);
+        a.add(b);
+        assertEquals(3, a.getTotalCount());
+        assertEquals(0, a.getPercentileMicros(1.0));
+        assertEquals((1L << 32) - 1, a.getMaxMicros());
+        assertEquals(0, new LatencyHistogram().getPercentileMicros(99.0));
+    }
+}
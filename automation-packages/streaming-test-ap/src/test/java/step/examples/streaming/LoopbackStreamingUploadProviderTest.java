@@ -0,0 +1,94 @@
+package step.examples.streaming;
+
+import org.junit.After;
+import org.junit.Test;
+import step.functions.io.Output;
+import step.streaming.client.upload.StreamingUpload;
+
+import javax.json.JsonObject;
+import java.io.File;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class LoopbackStreamingUploadProviderTest {
+
+    private LoopbackStreamingUploadProvider provider;
+    private File file;
+
+    @After
+    public void tearDown() throws Exception {
+        if (provider != null) {
+            provider.close();
+        }
+        if (file != null) {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    private Output<JsonObject> runKeyword(int attachmentsCount, int attachmentSize) throws Exception {
+        return new KeywordCall().attachments(attachmentsCount, attachmentSize).run(provider.newLiveReporting());
+    }
+
+    private StreamingUpload uploadCompleteFile(int size) throws Exception {
+        file = Files.createTempFile("loopback-", ".bin").toFile();
+        Files.write(file.toPath(), new byte[size]);
+        return provider.newLiveReporting().fileUploads.startBinaryFileUpload(file);
+    }
+
+    @Test
+    public void keywordUploadsAreIngestedCompletely() throws Exception {
+        provider = new LoopbackStreamingUploadProvider();
+        Output<JsonObject> output = runKeyword(3, 5000);
+        assertNull(output.getError());
+        Map<String, Long> ingested = provider.getIngestedBytesPerResource();
+        assertEquals(3, ingested.size());
+        for (long bytes : ingested.values()) {
+            assertEquals(5000L, bytes);
+        }
+        assertEquals(15000L, provider.getTotalIngestedBytes());
+        assertTrue(provider.getIngestLag().getTotalCount() > 0);
+    }
+
+    @Test
+    public void resourceSizeQuotaFailsUpload() throws Exception {
+        provider = new LoopbackStreamingUploadProvider(Map.of(
+                LoopbackStreamingUploadProvider.QUOTA_MAX_BYTES_PER_RESOURCE, "5000"));
+        Output<JsonObject> output = runKeyword(1, 20000);
+        assertNotNull(output.getError());
+        assertTrue(output.getPayload().getString("producer-0-exception").contains("maxBytesPerResource"));
+        assertTrue(provider.getTotalIngestedBytes() <= 5000L);
+    }
+
+    @Test
+    public void resourceCountQuotaRejectsUpload() throws Exception {
+        provider = new LoopbackStreamingUploadProvider(Map.of(
+                LoopbackStreamingUploadProvider.QUOTA_MAX_RESOURCES_PER_EXECUTION, "2"));
+        Output<JsonObject> output = runKeyword(3, 1000);
+        assertNotNull(output.getError());
+        assertEquals(2, provider.getIngestedBytesPerResource().size());
+    }
+
+    @Test
+    public void bandwidthLimitThrottlesIngest() throws Exception {
+        provider = new LoopbackStreamingUploadProvider(Map.of(
+                LoopbackStreamingUploadProvider.INGEST_BYTES_PER_SECOND, "500000"));
+        long startNs = System.nanoTime();
+        StreamingUpload upload = uploadCompleteFile(100_000);
+        assertEquals(100_000L, upload.complete(Duration.ofSeconds(10)).getCurrentSize());
+        assertTrue(System.nanoTime() - startNs >= 180_000_000L);
+    }
+
+    @Test
+    public void latencyDelaysAcknowledgement() throws Exception {
+        provider = new LoopbackStreamingUploadProvider(Map.of(
+                LoopbackStreamingUploadProvider.INGEST_LATENCY_MS, "200"));
+        long startNs = System.nanoTime();
+        StreamingUpload upload = uploadCompleteFile(1000);
+        assertEquals(1000L, upload.complete(Duration.ofSeconds(10)).getCurrentSize());
+        assertTrue(System.nanoTime() - startNs >= 200_000_000L);
+        assertTrue(provider.getIngestLag().getMaxMicros() >= 150_000L);
+    }
+}
@@ -0,0 +1,85 @@
+package step.examples.streaming;
+
+import org.junit.Test;
+import step.streaming.data.EndOfInputSignal;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class RingBufferTest {
+
+    private static byte[] content(int size) {
+        byte[] bytes = new byte[size];
+        for (int i = 0; i < size; i++) {
+            bytes[i] = (byte) (i * 31);
+        }
+        return bytes;
+    }
+
+    @Test
+    public void readerSeesAllBytesInOrderAcrossWrapAround() throws Exception {
+        RingBuffer ring = new RingBuffer(100);
+        EndOfInputSignal signal = new EndOfInputSignal();
+        InputStream in = ring.newInputStream(signal);
+        byte[] expected = content(10_000);
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            try {
+                for (int off = 0; off < expected.length; off += 77) {
+                    ring.write(expected, off, Math.min(77, expected.length - off));
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            signal.complete(null);
+        });
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        in.transferTo(received);
+        writer.get(10, TimeUnit.SECONDS);
+        assertArrayEquals(expected, received.toByteArray());
+        assertEquals(expected.length, ring.getBytesWritten());
+        assertTrue(ring.getStalls() > 0);
+    }
+
+    @Test
+    public void endOfInputIsOnlyReportedOnceDrained() throws Exception {
+        RingBuffer ring = new RingBuffer(16);
+        EndOfInputSignal signal = new EndOfInputSignal();
+        InputStream in = ring.newInputStream(signal);
+        ring.write(content(10), 0, 10);
+        signal.complete(null);
+        byte[] buf = new byte[32];
+        assertEquals(10, in.read(buf));
+        assertArrayEquals(content(10), Arrays.copyOf(buf, 10));
+        assertEquals(-1, in.read(buf));
+    }
+
+    @Test
+    public void blockedWriterFailsWhenReaderCloses() throws Exception {
+        RingBuffer ring = new RingBuffer(8);
+        InputStream in = ring.newInputStream(new EndOfInputSignal());
+        CompletableFuture<Void> writer = CompletableFuture.runAsync(() -> {
+            try {
+                ring.write(content(32), 0, 32);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        Thread.sleep(100);
+        assertFalse(writer.isDone());
+        in.close();
+        try {
+            writer.get(10, TimeUnit.SECONDS);
+            fail("writer should have failed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().getCause() instanceof IOException);
+        }
+        assertEquals(1, ring.getStalls());
+    }
+}
@@ -0,0 +1,11 @@
+package step.examples.streaming;
+
+import org.junit.runner.RunWith;
+import step.junit.runner.Step;
+
+// Runs the plans of the automation package (defined in the resources/ folder) locally. The class name is outside of
+// Surefire's default includes, so the plans only run when selected explicitly, e.g. by benchmarks/ap-regression-harness:
+// mvn surefire:test -Dtest='StreamingPlans#Streaming Uploads TC 01 - 5 PASS'
+@RunWith(Step.class)
+public class StreamingPlans {
+}
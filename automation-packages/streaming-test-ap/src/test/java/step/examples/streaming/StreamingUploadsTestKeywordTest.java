@@ -0,0 +1,246 @@
+package step.examples.streaming;
+
+import org.junit.After;
+import org.junit.Test;
+import step.core.reports.Measure;
+import step.functions.io.Output;
+
+import javax.json.JsonObject;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
+
+public class StreamingUploadsTestKeywordTest {
+
+    private final LoopbackStreamingUploadProvider provider = new LoopbackStreamingUploadProvider();
+
+    @After
+    public void tearDown() {
+        provider.close();
+    }
+
+    private static List<Measure> measures(Output<JsonObject> output, String name) {
+        return output.getMeasures().stream().filter(m -> m.getName().equals(name)).collect(Collectors.toList());
+    }
+
+    @Test
+    public void completionLatencyIsMeasuredPerUpload() throws Exception {
+        KeywordCall call = new KeywordCall().attachments(5, 2000);
+        call.with("completionThreads", 2);
+        call.with("forgetToCompleteIndexes", List.of(3));
+        Output<JsonObject> output = call.run(provider.newLiveReporting());
+        assertNull(output.getError());
+        List<Measure> completions = measures(output, "upload-completion");
+        assertEquals(4, completions.size());
+        assertFalse(completions.stream().anyMatch(m -> m.getData().get("index").equals(3)));
+    }
+
+    @Test
+    public void failuresAreReportedForTheirOwnIndex() throws Exception {
+        KeywordCall call = new KeywordCall().attachments(3, 2000);
+        call.with("failingIndexes", List.of(1));
+        Output<JsonObject> output = call.run(provider.newLiveReporting());
+        assertNotNull(output.getError());
+        assertTrue(output.getPayload().containsKey("producer-1-exception"));
+        assertFalse(output.getPayload().containsKey("producer-0-exception"));
+        assertFalse(output.getPayload().containsKey("producer-2-exception"));
+        assertEquals(2, measures(output, "upload-completion").size());
+    }
+
+    @Test
+    public void openArrivalsRecordLaunchDelayPerAttachment() throws Exception {
+        KeywordCall call = new KeywordCall().attachments(4, 2000);
+        call.with("arrivalMode", "fixed");
+        call.with("arrivalRatePerSecond", 20);
+        Output<JsonObject> output = call.run(provider.newLiveReporting());
+        assertNull(output.getError());
+        List<Measure> delays = measures(output, "attachment-launch-delay");
+        assertEquals(4, delays.size());
+        for (int index = 0; index < 4; index++) {
+            final int i = index;
+            assertTrue(delays.stream().anyMatch(m -> m.getData().get("index").equals(i)));
+        }
+        assertTrue(delays.stream().allMatch(m -> m.getDuration() >= 0 && m.getDuration() < 1000));
+        assertEquals(4, measures(output, "upload-completion").size());
+    }
+
+    @Test
+    public void memoryBackedUploadsDeliverAllBytes() throws Exception {
+        KeywordCall call = new KeywordCall().attachments(3, 20000);
+        call.with("uploadBacking", "memory");
+        call.with("ringBufferBytes", 1024);
+        Output<JsonObject> output = call.run(provider.newLiveReporting());
+        assertNull(output.getError());
+        assertEquals("memory/chunk", output.getPayload().getString("producer-io-mode"));
+        assertTrue(output.getPayload().containsKey("producer-backpressure-stalls"));
+        assertEquals(3, provider.getIngestedBytesPerResource().size());
+        assertEquals(60000, provider.getTotalIngestedBytes());
+    }
+
+    @Test
+    public void tmpfsBackedUploadsDeliverAllBytes() throws Exception {
+        assumeTrue(Files.isWritable(Paths.get(StreamingUploadsTestKeyword.UploadBacking.TMPFS_DIRECTORY)));
+        KeywordCall call = new KeywordCall().attachments(3, 20000);
+        call.with("uploadBacking", "tmpfs");
+        Output<JsonObject> output = call.run(provider.newLiveReporting());
+        assertNull(output.getError());
+        assertEquals("stream/chunk", output.getPayload().getString("producer-io-mode"));
+        assertEquals(3, provider.getIngestedBytesPerResource().size());
+        assertEquals(60000, provider.getTotalIngestedBytes());
+    }
+
+    @Test
+    public void virtualThreadProducersDeliverAllBytes() throws Exception {
+        KeywordCall call = new KeywordCall().attachments(3, 20000);
+        call.with("producerMode", "virtual");
+        Output<JsonObject> output = call.run(provider.newLiveReporting());
+        if (Runtime.version().feature() >= 21) {
+            assertNull(output.getError());
+            assertEquals(60000, provider.getTotalIngestedBytes());
+        } else {
+            // older agents reject the mode up front instead of silently using platform threads
+            assertNotNull(output.getError());
+            assertTrue(provider.getIngestedBytesPerResource().isEmpty());
+            try {
+                StreamingUploadsTestKeyword.newVirtualThreadPerTaskExecutor().shutdownNow();
+                fail("virtual threads are not available on Java " + Runtime.version());
+            } catch (IllegalStateException e) {
+                assertTrue(e.getMessage().contains("requires Java 21"));
+            }
+        }
+    }
+
+    @Test
+    public void memoryBackedProducersAreThrottledBySlowUploads() throws Exception {
+        LoopbackStreamingUploadProvider slow = new LoopbackStreamingUploadProvider(
+                Map.of(LoopbackStreamingUploadProvider.INGEST_BYTES_PER_SECOND, "20000"));
+        try {
+            KeywordCall call = new KeywordCall().attachments(1, 40000);
+            call.with("uploadBacking", "memory");
+            call.with("ringBufferBytes", 1024);
+            Output<JsonObject> output = call.run(slow.newLiveReporting());
+            assertNull(output.getError());
+            assertTrue(output.getPayload().getJsonNumber("producer-backpressure-stalls").longValue() > 0);
+            assertTrue(output.getPayload().getJsonNumber("producer-backpressure-ms").longValue() > 500);
+            assertEquals(40000, slow.getTotalIngestedBytes());
+        } finally {
+            slow.close();
+        }
+    }
+
+    @Test
+    public void uploadsAreVerifiedAgainstProducedContent() throws Exception {
+        LoopbackStreamingUploadProvider retaining = new LoopbackStreamingUploadProvider(
+                Map.of(LoopbackStreamingUploadProvider.RETAIN_CONTENT, "true"));
+        try {
+            for (String backing : List.of("file", "memory")) {
+                KeywordCall call = new KeywordCall().attachments(3, 50000);
+                call.with("uploadBacking", backing);
+                call.with("verifyUploads", true);
+                call.with("forgetToCompleteIndexes", List.of(2));
+                Output<JsonObject> output = call.run(retaining.newLiveReporting());
+                assertNull(backing, output.getError());
+                assertEquals(backing, 50000, output.getPayload().getJsonNumber("producer-0-bytes").longValue());
+                assertTrue(backing, output.getPayload().containsKey("producer-2-crc32c"));
+                assertTrue(backing, output.getPayload().getBoolean("upload-0-verified"));
+                assertTrue(backing, output.getPayload().getBoolean("upload-1-verified"));
+                assertFalse(backing, output.getPayload().containsKey("upload-2-verified"));
+                assertEquals(backing, 1, output.getPayload().getInt("upload-verification-skipped"));
+                assertEquals(backing, 2, measures(output, "upload-verification").size());
+            }
+        } finally {
+            retaining.close();
+        }
+    }
+
+    @Test
+    public void uploadsAreNotVerifiedAgainstTheirOwnFile() throws Exception {
+        // The default provider does not keep the content: there is nothing uploaded to read back
+        KeywordCall call = new KeywordCall().attachments(2, 20000);
+        call.with("verifyUploads", true);
+        Output<JsonObject> output = call.run(provider.newLiveReporting());
+        assertNull(output.getError());
+        assertFalse(output.getPayload().containsKey("upload-0-verified"));
+        assertEquals(2, output.getPayload().getInt("upload-verification-skipped"));
+        assertTrue(measures(output, "upload-verification").isEmpty());
+    }
+
+    @Test
+    public void unpacedBinaryUploadsReportThroughput() throws Exception {
+        LoopbackStreamingUploadProvider retaining = new LoopbackStreamingUploadProvider(
+                Map.of(LoopbackStreamingUploadProvider.RETAIN_CONTENT, "true"));
+        try {
+            for (String content : List.of("compressible", "incompressible")) {
+                KeywordCall call = new KeywordCall().attachments(2, 3_000_000);
+                call.with("productionTimeSecondsMin", 0);
+                call.with("productionTimeSecondsMax", 0);
+                call.with("contentMode", content);
+                call.with("verifyUploads", true);
+                Output<JsonObject> output = call.run(retaining.newLiveReporting());
+                assertNull(content, output.getError());
+                assertTrue(content, output.getPayload().getBoolean("upload-0-verified"));
+                assertTrue(content, output.getPayload().getBoolean("upload-1-verified"));
+                assertEquals(content, 6_000_000, output.getPayload().getJsonNumber("throughput-bytes").longValue());
+                assertTrue(content, output.getPayload().getJsonNumber("throughput-upload-mb-per-s").doubleValue() > 0);
+                assertTrue(content, output.getPayload().getJsonNumber("upload-1-mb-per-s").doubleValue() > 0);
+                List<Measure> throughput = measures(output, "attachment-throughput");
+                assertEquals(content, 2, throughput.size());
+                assertTrue(content, throughput.stream().allMatch(m -> m.getData().get("bytes").equals(3_000_000L)));
+            }
+        } finally {
+            retaining.close();
+        }
+    }
+
+    @Test
+    public void uploadsFallingBehindTheirProducerAreFlagged() throws Exception {
+        LoopbackStreamingUploadProvider slow = new LoopbackStreamingUploadProvider(
+                Map.of(LoopbackStreamingUploadProvider.INGEST_BYTES_PER_SECOND, "20000"));
+        try {
+            KeywordCall call = new KeywordCall().attachments(1, 60000);
+            call.with("lagSamplingIntervalMs", 100);
+            Output<JsonObject> output = call.run(slow.newLiveReporting());
+            assertNull(output.getError());
+            assertEquals(1, output.getPayload().getInt("upload-lag-growing"));
+            assertTrue(output.getPayload().getBoolean("upload-0-lag-growing"));
+            List<Measure> max = measures(output, "upload-lag-max");
+            assertEquals(1, max.size());
+            assertTrue(max.get(0).getDuration() > 1000);
+            assertTrue(measures(output, "upload-lag").size() > UploadLagSampler.GROWING_SAMPLES);
+        } finally {
+            slow.close();
+        }
+    }
+
+    @Test
+    public void uploadsKeepingUpAreNotFlagged() throws Exception {
+        KeywordCall call = new KeywordCall().attachments(2, 50000);
+        call.with("lagSamplingIntervalMs", 100);
+        Output<JsonObject> output = call.run(provider.newLiveReporting());
+        assertNull(output.getError());
+        assertEquals(0, output.getPayload().getInt("upload-lag-growing"));
+        assertEquals(2, measures(output, "upload-lag-max").size());
+        assertFalse(measures(output, "upload-lag").isEmpty());
+    }
+
+    @Test
+    public void seededPlansKeepTheirSizes() {
+        // Sizes within the int range are drawn as ints, as before sizes became longs, so that seeds reproduce runs
+        SplittableRandom random = new SplittableRandom(42);
+        long[][] expected = {{56031, 2000}, {21172, 4000}, {23856, 3000}};
+        for (int index = 0; index < expected.length; index++) {
+            long[] plan = StreamingUploadsTestKeyword.planAttachment(index, random, 1000, 100000, 1, 5, List.of());
+            assertEquals(expected[index][0], plan[0]);
+            assertEquals(expected[index][1], plan[1]);
+        }
+        long[] large = StreamingUploadsTestKeyword.planAttachment(0, new SplittableRandom(42),
+                3_000_000_000L, 4_000_000_000L, 1, 1, List.of());
+        assertEquals(3_377_637_706L, large[0]);
+    }
+}
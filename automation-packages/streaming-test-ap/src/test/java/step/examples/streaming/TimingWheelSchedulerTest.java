@@ -0,0 +1,117 @@
+package step.examples.streaming;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class TimingWheelSchedulerTest {
+
+    private final AtomicLong clock = new AtomicLong();
+    private TimingWheelScheduler wheel;
+
+    @After
+    public void tearDown() {
+        if (wheel != null) {
+            wheel.shutdownNow();
+        }
+    }
+
+    private void advanceTo(long nowNs) {
+        clock.set(nowNs);
+        wheel.advance();
+    }
+
+    @Test
+    public void neverFiresEarly() {
+        wheel = new TimingWheelScheduler("test-wheel", 100_000L, 64, 0, clock::get);
+        long delayNs = 2_500_000L;
+        AtomicLong firedNs = new AtomicLong(-1);
+        wheel.schedule(() -> firedNs.set(clock.get()), delayNs);
+        advanceTo(delayNs - 1);
+        assertEquals(-1, firedNs.get());
+        advanceTo(delayNs + 100_000L);
+        assertTrue(firedNs.get() >= delayNs);
+    }
+
+    @Test
+    public void delaysSpanningSeveralRoundsFireOnce() {
+        // 16 ticks of 100us per round, so 5ms takes a bit more than 3 rounds
+        wheel = new TimingWheelScheduler("test-wheel", 100_000L, 16, 0, clock::get);
+        long delayNs = 5_000_000L;
+        AtomicLong count = new AtomicLong();
+        AtomicLong firedNs = new AtomicLong();
+        wheel.schedule(() -> {
+            firedNs.set(clock.get());
+            count.incrementAndGet();
+        }, delayNs);
+        for (long nowNs = 0; nowNs <= 2 * delayNs; nowNs += 100_000L) {
+            advanceTo(nowNs);
+        }
+        assertEquals(1, count.get());
+        assertTrue(firedNs.get() >= delayNs);
+        assertTrue(firedNs.get() <= delayNs + 100_000L);
+    }
+
+    @Test
+    public void cancelledTimeoutDoesNotFire() {
+        wheel = new TimingWheelScheduler("test-wheel", 100_000L, 64, 0, clock::get);
+        AtomicBoolean fired = new AtomicBoolean();
+        TimingWheelScheduler.Timeout timeout = wheel.newTimeout(() -> fired.set(true), 5_000_000L);
+        assertTrue(timeout.cancel());
+        assertTrue(timeout.isCancelled());
+        assertFalse(timeout.cancel());
+        advanceTo(10_000_000L);
+        assertFalse(fired.get());
+
+        AtomicBoolean expiredFired = new AtomicBoolean();
+        TimingWheelScheduler.Timeout expired = wheel.newTimeout(() -> expiredFired.set(true), 0L);
+        advanceTo(10_100_000L);
+        assertTrue(expiredFired.get());
+        assertFalse(expired.cancel());
+    }
+
+    @Test
+    public void sameSlotBatchIsSplitAcrossWorkers() throws Exception {
+        wheel = new TimingWheelScheduler("test-wheel", 1_000_000L, 64, 4, clock::get);
+        int tasks = 1000;
+        CountDownLatch latch = new CountDownLatch(tasks);
+        Set<String> threads = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        for (int i = 0; i < tasks; i++) {
+            wheel.schedule(() -> {
+                threads.add(Thread.currentThread().getName());
+                latch.countDown();
+            }, 3_000_000L);
+        }
+        advanceTo(4_000_000L);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertFalse(threads.isEmpty());
+        for (String name : new HashSet<>(threads)) {
+            assertTrue(name, name.startsWith("test-wheel-worker-"));
+        }
+    }
+
+    @Test
+    public void wheelThreadFiresOnTheSystemClock() throws Exception {
+        wheel = new TimingWheelScheduler("test-wheel", 100_000L, 64, 0);
+        CountDownLatch latch = new CountDownLatch(1);
+        long scheduledNs = System.nanoTime();
+        AtomicLong firedNs = new AtomicLong();
+        wheel.schedule(() -> {
+            firedNs.set(System.nanoTime());
+            latch.countDown();
+        }, 2_500_000L);
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertTrue(firedNs.get() - scheduledNs >= 2_500_000L);
+        assertThrows(IllegalStateException.class, wheel::advance);
+    }
+}
@@ -0,0 +1,109 @@
+package step.examples.streaming;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class UploadLagSamplerTest {
+
+    private static final long MS = 1_000_000L;
+
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong uploaded = new AtomicLong();
+    private final AtomicBoolean done = new AtomicBoolean();
+
+    private UploadLagSampler.Track track(UploadLagSampler sampler) {
+        sampler.track(0, written::get, uploaded::get, done::get);
+        return sampler.getTracks().get(0);
+    }
+
+    @Test
+    public void lagIsTheAgeOfTheOldestBytesNotUploaded() throws Exception {
+        UploadLagSampler sampler = new UploadLagSampler(0);
+        UploadLagSampler.Track track = track(sampler);
+        written.set(100);
+        sampler.sample(0, 0);
+        written.set(200);
+        uploaded.set(50);
+        sampler.sample(10 * MS, 10);
+        assertEquals(10 * MS, track.samples.get(1).lagNs); // bytes 51..100, written at 0
+        assertEquals(150, track.samples.get(1).lagBytes);
+        uploaded.set(100);
+        sampler.sample(20 * MS, 20);
+        assertEquals(10 * MS, track.samples.get(2).lagNs); // bytes 101..200, written at 10
+        uploaded.set(200);
+        sampler.sample(30 * MS, 30);
+        assertEquals(0, track.samples.get(3).lagNs);
+        assertEquals(10 * MS, track.maxLagNs);
+        assertEquals(150, track.maxLagBytes);
+        assertFalse(track.growing);
+        sampler.close();
+    }
+
+    @Test
+    public void steadilyGrowingLagIsFlagged() throws Exception {
+        UploadLagSampler sampler = new UploadLagSampler(0);
+        UploadLagSampler.Track track = track(sampler);
+        for (int i = 0; i <= UploadLagSampler.GROWING_SAMPLES; i++) {
+            assertFalse(track.growing);
+            written.addAndGet(1000);
+            uploaded.addAndGet(100); // the upload keeps falling behind
+            sampler.sample(i * 10 * MS, i * 10);
+        }
+        assertTrue(track.growing);
+        sampler.close();
+    }
+
+    @Test
+    public void steadyLagBreaksTheGrowingRun() throws Exception {
+        UploadLagSampler sampler = new UploadLagSampler(0);
+        UploadLagSampler.Track track = track(sampler);
+        written.set(1000);
+        int samples = UploadLagSampler.GROWING_SAMPLES + 2;
+        for (int i = 0; i < samples; i++) {
+            sampler.sample(i * 10 * MS, i * 10);
+            if (i == samples / 2) {
+                sampler.sample(i * 10 * MS, i * 10); // same lag as the previous sample
+            }
+        }
+        assertEquals(10 * MS * (samples - 1), track.maxLagNs);
+        assertFalse(track.growing);
+        sampler.close();
+    }
+
+    @Test
+    public void samplingStopsAfterTheUploadEnded() throws Exception {
+        UploadLagSampler sampler = new UploadLagSampler(0);
+        UploadLagSampler.Track track = track(sampler);
+        written.set(100);
+        uploaded.set(100);
+        done.set(true);
+        sampler.sample(0, 0);
+        sampler.sample(10 * MS, 10);
+        assertEquals(1, track.samples.size());
+        sampler.close();
+    }
+
+    @Test
+    public void unobservableUploadsAreNotSampled() throws Exception {
+        UploadLagSampler sampler = new UploadLagSampler(0);
+        UploadLagSampler.Track track = track(sampler);
+        written.set(100);
+        uploaded.set(-1);
+        sampler.sample(0, 0);
+        assertTrue(track.samples.isEmpty());
+        sampler.close();
+    }
+
+    @Test
+    public void samplesPeriodically() throws Exception {
+        UploadLagSampler sampler = new UploadLagSampler(5);
+        UploadLagSampler.Track track = track(sampler);
+        Thread.sleep(200);
+        sampler.close();
+        assertTrue(track.samples.size() > 5);
+    }
+}
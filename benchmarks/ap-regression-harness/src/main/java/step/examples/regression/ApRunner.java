@@ -0,0 +1,164 @@
+package step.examples.regression;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Runs the plans of one automation package locally, through the class of its test sources that is annotated with
+ * {@code @RunWith(Step.class)}, and measures each run.
+ * <p>
+ * The package is compiled once by {@link #prepare()}; every repetition then only invokes Surefire on that class,
+ * restricted to the selected plans. The Step runner reports each plan as a test, so the plan durations are read from
+ * the Surefire XML report. Wall time, CPU time and peak RSS cover the whole Maven process tree, JVM startups included.
+ */
+final class ApRunner {
+
+    private static final Pattern STEP_RUNNER = Pattern.compile("@RunWith\\(\\s*Step\\.class\\s*\\)");
+    private static final Duration SAMPLING_INTERVAL = Duration.ofMillis(100);
+
+    static final String WALL_MS = "wallMs";
+    static final String CPU_MS = "cpuMs";
+    static final String PEAK_RSS_MB = "peakRssMb";
+    static final String PLAN_PREFIX = "plan:";
+
+    private final String mvn;
+    private final Path repositoryRoot;
+    private final TestMatrix.Entry entry;
+    private final List<String> plans;
+    private final Path apDirectory;
+    private String runnerClass;
+
+    ApRunner(String mvn, Path repositoryRoot, TestMatrix.Entry entry, List<String> plans) {
+        this.mvn = mvn;
+        this.repositoryRoot = repositoryRoot;
+        this.entry = entry;
+        this.plans = plans;
+        this.apDirectory = repositoryRoot.resolve("automation-packages").resolve(entry.apRelPath);
+    }
+
+    /**
+     * Returns why the package cannot be run locally, or null if it can.
+     */
+    String checkRunnable() throws IOException {
+        if (entry.skipLocalExec) {
+            return "skipLocalExec is set in the test matrix";
+        }
+        if (!Files.isRegularFile(apDirectory.resolve("pom.xml"))) {
+            return "no pom.xml in " + apDirectory;
+        }
+        runnerClass = findRunnerClass().orElse(null);
+        if (runnerClass == null) {
+            return "no test class annotated with @RunWith(Step.class) in " + apDirectory;
+        }
+        return null;
+    }
+
+    private Optional<String> findRunnerClass() throws IOException {
+        Path testSources = apDirectory.resolve("src/test/java");
+        if (!Files.isDirectory(testSources)) {
+            return Optional.empty();
+        }
+        try (Stream<Path> files = Files.walk(testSources)) {
+            for (Path file : files.filter(f -> f.toString().endsWith(".java")).collect(Collectors.toList())) {
+                if (STEP_RUNNER.matcher(Files.readString(file)).find()) {
+                    String relative = testSources.relativize(file).toString();
+                    return Optional.of(relative.substring(0, relative.length() - ".java".length())
+                            .replace(File.separatorChar, '.'));
+                }
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Installs the prerequisite library, if any, and compiles the package and its tests.
+     */
+    void prepare() throws IOException, InterruptedException {
+        if (!entry.prereqLibRelPath.isEmpty()) {
+            Path library = repositoryRoot.resolve(entry.prereqLibRelPath);
+            runMaven(library, List.of("install", "-DskipTests"));
+        }
+        runMaven(apDirectory, List.of("test-compile"));
+    }
+
+    private void runMaven(Path directory, List<String> arguments) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>(List.of(mvn, "-B", "-q", "-f", directory.resolve("pom.xml").toString()));
+        command.addAll(arguments);
+        Process process = new ProcessBuilder(command).inheritIO().start();
+        if (process.waitFor() != 0) {
+            throw new IOException(String.join(" ", command) + " failed with exit code " + process.exitValue());
+        }
+    }
+
+    /**
+     * Runs the selected plans once and returns the metrics of the run, or throws if the run or one of its plans failed.
+     */
+    Map<String, Double> runOnce(Path log) throws IOException, InterruptedException {
+        Path reports = apDirectory.resolve("target/surefire-reports");
+        Path report = reports.resolve("TEST-" + runnerClass + ".xml");
+        Files.deleteIfExists(report);
+
+        String test = plans.isEmpty() ? runnerClass : runnerClass + "#" + String.join("+", plans);
+        List<String> command = List.of(mvn, "-B", "-f", apDirectory.resolve("pom.xml").toString(), "surefire:test",
+                "-Dtest=" + test, "-Dsurefire.failIfNoSpecifiedTests=false");
+        long startNs = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).redirectOutput(log.toFile()).start();
+        Map<String, Double> metrics = new LinkedHashMap<>();
+        try (ProcessTreeSampler sampler = new ProcessTreeSampler(process.toHandle(), SAMPLING_INTERVAL)) {
+            int exitCode = process.waitFor();
+            metrics.put(WALL_MS, (System.nanoTime() - startNs) / 1_000_000.0);
+            metrics.put(CPU_MS, (double) sampler.getCpuMs());
+            if (sampler.getPeakRssKb() >= 0) {
+                metrics.put(PEAK_RSS_MB, sampler.getPeakRssKb() / 1024.0);
+            }
+            if (exitCode != 0) {
+                throw new IOException(entry.apName + " failed with exit code " + exitCode + ", see " + log);
+            }
+        }
+        if (!Files.isRegularFile(report)) {
+            throw new IOException("no Surefire report " + report + ", see " + log);
+        }
+        metrics.putAll(readPlanDurations(report));
+        return metrics;
+    }
+
+    private Map<String, Double> readPlanDurations(Path report) throws IOException {
+        Map<String, Double> durations = new LinkedHashMap<>();
+        try {
+            Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(report.toFile());
+            NodeList testCases = document.getElementsByTagName("testcase");
+            for (int i = 0; i < testCases.getLength(); i++) {
+                Element testCase = (Element) testCases.item(i);
+                String plan = testCase.getAttribute("name");
+                if (testCase.getElementsByTagName("failure").getLength() > 0
+                        || testCase.getElementsByTagName("error").getLength() > 0) {
+                    throw new IOException("plan '" + plan + "' of " + entry.apName + " failed, see " + report);
+                }
+                // some Surefire versions format the time with grouping separators
+                double seconds = Double.parseDouble(testCase.getAttribute("time").replace(",", ""));
+                durations.put(PLAN_PREFIX + plan, seconds * 1000.0);
+            }
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("unable to read " + report, e);
+        }
+        return durations;
+    }
+}
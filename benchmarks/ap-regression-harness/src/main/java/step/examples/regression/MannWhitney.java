@@ -0,0 +1,117 @@
+package step.examples.regression;
+
+import java.util.Arrays;
+
+/**
+ * One-sided Mann-Whitney U test, used to decide whether the samples of a run are significantly larger than those of
+ * the baseline. It makes no assumption on the distribution of the samples, which for timings is usually skewed and
+ * multi-modal, and works with the few repetitions a local run can afford.
+ * <p>
+ * Without ties and for up to {@value #EXACT_LIMIT} samples per side, the p-value is computed from the exact
+ * distribution of U; otherwise from its normal approximation, with tie and continuity corrections.
+ */
+final class MannWhitney {
+
+    static final int EXACT_LIMIT = 30;
+
+    private MannWhitney() {
+    }
+
+    /**
+     * Probability of observing a U statistic at least as large as that of {@code candidate} over {@code baseline} if
+     * both came from the same distribution. A small value means the candidate samples tend to be larger.
+     */
+    static double pValueGreater(double[] candidate, double[] baseline) {
+        int n1 = candidate.length;
+        int n2 = baseline.length;
+        if (n1 == 0 || n2 == 0) {
+            throw new IllegalArgumentException("both samples must be non-empty");
+        }
+        double u = 0;
+        for (double c : candidate) {
+            for (double b : baseline) {
+                u += c > b ? 1.0 : c == b ? 0.5 : 0.0;
+            }
+        }
+        double tieTerm = tieTerm(candidate, baseline);
+        if (tieTerm == 0 && n1 <= EXACT_LIMIT && n2 <= EXACT_LIMIT) {
+            return exactUpperTail(n1, n2, (int) Math.round(u));
+        }
+        int n = n1 + n2;
+        double mean = n1 * (double) n2 / 2.0;
+        double variance = n1 * (double) n2 / 12.0 * ((n + 1) - tieTerm / (n * (n - 1.0)));
+        if (variance <= 0) {
+            return 1.0; // all values equal
+        }
+        double z = (u - mean - 0.5) / Math.sqrt(variance);
+        return 0.5 * erfc(z / Math.sqrt(2.0));
+    }
+
+    // Sum of t^3 - t over the groups of t equal values
+    private static double tieTerm(double[] candidate, double[] baseline) {
+        double[] all = new double[candidate.length + baseline.length];
+        System.arraycopy(candidate, 0, all, 0, candidate.length);
+        System.arraycopy(baseline, 0, all, candidate.length, baseline.length);
+        Arrays.sort(all);
+        double term = 0;
+        int i = 0;
+        while (i < all.length) {
+            int j = i;
+            while (j + 1 < all.length && all[j + 1] == all[i]) {
+                j++;
+            }
+            double t = j - i + 1;
+            term += t * t * t - t;
+            i = j + 1;
+        }
+        return term;
+    }
+
+    /*
+     * P(U >= u) under the null hypothesis. f(m, n, u), the number of orderings of m candidate and n baseline values
+     * with statistic u, follows from where the largest value comes from: f(m, n, u) = f(m - 1, n, u - n) + f(m, n - 1, u).
+     */
+    private static double exactUpperTail(int n1, int n2, int u) {
+        int maxU = n1 * n2;
+        double[][] previous = new double[n1 + 1][maxU + 1]; // n = 0
+        for (int m = 0; m <= n1; m++) {
+            previous[m][0] = 1;
+        }
+        for (int n = 1; n <= n2; n++) {
+            double[][] current = new double[n1 + 1][maxU + 1];
+            current[0][0] = 1;
+            for (int m = 1; m <= n1; m++) {
+                for (int v = 0; v <= m * n; v++) {
+                    current[m][v] = (v >= n ? current[m - 1][v - n] : 0) + previous[m][v];
+                }
+            }
+            previous = current;
+        }
+        double total = 0;
+        double tail = 0;
+        for (int v = 0; v <= maxU; v++) {
+            total += previous[n1][v];
+            if (v >= u) {
+                tail += previous[n1][v];
+            }
+        }
+        return tail / total;
+    }
+
+    // Complementary error function, fractional error below 1.2e-7 (Numerical Recipes, erfcc)
+    private static double erfc(double x) {
+        double z = Math.abs(x);
+        double t = 1.0 / (1.0 + 0.5 * z);
+        double r = t * Math.exp(-z * z - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418
+                + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587
+                + t * (-0.82215223 + t * 0.17087277)))))))));
+        return x >= 0 ? r : 2.0 - r;
+    }
+
+    static double median(double[] samples) {
+        double[] sorted = samples.clone();
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2.0;
+    }
+}
@@ -0,0 +1,107 @@
+package step.examples.regression;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Samples the CPU time and resident memory of a process and all its descendants (Maven, the forked Surefire JVM and
+ * whatever the plans start) until the process exits.
+ * <p>
+ * On Linux the values come from {@code /proc}: the peak RSS is the largest sum of the tree's resident set sizes seen
+ * at a sample, or the largest high-water mark of a single process if that is higher, so that short peaks between two
+ * samples are not missed entirely. Elsewhere only the CPU time reported by {@link ProcessHandle} is available and the
+ * peak RSS is reported as -1. The CPU time of a process is the last value sampled before it exited.
+ */
+final class ProcessTreeSampler implements AutoCloseable {
+
+    private static final Path PROC = Paths.get("/proc");
+    // USER_HZ, the unit of utime and stime in /proc/<pid>/stat, 100 on all mainstream Linux platforms
+    private static final long CLOCK_TICKS_PER_SECOND = 100;
+
+    private final ProcessHandle root;
+    private final boolean procfs = Files.isDirectory(PROC.resolve("self"));
+    private final Map<Long, Long> cpuMsByPid = new HashMap<>();
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "process-tree-sampler");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private long peakRssKb = -1;
+
+    ProcessTreeSampler(ProcessHandle root, Duration interval) {
+        this.root = root;
+        executor.scheduleAtFixedRate(this::sample, 0, interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private synchronized void sample() {
+        List<ProcessHandle> tree = Stream.concat(Stream.of(root), root.descendants()).collect(Collectors.toList());
+        long rssKb = 0;
+        for (ProcessHandle process : tree) {
+            if (procfs) {
+                Map<String, Long> status = readStatusKb(process.pid());
+                rssKb += status.getOrDefault("VmRSS", 0L);
+                peakRssKb = Math.max(peakRssKb, status.getOrDefault("VmHWM", 0L));
+                long cpuMs = readCpuMs(process.pid());
+                if (cpuMs >= 0) {
+                    cpuMsByPid.put(process.pid(), cpuMs);
+                }
+            } else {
+                process.info().totalCpuDuration().ifPresent(cpu -> cpuMsByPid.put(process.pid(), cpu.toMillis()));
+            }
+        }
+        if (procfs) {
+            peakRssKb = Math.max(peakRssKb, rssKb);
+        }
+    }
+
+    private static Map<String, Long> readStatusKb(long pid) {
+        Map<String, Long> values = new HashMap<>();
+        try {
+            for (String line : Files.readAllLines(PROC.resolve(Long.toString(pid)).resolve("status"))) {
+                if (line.startsWith("VmRSS:") || line.startsWith("VmHWM:")) {
+                    String[] parts = line.split("\\s+");
+                    values.put(parts[0].substring(0, parts[0].length() - 1), Long.parseLong(parts[1]));
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // the process exited in the meantime
+        }
+        return values;
+    }
+
+    private static long readCpuMs(long pid) {
+        try {
+            String stat = Files.readString(PROC.resolve(Long.toString(pid)).resolve("stat"));
+            // the command name may contain spaces, the fields of interest follow its closing parenthesis
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+            long ticks = Long.parseLong(fields[11]) + Long.parseLong(fields[12]); // utime, stime
+            return ticks * 1000 / CLOCK_TICKS_PER_SECOND;
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    synchronized long getCpuMs() {
+        return cpuMsByPid.values().stream().mapToLong(Long::longValue).sum();
+    }
+
+    synchronized long getPeakRssKb() {
+        return peakRssKb;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
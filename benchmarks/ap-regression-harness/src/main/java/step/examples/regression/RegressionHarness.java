@@ -0,0 +1,215 @@
+package step.examples.regression;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Entry point of {@code harness.jar}. Runs the locally executable plans of the automation packages listed in a test
+ * matrix {@code ap-config.json} a number of times, writes the wall time, CPU time, peak RSS and plan durations of every
+ * run to {@code regression-results.json} and compares them to {@code regression-baseline.json}. A metric regressed if
+ * a one-sided Mann-Whitney U test finds it significantly larger than in the baseline and its median grew by more than
+ * the minimum change. The exit code is 1 if a metric regressed, 2 if a package could not be run.
+ * <pre>
+ * java -jar target/harness.jar --root ../.. --update-baseline    # record a baseline
+ * java -jar target/harness.jar --root ../..                      # compare against it
+ * java -jar target/harness.jar --root ../.. --aps all --repetitions 10
+ * java -jar target/harness.jar --root ../.. --plans "streaming-test-ap=Streaming Uploads TC 02 - 1 BINARY"
+ * </pre>
+ * By default the streaming TC 01 and TC 02 plans and the Java keyword plans are run. Other packages are selected with
+ * {@code --aps}; their plans are those of {@code includePlans} in the matrix unless {@code --plans} overrides them.
+ * Packages with {@code skipLocalExec} set, or without a test class annotated with {@code @RunWith(Step.class)}, are
+ * skipped.
+ */
+public class RegressionHarness {
+
+    private static final String USAGE = "Options:\n"
+            + "  --root <dir>            repository root (default: .)\n"
+            + "  --matrix <file>         test matrix, relative to the root (default: test-matrix/step/ap-config.json)\n"
+            + "  --aps <a,b,...|all>     automation packages to run (default: streaming-test-ap,java-automation-package)\n"
+            + "  --plans <ap>=<p1,p2>    plans to run for a package, repeatable\n"
+            + "  --repetitions <n>       measured runs per package (default: 5)\n"
+            + "  --warmups <n>           unmeasured runs per package (default: 1)\n"
+            + "  --baseline <file>       baseline file (default: regression-baseline.json)\n"
+            + "  --results <file>        results file (default: regression-results.json)\n"
+            + "  --update-baseline       replace the baseline of the packages run by their results\n"
+            + "  --alpha <p>             significance level (default: 0.05)\n"
+            + "  --min-change <percent>  smallest median increase reported as a regression (default: 5)\n"
+            + "  --mvn <command>         Maven executable (default: mvn)";
+
+    private static final Map<String, List<String>> DEFAULT_PLANS = Map.of("streaming-test-ap",
+            List.of("Streaming Uploads TC 01 - 5 PASS", "Streaming Uploads TC 02 - 1 BINARY"));
+
+    private Path root = Paths.get(".");
+    private String matrix = "test-matrix/step/ap-config.json";
+    private List<String> apNames = List.of("streaming-test-ap", "java-automation-package");
+    private final Map<String, List<String>> plans = new LinkedHashMap<>(DEFAULT_PLANS);
+    private int repetitions = 5;
+    private int warmups = 1;
+    private Path baselineFile = Paths.get("regression-baseline.json");
+    private Path resultsFile = Paths.get("regression-results.json");
+    private boolean updateBaseline;
+    private double alpha = 0.05;
+    private double minChangePercent = 5;
+    private String mvn = "mvn";
+
+    public static void main(String[] args) throws Exception {
+        RegressionHarness harness = new RegressionHarness();
+        if (!harness.parse(args)) {
+            System.out.println(USAGE);
+            return;
+        }
+        System.exit(harness.run());
+    }
+
+    private boolean parse(String[] args) {
+        for (int i = 0; i < args.length; i++) {
+            String option = args[i];
+            if (option.equals("--help") || option.equals("-h")) {
+                return false;
+            }
+            if (option.equals("--update-baseline")) {
+                updateBaseline = true;
+                continue;
+            }
+            if (i + 1 == args.length) {
+                throw new IllegalArgumentException("missing value for " + option);
+            }
+            String value = args[++i];
+            switch (option) {
+                case "--root":
+                    root = Paths.get(value);
+                    break;
+                case "--matrix":
+                    matrix = value;
+                    break;
+                case "--aps":
+                    apNames = TestMatrix.splitPlans(value);
+                    break;
+                case "--plans":
+                    int separator = value.indexOf('=');
+                    if (separator < 0) {
+                        throw new IllegalArgumentException("expected <ap>=<plans> for --plans: " + value);
+                    }
+                    plans.put(value.substring(0, separator), TestMatrix.splitPlans(value.substring(separator + 1)));
+                    break;
+                case "--repetitions":
+                    repetitions = Integer.parseInt(value);
+                    break;
+                case "--warmups":
+                    warmups = Integer.parseInt(value);
+                    break;
+                case "--baseline":
+                    baselineFile = Paths.get(value);
+                    break;
+                case "--results":
+                    resultsFile = Paths.get(value);
+                    break;
+                case "--alpha":
+                    alpha = Double.parseDouble(value);
+                    break;
+                case "--min-change":
+                    minChangePercent = Double.parseDouble(value);
+                    break;
+                case "--mvn":
+                    mvn = value;
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + option);
+            }
+        }
+        if (repetitions < 1) {
+            throw new IllegalArgumentException("--repetitions must be at least 1");
+        }
+        return true;
+    }
+
+    private int run() throws Exception {
+        List<TestMatrix.Entry> entries = selectEntries(TestMatrix.read(root.resolve(matrix)));
+        Path logs = Files.createDirectories(Paths.get("regression-logs"));
+        Samples results = new Samples();
+        boolean failed = false;
+        for (TestMatrix.Entry entry : entries) {
+            List<String> entryPlans = plans.getOrDefault(entry.apName, entry.includePlans);
+            ApRunner runner = new ApRunner(mvn, root, entry, entryPlans);
+            String reason = runner.checkRunnable();
+            if (reason != null) {
+                System.out.println("Skipping " + entry.apName + ": " + reason);
+                continue;
+            }
+            System.out.println("Running " + entry.apName + (entryPlans.isEmpty() ? " (all plans)" : " " + entryPlans));
+            try {
+                runner.prepare();
+                for (int i = 1; i <= warmups; i++) {
+                    runner.runOnce(logs.resolve(entry.apName + "-warmup-" + i + ".log"));
+                }
+                for (int i = 1; i <= repetitions; i++) {
+                    Map<String, Double> metrics = runner.runOnce(logs.resolve(entry.apName + "-" + i + ".log"));
+                    System.out.printf("  run %d/%d: %.0f ms%n", i, repetitions, metrics.get(ApRunner.WALL_MS));
+                    results.add(entry.apName, metrics);
+                }
+            } catch (Exception e) {
+                System.out.println("  " + entry.apName + " failed: " + e.getMessage());
+                failed = true;
+            }
+        }
+        results.write(resultsFile);
+
+        Samples baseline = Samples.read(baselineFile);
+        boolean regressed = compare(baseline, results);
+        if (updateBaseline) {
+            baseline.replace(results);
+            baseline.write(baselineFile);
+            System.out.println("Baseline " + baselineFile + " updated");
+        }
+        return failed ? 2 : regressed && !updateBaseline ? 1 : 0;
+    }
+
+    private List<TestMatrix.Entry> selectEntries(List<TestMatrix.Entry> all) {
+        if (apNames.equals(List.of("all"))) {
+            return all;
+        }
+        List<TestMatrix.Entry> selected = new ArrayList<>();
+        for (String apName : apNames) {
+            Optional<TestMatrix.Entry> entry = all.stream().filter(e -> e.apName.equals(apName)).findFirst();
+            selected.add(entry.orElseThrow(() -> new IllegalArgumentException(apName + " is not in " + matrix)));
+        }
+        return selected;
+    }
+
+    private boolean compare(Samples baseline, Samples results) {
+        boolean regressed = false;
+        System.out.printf("%n%-60s %12s %12s %8s %8s%n", "Metric", "Baseline", "Current", "Change", "p");
+        for (String apName : results.apNames()) {
+            Map<String, List<Double>> reference = baseline.get(apName);
+            for (Map.Entry<String, List<Double>> metric : results.get(apName).entrySet()) {
+                String name = apName + " " + metric.getKey();
+                double[] current = toArray(metric.getValue());
+                List<Double> previous = reference.get(metric.getKey());
+                if (previous == null || previous.isEmpty()) {
+                    System.out.printf("%-60s %12s %12.1f%n", name, "-", MannWhitney.median(current));
+                    continue;
+                }
+                double[] before = toArray(previous);
+                double medianBefore = MannWhitney.median(before);
+                double medianNow = MannWhitney.median(current);
+                double changePercent = medianBefore == 0 ? 0 : (medianNow - medianBefore) * 100.0 / medianBefore;
+                double p = MannWhitney.pValueGreater(current, before);
+                boolean regression = p < alpha && changePercent > minChangePercent;
+                regressed |= regression;
+                System.out.printf("%-60s %12.1f %12.1f %+7.1f%% %8.4f%s%n", name, medianBefore, medianNow,
+                        changePercent, p, regression ? "  REGRESSION" : "");
+            }
+        }
+        return regressed;
+    }
+
+    private static double[] toArray(List<Double> values) {
+        return values.stream().mapToDouble(Double::doubleValue).toArray();
+    }
+}
@@ -0,0 +1,91 @@
+package step.examples.regression;
+
+import javax.json.Json;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonNumber;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+import javax.json.JsonReader;
+import javax.json.JsonValue;
+import javax.json.JsonWriter;
+import javax.json.JsonWriterFactory;
+import javax.json.stream.JsonGenerator;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Samples of every metric of every automation package, as stored in the baseline and result files:
+ * <pre>
+ * { "&lt;apName&gt;": { "wallMs": [1234.5, ...], "plan:&lt;plan name&gt;": [...], ... }, ... }
+ * </pre>
+ */
+final class Samples {
+
+    private final Map<String, Map<String, List<Double>>> byAp = new TreeMap<>();
+
+    void add(String apName, Map<String, Double> metrics) {
+        Map<String, List<Double>> ap = byAp.computeIfAbsent(apName, a -> new TreeMap<>());
+        metrics.forEach((metric, value) -> ap.computeIfAbsent(metric, m -> new ArrayList<>()).add(value));
+    }
+
+    /**
+     * Replaces the samples of the packages present in {@code other}.
+     */
+    void replace(Samples other) {
+        byAp.putAll(other.byAp);
+    }
+
+    Map<String, List<Double>> get(String apName) {
+        return byAp.getOrDefault(apName, Map.of());
+    }
+
+    Iterable<String> apNames() {
+        return byAp.keySet();
+    }
+
+    static Samples read(Path file) throws IOException {
+        Samples samples = new Samples();
+        if (!Files.isRegularFile(file)) {
+            return samples;
+        }
+        try (Reader reader = Files.newBufferedReader(file); JsonReader json = Json.createReader(reader)) {
+            for (Map.Entry<String, JsonValue> ap : json.readObject().entrySet()) {
+                Map<String, List<Double>> metrics = new TreeMap<>();
+                for (Map.Entry<String, JsonValue> metric : ap.getValue().asJsonObject().entrySet()) {
+                    List<Double> values = new ArrayList<>();
+                    for (JsonValue value : metric.getValue().asJsonArray()) {
+                        values.add(((JsonNumber) value).doubleValue());
+                    }
+                    metrics.put(metric.getKey(), values);
+                }
+                samples.byAp.put(ap.getKey(), metrics);
+            }
+        }
+        return samples;
+    }
+
+    void write(Path file) throws IOException {
+        JsonObjectBuilder root = Json.createObjectBuilder();
+        byAp.forEach((apName, metrics) -> {
+            JsonObjectBuilder ap = Json.createObjectBuilder();
+            metrics.forEach((metric, values) -> {
+                JsonArrayBuilder array = Json.createArrayBuilder();
+                values.forEach(v -> array.add(Math.round(v * 1000.0) / 1000.0));
+                ap.add(metric, array);
+            });
+            root.add(apName, ap);
+        });
+        JsonObject json = root.build();
+        JsonWriterFactory factory = Json.createWriterFactory(Map.of(JsonGenerator.PRETTY_PRINTING, true));
+        try (Writer writer = Files.newBufferedWriter(file); JsonWriter jsonWriter = factory.createWriter(writer)) {
+            jsonWriter.writeObject(json);
+        }
+    }
+}
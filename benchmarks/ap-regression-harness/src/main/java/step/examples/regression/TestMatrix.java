@@ -0,0 +1,63 @@
+package step.examples.regression;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonReader;
+import javax.json.JsonValue;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The automation packages of a {@code test-matrix/<edition>/ap-config.json} file.
+ */
+final class TestMatrix {
+
+    static final class Entry {
+        final String apRelPath;
+        final String apName;
+        final List<String> includePlans;
+        final boolean skipLocalExec;
+        final String prereqLibRelPath;
+
+        Entry(String apRelPath, String apName, List<String> includePlans, boolean skipLocalExec, String prereqLibRelPath) {
+            this.apRelPath = apRelPath;
+            this.apName = apName;
+            this.includePlans = includePlans;
+            this.skipLocalExec = skipLocalExec;
+            this.prereqLibRelPath = prereqLibRelPath;
+        }
+    }
+
+    private TestMatrix() {
+    }
+
+    static List<Entry> read(Path file) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        try (Reader reader = Files.newBufferedReader(file); JsonReader json = Json.createReader(reader)) {
+            for (JsonValue value : json.readArray()) {
+                JsonObject entry = value.asJsonObject();
+                entries.add(new Entry(
+                        entry.getString("apRelPath"),
+                        entry.getString("apName", entry.getString("apRelPath")),
+                        splitPlans(entry.getString("includePlans", "")),
+                        // the matrix stores booleans as strings
+                        Boolean.parseBoolean(entry.getString("skipLocalExec", "false")),
+                        entry.getString("prereqLibRelPath", "")));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Splits a comma-separated list of plan names, an empty list meaning all plans.
+     */
+    static List<String> splitPlans(String plans) {
+        return Arrays.stream(plans.split(",")).map(String::trim).filter(p -> !p.isEmpty()).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,49 @@
+package step.examples.regression;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MannWhitneyTest {
+
+    @Test
+    public void exactDistribution() {
+        // only 1 of the C(6,3) = 20 orderings puts all candidate values above the baseline
+        assertEquals(0.05, MannWhitney.pValueGreater(new double[]{6, 7, 8}, new double[]{1, 2, 3}), 1e-12);
+        assertEquals(1.0, MannWhitney.pValueGreater(new double[]{1, 2, 3}, new double[]{6, 7, 8}), 1e-12);
+        // U = 8: orderings with U >= 8 are U = 9 and U = 8, one each
+        assertEquals(0.10, MannWhitney.pValueGreater(new double[]{3.5, 7, 8}, new double[]{1, 2, 4}), 1e-12);
+    }
+
+    @Test
+    public void normalApproximationWithTies() {
+        assertEquals(1.0, MannWhitney.pValueGreater(new double[]{5, 5, 5}, new double[]{5, 5}), 1e-12);
+        double p = MannWhitney.pValueGreater(new double[]{2, 3, 3, 4, 4, 5}, new double[]{1, 1, 2, 2, 3, 3});
+        assertTrue(String.valueOf(p), p > 0.001 && p < 0.05);
+    }
+
+    @Test
+    public void shiftedSamplesAreDetected() {
+        Random random = new Random(42);
+        double[] baseline = new double[40];
+        double[] same = new double[40];
+        double[] slower = new double[40];
+        for (int i = 0; i < baseline.length; i++) {
+            baseline[i] = 1000 + random.nextGaussian() * 50;
+            same[i] = 1000 + random.nextGaussian() * 50;
+            slower[i] = 1100 + random.nextGaussian() * 50;
+        }
+        assertTrue(MannWhitney.pValueGreater(slower, baseline) < 0.001);
+        assertTrue(MannWhitney.pValueGreater(same, baseline) > 0.01);
+        assertTrue(MannWhitney.pValueGreater(baseline, slower) > 0.99);
+    }
+
+    @Test
+    public void median() {
+        assertEquals(2.0, MannWhitney.median(new double[]{3, 1, 2}), 0);
+        assertEquals(2.5, MannWhitney.median(new double[]{4, 1, 3, 2}), 0);
+    }
+}
@@ -0,0 +1,49 @@
+package step.examples.streaming;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Content generation of a producer fiber, filling one 64 KiB block per operation in {@link ProducerFiber#CHUNK_SIZE}
+ * chunks, exactly as {@link ProducerFiber} does.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ContentGenerationBenchmark {
+    private static final int BYTES_PER_OP = 64 * 1024;
+
+    @Param({"compat", "bulk", "compressible", "incompressible"})
+    public String contentMode;
+
+    private ContentGenerator generator;
+    private final byte[] buffer = new byte[ProducerFiber.CHUNK_SIZE];
+
+    @Setup
+    public void setUp() {
+        generator = ContentGenerator.create(ContentGenerator.Mode.parse(contentMode), 31337L);
+    }
+
+    @Benchmark
+    public byte[] fill(ByteCounters counters) {
+        for (int off = 0; off < BYTES_PER_OP; off += buffer.length) {
+            generator.fill(buffer, 0, buffer.length);
+        }
+        counters.bytes += BYTES_PER_OP;
+        return buffer;
+    }
+}
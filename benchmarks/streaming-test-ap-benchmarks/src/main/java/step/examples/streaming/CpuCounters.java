@@ -0,0 +1,33 @@
+package step.examples.streaming;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+
+/**
+ * Secondary JMH result "cpuNanos": process CPU time consumed per second of benchmark time, i.e. the number
+ * of busy cores times 1e9. Used for benchmarks whose work runs on threads other than the benchmark thread.
+ */
+@State(Scope.Thread)
+@AuxCounters(AuxCounters.Type.OPERATIONS)
+public class CpuCounters {
+    public long cpuNanos;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+        cpuNanos = 0;
+    }
+
+    static long processCpuTimeNs() {
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            return ((com.sun.management.OperatingSystemMXBean) os).getProcessCpuTime();
+        }
+        return 0L;
+    }
+}
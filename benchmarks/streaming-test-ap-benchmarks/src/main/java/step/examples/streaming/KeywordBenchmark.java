@@ -0,0 +1,122 @@
+package step.examples.streaming;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import step.functions.io.Output;
+import step.handlers.javahandler.Keyword;
+import step.handlers.javahandler.KeywordRunner;
+import step.handlers.javahandler.KeywordRunner.ExecutionContext;
+import step.reporting.LiveReporting;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The complete {@code StreamingUploadsTest} keyword, with live reporting wired to the in-process
+ * {@link LoopbackStreamingUploadProvider} without any ingest limits. One operation is one keyword call producing
+ * {@code attachmentsCount} attachments of {@code attachmentSize} bytes over one second each. "bytes" divided by
+ * "cpuNanos", times 1000, is the producer throughput in MB/s per core. The "tmpfs" write path keeps the tailed temp
+ * files on a memory-backed file system, as can be done on agents, and the "memory" one replaces them by in-memory
+ * rings, leaving only the upload channel. The keyword runs through the {@link KeywordRunner}
+ * with a JSON input, so that the inputs not set here keep their declared defaults.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class KeywordBenchmark {
+
+    @Param({"100"})
+    public int attachmentsCount;
+
+    @Param({"1000000"})
+    public int attachmentSize;
+
+    @Param({"scheduler", "wheel"})
+    public String producerMode;
+
+    @Param({"compat", "bulk"})
+    public String contentMode;
+
+    @Param({"stream/chunk", "channel/tick", "tmpfs/chunk", "memory/chunk"})
+    public String writePath;
+
+    @Param({"2"})
+    public int producerThreads;
+
+    /**
+     * The keyword uploading through the benchmark's provider, as the runner creates its own instances.
+     */
+    public static class LoopbackKeyword extends StreamingUploadsTestKeyword {
+        private static volatile LiveReporting benchmarkLiveReporting;
+
+        @Override
+        public void beforeKeyword(String keywordName, Keyword annotation) {
+            super.beforeKeyword(keywordName, annotation);
+            junitSetLiveReporting(benchmarkLiveReporting);
+        }
+    }
+
+    private LoopbackStreamingUploadProvider provider;
+    private ExecutionContext ctx;
+    private String input;
+
+    @Setup
+    public void setUp() {
+        String[] parts = writePath.split("/");
+        String uploadBacking = parts[0].equals("memory") || parts[0].equals("tmpfs") ? parts[0] : "file";
+        input = Json.createObjectBuilder()
+                .add("attachmentsCount", attachmentsCount)
+                .add("attachmentSizeMin", attachmentSize)
+                .add("attachmentSizeMax", attachmentSize)
+                .add("productionTimeSecondsMin", 1)
+                .add("productionTimeSecondsMax", 1)
+                .add("sleepBetweenSecondsMin", 0)
+                .add("sleepBetweenSecondsMax", 0)
+                .add("producerThreads", producerThreads)
+                .add("producerMode", producerMode)
+                .add("contentMode", contentMode)
+                .add("ioMode", uploadBacking.equals("file") ? parts[0] : "stream")
+                .add("flushPolicy", parts[1])
+                .add("uploadBacking", uploadBacking)
+                .build().toString();
+        provider = new LoopbackStreamingUploadProvider();
+        LoopbackKeyword.benchmarkLiveReporting = provider.newLiveReporting();
+        ctx = KeywordRunner.getExecutionContext(Map.of(), LoopbackKeyword.class);
+        ctx.setThrowExceptionOnError(false);
+    }
+
+    @TearDown
+    public void tearDown() {
+        ctx.close();
+        provider.close();
+        LoopbackKeyword.benchmarkLiveReporting = null;
+    }
+
+    @Benchmark
+    public JsonObject streamingUploadsTest(ByteCounters bytes, CpuCounters cpu) throws Exception {
+        long cpuStartNs = CpuCounters.processCpuTimeNs();
+        Output<JsonObject> output = ctx.run("StreamingUploadsTest", input);
+        cpu.cpuNanos += CpuCounters.processCpuTimeNs() - cpuStartNs;
+
+        if (output.getError() != null) {
+            throw new IllegalStateException("Keyword failed: " + output.getError().getMsg());
+        }
+        bytes.bytes += (long) attachmentsCount * attachmentSize;
+        return output.getPayload();
+    }
+}
@@ -0,0 +1,104 @@
+package step.examples.streaming;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pacing overhead of the {@link PacingScheduler} implementations used by the keyword's scheduler and wheel
+ * producer modes. Each operation lets {@code fibers} lightweight fibers reschedule themselves
+ * {@link #STEPS} times with a {@link #STEP_DELAY_NS} delay, so an ideal scheduler completes 50 operations per
+ * second; anything below that is pacing error. Dividing "cpuNanos" by the score gives the CPU cost per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SchedulerBenchmark {
+    private static final int STEPS = 20;
+    private static final long STEP_DELAY_NS = 1_000_000L;
+
+    @Param({"10", "1000", "10000"})
+    public int fibers;
+
+    @Param({"scheduler", "wheel"})
+    public String producerMode;
+
+    @Param({"2"})
+    public int producerThreads;
+
+    private ScheduledThreadPoolExecutor executor;
+    private TimingWheelScheduler wheel;
+    private PacingScheduler pacing;
+
+    @Setup
+    public void setUp() {
+        if (producerMode.equals("wheel")) {
+            wheel = new TimingWheelScheduler("bench-wheel", 100_000L, 1024, producerThreads);
+            pacing = wheel;
+        } else {
+            executor = new ScheduledThreadPoolExecutor(producerThreads);
+            pacing = PacingScheduler.of(executor);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (wheel != null) {
+            wheel.shutdownNow();
+        }
+    }
+
+    @Benchmark
+    public void pace(CpuCounters counters) throws InterruptedException {
+        long cpuStartNs = CpuCounters.processCpuTimeNs();
+        CountDownLatch done = new CountDownLatch(fibers);
+        for (int i = 0; i < fibers; i++) {
+            new Fiber(pacing, done).start();
+        }
+        done.await();
+        counters.cpuNanos += CpuCounters.processCpuTimeNs() - cpuStartNs;
+    }
+
+    private static final class Fiber implements Runnable {
+        private final PacingScheduler pacing;
+        private final CountDownLatch done;
+        private int remaining = STEPS;
+
+        Fiber(PacingScheduler pacing, CountDownLatch done) {
+            this.pacing = pacing;
+            this.done = done;
+        }
+
+        void start() {
+            pacing.schedule(this, STEP_DELAY_NS);
+        }
+
+        @Override
+        public void run() {
+            if (--remaining > 0) {
+                pacing.schedule(this, STEP_DELAY_NS);
+            } else {
+                done.countDown();
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package step.examples.streaming;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link ChunkWriter} write path: each operation opens a fresh file and writes one 1 MiB attachment in
+ * {@link ProducerFiber#CHUNK_SIZE} chunks, ending a scheduling tick every {@code chunksPerTick} chunks.
+ * Content is generated once up-front so that only the write path is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WritePathBenchmark {
+    private static final int BYTES_PER_OP = 1024 * 1024;
+
+    @Param({"stream", "channel"})
+    public String ioMode;
+
+    @Param({"chunk", "bytes", "tick"})
+    public String flushPolicy;
+
+    @Param({"65536"})
+    public int flushBytes;
+
+    @Param({"8"})
+    public int chunksPerTick;
+
+    private ChunkWriter.IoMode mode;
+    private ChunkWriter.FlushPolicy policy;
+    private File file;
+    private final byte[] content = new byte[BYTES_PER_OP];
+
+    @Setup
+    public void setUp() throws Exception {
+        mode = ChunkWriter.IoMode.parse(ioMode);
+        policy = ChunkWriter.FlushPolicy.parse(flushPolicy);
+        file = Files.createTempFile("write-path-bench-", ".txt").toFile();
+        ContentGenerator.create(ContentGenerator.Mode.BULK, 31337L).fill(content, 0, content.length);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(file.toPath());
+    }
+
+    @Benchmark
+    public long writeAttachment(ByteCounters counters) throws Exception {
+        ChunkWriter writer = ChunkWriter.open(mode, policy, flushBytes, file);
+        try (writer) {
+            int chunks = 0;
+            for (int off = 0; off < BYTES_PER_OP; off += ProducerFiber.CHUNK_SIZE) {
+                writer.write(content, off, ProducerFiber.CHUNK_SIZE);
+                if (++chunks % chunksPerTick == 0) {
+                    writer.endOfTick();
+                }
+            }
+        }
+        counters.bytes += BYTES_PER_OP;
+        return writer.getSyscalls();
+    }
+}